@@ -112,4 +112,12 @@ public class EssimTime {
 	public static Date localDateTimeToDate(LocalDateTime ldt) {
 		return Date.from(ldt.atZone(defaultTimeZone).toInstant());
 	}
+
+	/**
+	 * @return the seconds since the epoch of the LocalDateTime in the default time
+	 *         zone, the same instant as {@link #localDateTimeToDate(LocalDateTime)}
+	 */
+	public static long toEpochSecond(LocalDateTime ldt) {
+		return ldt.atZone(defaultTimeZone).toEpochSecond();
+	}
 }
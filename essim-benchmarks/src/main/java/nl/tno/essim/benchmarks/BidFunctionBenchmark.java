@@ -0,0 +1,100 @@
+/**
+ *  This work is based on original code developed and copyrighted by TNO 2020. 
+ *  Subsequent contributions are licensed to you by the developers of such code and are
+ *  made available to the Project under one or several contributor license agreements.
+ *
+ *  This work is licensed to you under the Apache License, Version 2.0.
+ *  You may obtain a copy of the license at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Contributors:
+ *      TNO         - Initial implementation
+ *  Manager:
+ *      TNO
+ */
+
+package nl.tno.essim.benchmarks;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import nl.tno.essim.commons.BidFunction;
+
+/**
+ * Summing two bid curves and finding the equilibrium price of an aggregated
+ * curve, for curves of different numbers of breakpoints.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BidFunctionBenchmark {
+
+	@Param({"2", "6", "64", "1024"})
+	private int points;
+
+	private BidFunction first;
+	private BidFunction second;
+	private BidFunction summed;
+
+	@Setup
+	public void setup() {
+		Random random = new Random(42);
+		first = randomCurve(random, points);
+		second = randomCurve(random, points);
+		summed = BidFunction.sumCurves(first, second);
+	}
+
+	/**
+	 * A monotonically decreasing demand curve from a positive to a negative bid,
+	 * with breakpoints at random prices.
+	 */
+	static BidFunction randomCurve(Random random, int points) {
+		double[] prices = new double[points - 2];
+		for (int i = 0; i < prices.length; i++) {
+			prices[i] = random.nextDouble();
+		}
+		Arrays.sort(prices);
+
+		BidFunction curve = new BidFunction();
+		double bid = 1000.0 * random.nextDouble();
+		curve.addPoint(0.0, bid);
+		for (double price : prices) {
+			bid -= 2000.0 * random.nextDouble() / points;
+			curve.addPoint(price, bid);
+		}
+		curve.addPoint(1.0, bid - 1000.0 * random.nextDouble());
+		return curve;
+	}
+
+	@Benchmark
+	public BidFunction sumCurves() {
+		return BidFunction.sumCurves(first, second);
+	}
+
+	@Benchmark
+	public double findPriceFromCurve() {
+		return summed.findPriceFromCurve(0.0);
+	}
+
+	@Benchmark
+	public double findDemandFromCurve() {
+		return summed.findDemandFromCurve(0.5);
+	}
+}
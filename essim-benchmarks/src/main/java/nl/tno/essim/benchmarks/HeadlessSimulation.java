@@ -0,0 +1,85 @@
+/**
+ *  This work is based on original code developed and copyrighted by TNO 2020. 
+ *  Subsequent contributions are licensed to you by the developers of such code and are
+ *  made available to the Project under one or several contributor license agreements.
+ *
+ *  This work is licensed to you under the Apache License, Version 2.0.
+ *  You may obtain a copy of the license at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Contributors:
+ *      TNO         - Initial implementation
+ *  Manager:
+ *      TNO
+ */
+
+package nl.tno.essim.benchmarks;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.UUID;
+
+import esdl.EnergySystem;
+import lombok.extern.slf4j.Slf4j;
+import nl.tno.essim.ESSimEngine;
+
+/**
+ * Simulates a generated scenario without any external services (no MongoDB,
+ * no InfluxDB, no observation consumers), for load tests in CI.
+ *
+ * Usage: HeadlessSimulation [areas] [buildingsPerArea] [days]
+ */
+@Slf4j
+public class HeadlessSimulation {
+
+	private static final String ESSIM_ID = "headless";
+
+	public static void main(String[] args) throws Exception {
+		ScenarioConfiguration configuration = ScenarioConfiguration.builder()
+				.areas(intArgument(args, 0, 4))
+				.buildingsPerArea(intArgument(args, 1, 25))
+				.days(intArgument(args, 2, 7))
+				.build();
+		ScenarioGenerator generator = new ScenarioGenerator(configuration);
+		Instant start = Instant.now();
+		ESSimEngine engine = createEngine(generator, generator.generate());
+		Instant setup = Instant.now();
+		run(engine);
+		Instant end = Instant.now();
+		log.info("Simulated {} buildings for {} days. Setup took {}, simulation took {}",
+				configuration.getBuildings(), configuration.getDays(), Duration.between(start, setup),
+				Duration.between(setup, end));
+	}
+
+	public static ESSimEngine createEngine(ScenarioGenerator generator, EnergySystem energySystem)
+			throws Exception {
+		String simulationId = UUID.randomUUID().toString();
+		return new ESSimEngine(ESSIM_ID, simulationId, generator.createSimulation(energySystem.getName()),
+				energySystem);
+	}
+
+	/**
+	 * Runs the simulation on the calling thread.
+	 *
+	 * @throws IllegalStateException if the simulation failed
+	 */
+	public static void run(ESSimEngine engine) {
+		engine.startSimulation();
+		if (engine.getStatus() < 0) {
+			throw new IllegalStateException("Simulation " + engine.getSimulationId() + " failed: "
+					+ engine.getDescription());
+		}
+	}
+
+	private static int intArgument(String[] args, int index, int defaultValue) {
+		if (args.length > index) {
+			try {
+				return Integer.parseInt(args[index]);
+			} catch (NumberFormatException e) {
+				log.warn("Invalid value {} for argument {}. Defaulting to {}", args[index], index, defaultValue);
+			}
+		}
+		return defaultValue;
+	}
+}
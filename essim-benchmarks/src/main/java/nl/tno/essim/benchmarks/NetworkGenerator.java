@@ -0,0 +1,296 @@
+/**
+ *  This work is based on original code developed and copyrighted by TNO 2020. 
+ *  Subsequent contributions are licensed to you by the developers of such code and are
+ *  made available to the Project under one or several contributor license agreements.
+ *
+ *  This work is licensed to you under the Apache License, Version 2.0.
+ *  You may obtain a copy of the license at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Contributors:
+ *      TNO         - Initial implementation
+ *  Manager:
+ *      TNO
+ */
+
+package nl.tno.essim.benchmarks;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Executor;
+
+import esdl.Area;
+import esdl.Bus;
+import esdl.Carrier;
+import esdl.Consumer;
+import esdl.ElectricityCommodity;
+import esdl.EnergyAsset;
+import esdl.EsdlFactory;
+import esdl.EssimESDLFactory;
+import esdl.InPort;
+import esdl.OutPort;
+import esdl.PowerPlant;
+import esdl.Producer;
+import esdl.ProfileElement;
+import esdl.ProfileReference;
+import esdl.ProfileTypeEnum;
+import essim.impl.ExtendedESSIMDateTimeProfile;
+import essim.impl.ExtendedESSIMSingleValueProfile;
+import nl.tno.essim.commons.Commons.Role;
+import nl.tno.essim.commons.ISimulationManager;
+import nl.tno.essim.managers.SimulationScheduler;
+import nl.tno.essim.observation.IObservationConsumer;
+import nl.tno.essim.time.EssimDuration;
+import nl.tno.essim.time.EssimTime;
+import nl.tno.essim.transportsolver.TransportSolver;
+
+/**
+ * Generates a single electricity network of a given number of assets: a power
+ * plant feeding a tree of buses, with demands and PV installations driven by a
+ * small set of shared in-memory profiles as leaves.
+ */
+public class NetworkGenerator {
+
+	public static final LocalDateTime START = LocalDateTime.of(2019, 1, 1, 0, 0);
+	public static final EssimDuration STEP = EssimDuration.of(1, ChronoUnit.HOURS);
+	private static final int FAN_OUT = 10;
+	private static final int PROFILES = 8;
+	private static final int PRODUCER_RATIO = 5;
+
+	private final Random random;
+	private final int steps;
+	private final Carrier carrier;
+	private final Area area;
+	private final List<EnergyAsset> assets;
+	private final HashMap<EnergyAsset, Role> roles;
+	private final List<ExtendedESSIMDateTimeProfile> demandProfiles;
+	private final List<ExtendedESSIMDateTimeProfile> productionProfiles;
+	private int assetCount;
+
+	public NetworkGenerator(long seed, int steps) {
+		this.random = new Random(seed);
+		this.steps = steps;
+
+		ElectricityCommodity electricity = EsdlFactory.eINSTANCE.createElectricityCommodity();
+		electricity.setId("electricity");
+		electricity.setName("Electricity");
+		ExtendedESSIMSingleValueProfile cost = EssimESDLFactory.eINSTANCE.createSingleValue();
+		cost.setValue(0.5);
+		electricity.setCost(cost);
+		carrier = electricity;
+
+		area = EsdlFactory.eINSTANCE.createArea();
+		area.setId("area");
+		area.setName("Generated area");
+
+		assets = new ArrayList<EnergyAsset>();
+		roles = new HashMap<EnergyAsset, Role>();
+		demandProfiles = new ArrayList<ExtendedESSIMDateTimeProfile>();
+		productionProfiles = new ArrayList<ExtendedESSIMDateTimeProfile>();
+		for (int i = 0; i < PROFILES; i++) {
+			demandProfiles.add(createProfile(random, START, steps, 1000.0, 0.3));
+			productionProfiles.add(createProfile(random, START, steps, 4000.0, 1.0));
+		}
+	}
+
+	public Carrier getCarrier() {
+		return carrier;
+	}
+
+	public Area getArea() {
+		return area;
+	}
+
+	public List<EnergyAsset> getAssets() {
+		return assets;
+	}
+
+	public HashMap<EnergyAsset, Role> getRoles() {
+		return roles;
+	}
+
+	public EssimTime getTime() {
+		return new EssimTime(START, START.plus(STEP.getAmount() * (steps - 1), STEP.getUnit()), STEP);
+	}
+
+	/**
+	 * Adds a network of (approximately) the given number of assets: one power
+	 * plant, one bus per FAN_OUT assets and demands and PV installations for the
+	 * rest.
+	 */
+	public void generateNetwork(int size) {
+		generateNetwork(size, true);
+	}
+
+	/**
+	 * Adds a network like {@link #generateNetwork(int)}, optionally without
+	 * profiles. The demands and PV installations then bid their rated power at
+	 * the cost of the carrier, the same in every step.
+	 */
+	public void generateNetwork(int size, boolean withProfiles) {
+		PowerPlant powerPlant = EsdlFactory.eINSTANCE.createPowerPlant();
+		init(powerPlant, "PowerPlant");
+		powerPlant.setPower(1e12);
+		OutPort plantPort = addOutPort(powerPlant);
+		roles.put(powerPlant, Role.PRODUCER);
+
+		int buses = Math.max(1, size / FAN_OUT);
+		List<Bus> busList = new ArrayList<Bus>(buses);
+		for (int i = 0; i < buses; i++) {
+			Bus bus = EsdlFactory.eINSTANCE.createBus();
+			init(bus, "Bus");
+			InPort in = addInPort(bus);
+			addOutPort(bus);
+			if (i == 0) {
+				in.getConnectedTo().add(plantPort);
+			} else {
+				in.getConnectedTo().add(outPort(busList.get((i - 1) / FAN_OUT)));
+			}
+			roles.put(bus, Role.TRANSPORT);
+			busList.add(bus);
+		}
+
+		for (int i = 0; i < size - buses - 1; i++) {
+			Bus bus = busList.get(i % buses);
+			if (i % PRODUCER_RATIO == 0) {
+				Producer pv = EsdlFactory.eINSTANCE.createPVInstallation();
+				init(pv, "PV");
+				pv.setPower(4000.0);
+				OutPort out = addOutPort(pv);
+				if (withProfiles) {
+					out.getProfile().add(reference(productionProfiles.get(random.nextInt(PROFILES))));
+				}
+				inPort(bus).getConnectedTo().add(out);
+				roles.put(pv, Role.PRODUCER);
+			} else {
+				Consumer demand = EsdlFactory.eINSTANCE.createElectricityDemand();
+				init(demand, "Demand");
+				demand.setPower(1000.0);
+				InPort in = addInPort(demand);
+				if (withProfiles) {
+					in.getProfile().add(reference(demandProfiles.get(random.nextInt(PROFILES))));
+				}
+				in.getConnectedTo().add(outPort(bus));
+				roles.put(demand, Role.CONSUMER);
+			}
+		}
+	}
+
+	/**
+	 * Builds, initialises and returns the transport solver for the generated
+	 * assets.
+	 */
+	public TransportSolver createSolver(String simulationId) throws Exception {
+		TransportSolver solver = new TransportSolver("Generated Network", carrier, null, null, roles, null);
+		solver.setSimulationManager(new GeneratedSimulation(simulationId));
+		for (EnergyAsset asset : assets) {
+			solver.addToNetwork(asset);
+		}
+		solver.createTree();
+		solver.init(getTime());
+		return solver;
+	}
+
+	private void init(EnergyAsset asset, String type) {
+		String id = type + "_" + assetCount++;
+		asset.setId(id);
+		asset.setName(id);
+		area.getAsset().add(asset);
+		assets.add(asset);
+	}
+
+	private InPort addInPort(EnergyAsset asset) {
+		InPort port = EsdlFactory.eINSTANCE.createInPort();
+		port.setId(asset.getId() + "_in");
+		port.setCarrier(carrier);
+		asset.getPort().add(port);
+		return port;
+	}
+
+	private OutPort addOutPort(EnergyAsset asset) {
+		OutPort port = EsdlFactory.eINSTANCE.createOutPort();
+		port.setId(asset.getId() + "_out");
+		port.setCarrier(carrier);
+		asset.getPort().add(port);
+		return port;
+	}
+
+	private static InPort inPort(EnergyAsset asset) {
+		return (InPort) asset.getPort().get(0);
+	}
+
+	private static OutPort outPort(EnergyAsset asset) {
+		return (OutPort) asset.getPort().get(1);
+	}
+
+	private ProfileReference reference(ExtendedESSIMDateTimeProfile profile) {
+		ProfileReference reference = EsdlFactory.eINSTANCE.createProfileReference();
+		reference.setReference(profile);
+		return reference;
+	}
+
+	/**
+	 * Creates an hourly power profile around the given mean with a daily pattern
+	 * and some noise.
+	 */
+	static ExtendedESSIMDateTimeProfile createProfile(Random random, LocalDateTime start, int steps, double mean,
+			double amplitude) {
+		ExtendedESSIMDateTimeProfile profile = EssimESDLFactory.eINSTANCE.createDateTimeProfile();
+		profile.setProfileType(ProfileTypeEnum.POWER_IN_W);
+		double phase = random.nextDouble() * 2 * Math.PI;
+		for (int i = 0; i < steps; i++) {
+			ProfileElement element = EsdlFactory.eINSTANCE.createProfileElement();
+			// Profile elements are read in the system time zone (see EssimTime.dateFromGUI)
+			element.setFrom(Date.from(start.plusHours(i).atZone(ZoneId.systemDefault()).toInstant()));
+			double daily = Math.sin(2 * Math.PI * (i % 24) / 24.0 + phase);
+			element.setValue(Math.max(0.0, mean * (1 + amplitude * daily + 0.1 * random.nextGaussian())));
+			profile.getElement().add(element);
+		}
+		return profile;
+	}
+
+	private class GeneratedSimulation implements ISimulationManager {
+		private final String simulationId;
+		private final Executor solverExecutor;
+
+		private GeneratedSimulation(String simulationId) {
+			this.simulationId = simulationId;
+			solverExecutor = SimulationScheduler.getSolverScheduler().newQueue(simulationId);
+		}
+
+		@Override
+		public String getName() {
+			return simulationId;
+		}
+
+		@Override
+		public void addSolvers(List<TransportSolver> solvers) {
+		}
+
+		@Override
+		public void setObservationConsumers(List<IObservationConsumer> consumers) {
+		}
+
+		@Override
+		public LocalDateTime getStartDateTime() {
+			return getTime().getSimulationStartTime();
+		}
+
+		@Override
+		public LocalDateTime getEndDateTime() {
+			return getTime().getSimulationEndTime();
+		}
+
+		@Override
+		public Executor getSolverExecutor() {
+			return solverExecutor;
+		}
+	}
+}
@@ -0,0 +1,101 @@
+/**
+ *  This work is based on original code developed and copyrighted by TNO 2020. 
+ *  Subsequent contributions are licensed to you by the developers of such code and are
+ *  made available to the Project under one or several contributor license agreements.
+ *
+ *  This work is licensed to you under the Apache License, Version 2.0.
+ *  You may obtain a copy of the license at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Contributors:
+ *      TNO         - Initial implementation
+ *  Manager:
+ *      TNO
+ */
+
+package nl.tno.essim.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import nl.tno.essim.commons.BidFunction;
+import nl.tno.essim.commons.Commons;
+import nl.tno.essim.managers.SimulationScheduler;
+import nl.tno.essim.observation.Observation;
+import nl.tno.essim.time.EssimTime;
+import nl.tno.essim.time.Horizon;
+import nl.tno.essim.transportsolver.FlatTree;
+import nl.tno.essim.transportsolver.TransportSolver;
+import nl.tno.essim.transportsolver.nodes.Node;
+
+/**
+ * Aggregation of the bid curves up the tree and allocation of the clearing
+ * price down the tree, with the bid curves of all nodes created beforehand.
+ * Aggregation is measured both from scratch and with the curves of the
+ * previous aggregation unchanged.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class NodeBenchmark {
+
+	@Param({"10", "1000", "100000"})
+	private int nodes;
+
+	private FlatTree tree;
+	private BidFunction summedFunction;
+	private EssimTime time;
+
+	@Setup
+	public void setup() throws Exception {
+		NetworkGenerator generator = new NetworkGenerator(42, 24);
+		generator.generateNetwork(nodes);
+		TransportSolver solver = generator.createSolver("NodeBenchmark");
+		tree = new FlatTree(solver.getTree(), null, SimulationScheduler.getSolverScheduler().newQueue("NodeBenchmark"));
+		time = generator.getTime();
+
+		// Created twice, so that the nodes keep the same curves as in a step before
+		Horizon now = new Horizon(time.getTime(), time.getSimulationStepLength());
+		for (int i = 0; i < 2; i++) {
+			for (Node node : solver.getDeviceNodes()) {
+				node.createBidCurve(time.getSimulationStepLength().getSeconds(), now, Commons.P_MIN, Commons.P_MAX);
+			}
+		}
+		summedFunction = tree.aggregate(0);
+	}
+
+	@Benchmark
+	public BidFunction aggregateDemandFunction() {
+		tree.resetAggregates();
+		return tree.aggregate(0);
+	}
+
+	@Benchmark
+	public BidFunction aggregateUnchangedDemandFunction() {
+		return tree.aggregate(0);
+	}
+
+	@Benchmark
+	public List<Observation> allocateAndPropagate() {
+		List<Observation> observations = new ArrayList<Observation>();
+		tree.allocateAndPropagate(summedFunction, observations, time, 0);
+		return observations;
+	}
+}
@@ -0,0 +1,128 @@
+/**
+ *  This work is based on original code developed and copyrighted by TNO 2020. 
+ *  Subsequent contributions are licensed to you by the developers of such code and are
+ *  made available to the Project under one or several contributor license agreements.
+ *
+ *  This work is licensed to you under the Apache License, Version 2.0.
+ *  You may obtain a copy of the license at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Contributors:
+ *      TNO         - Initial implementation
+ *  Manager:
+ *      TNO
+ */
+
+package nl.tno.essim.benchmarks;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import nl.tno.essim.managers.ObservationManager;
+import nl.tno.essim.observation.IObservation;
+import nl.tno.essim.observation.IObservationConsumer;
+import nl.tno.essim.observation.IObservationManager;
+import nl.tno.essim.observation.IObservationProvider;
+import nl.tno.essim.observation.Observation;
+
+/**
+ * Publishing an observation to a number of consumers that do nothing with it,
+ * from one thread and from several solver threads at once.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ObservationManagerBenchmark {
+
+	@Param({"1", "4"})
+	private int consumers;
+
+	private ObservationManager observationManager;
+	private IObservationProvider source;
+	private IObservation observation;
+	private AtomicLong consumed;
+
+	@Setup
+	public void setup() {
+		consumed = new AtomicLong();
+		observationManager = new ObservationManager("ObservationManagerBenchmark");
+		for (int i = 0; i < consumers; i++) {
+			observationManager.registerConsumer(new CountingConsumer());
+		}
+		source = new BenchmarkProvider();
+		observation = Observation.builder()
+				.observedAt(LocalDateTime.of(2019, 1, 1, 0, 0))
+				.value("allocationEnergy", 1234.5)
+				.value("allocationPrice", 0.5)
+				.tag("assetId", "Demand_1")
+				.tag("capability", "Consumer")
+				.build();
+	}
+
+	@Benchmark
+	public void publish() {
+		observationManager.publish(source, observation);
+	}
+
+	@Benchmark
+	@Threads(4)
+	public void publishConcurrently() {
+		observationManager.publish(source, observation);
+	}
+
+	private class CountingConsumer implements IObservationConsumer {
+
+		@Override
+		public void init(String scenarioName) {
+		}
+
+		@Override
+		public void consume(String simulationRunName, IObservationProvider source, IObservation observation) {
+			consumed.incrementAndGet();
+		}
+
+		@Override
+		public void consumeBatch(String simulationRunName, IObservationProvider source, IObservation observation) {
+			consumed.incrementAndGet();
+		}
+
+		@Override
+		public void cleanup() {
+		}
+	}
+
+	private static class BenchmarkProvider implements IObservationProvider {
+
+		@Override
+		public void setObservationManager(IObservationManager manager) {
+		}
+
+		@Override
+		public String getProviderName() {
+			return "Benchmark";
+		}
+
+		@Override
+		public String getProviderType() {
+			return "Benchmark";
+		}
+	}
+}
@@ -0,0 +1,92 @@
+/**
+ *  This work is based on original code developed and copyrighted by TNO 2020. 
+ *  Subsequent contributions are licensed to you by the developers of such code and are
+ *  made available to the Project under one or several contributor license agreements.
+ *
+ *  This work is licensed to you under the Apache License, Version 2.0.
+ *  You may obtain a copy of the license at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Contributors:
+ *      TNO         - Initial implementation
+ *  Manager:
+ *      TNO
+ */
+
+package nl.tno.essim.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import esdl.EnergySystem;
+import nl.tno.essim.ESSimEngine;
+
+/**
+ * Setting up and running complete simulations of generated scenarios (see
+ * {@link ScenarioGenerator}). Every invocation gets a freshly generated energy
+ * system, as a simulation changes the state of its assets.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgs = {"-Xmx4g"})
+public class ScenarioBenchmark {
+
+	@State(Scope.Thread)
+	public static class Scenario {
+		@Param({"100", "1000"})
+		private int buildings;
+		@Param({"2"})
+		private int days;
+
+		private ScenarioGenerator generator;
+		private EnergySystem energySystem;
+
+		@Setup(Level.Invocation)
+		public void generate() {
+			ScenarioConfiguration configuration = ScenarioConfiguration.builder()
+					.buildingsPerArea(Math.max(1, buildings / 4))
+					.areas(4)
+					.days(days)
+					.build();
+			generator = new ScenarioGenerator(configuration);
+			energySystem = generator.generate();
+		}
+	}
+
+	@State(Scope.Thread)
+	public static class PreparedEngine {
+		private ESSimEngine engine;
+
+		@Setup(Level.Invocation)
+		public void create(Scenario scenario) throws Exception {
+			engine = HeadlessSimulation.createEngine(scenario.generator, scenario.energySystem);
+		}
+	}
+
+	@Benchmark
+	public ESSimEngine createEngine(Scenario scenario) throws Exception {
+		ESSimEngine engine = HeadlessSimulation.createEngine(scenario.generator, scenario.energySystem);
+		engine.getSimulationManager().shutdown();
+		return engine;
+	}
+
+	@Benchmark
+	public void simulate(PreparedEngine prepared) {
+		HeadlessSimulation.run(prepared.engine);
+	}
+}
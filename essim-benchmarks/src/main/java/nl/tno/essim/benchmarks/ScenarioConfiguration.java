@@ -0,0 +1,63 @@
+/**
+ *  This work is based on original code developed and copyrighted by TNO 2020. 
+ *  Subsequent contributions are licensed to you by the developers of such code and are
+ *  made available to the Project under one or several contributor license agreements.
+ *
+ *  This work is licensed to you under the Apache License, Version 2.0.
+ *  You may obtain a copy of the license at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Contributors:
+ *      TNO         - Initial implementation
+ *  Manager:
+ *      TNO
+ */
+
+package nl.tno.essim.benchmarks;
+
+import lombok.Builder;
+import lombok.Getter;
+
+/**
+ * Size and composition of a scenario generated by {@link ScenarioGenerator}.
+ */
+@Getter
+@Builder
+public class ScenarioConfiguration {
+
+	@Builder.Default
+	private long seed = 42;
+	@Builder.Default
+	private int days = 7;
+	@Builder.Default
+	private int areas = 4;
+	@Builder.Default
+	private int buildingsPerArea = 25;
+	/**
+	 * Levels of buses below the bus of every area. Buildings are connected to the
+	 * lowest level.
+	 */
+	@Builder.Default
+	private int transportDepth = 2;
+	@Builder.Default
+	private int fanOut = 4;
+	/**
+	 * Share of the buildings heated by a heat pump, the others have a gas heater.
+	 */
+	@Builder.Default
+	private double heatPumpShare = 0.5;
+	@Builder.Default
+	private double pvShare = 0.3;
+	@Builder.Default
+	private double batteryShare = 0.1;
+	/**
+	 * Number of distinct demand and production profiles shared by the buildings.
+	 */
+	@Builder.Default
+	private int profiles = 8;
+
+	public int getBuildings() {
+		return areas * buildingsPerArea;
+	}
+}
@@ -0,0 +1,348 @@
+/**
+ *  This work is based on original code developed and copyrighted by TNO 2020. 
+ *  Subsequent contributions are licensed to you by the developers of such code and are
+ *  made available to the Project under one or several contributor license agreements.
+ *
+ *  This work is licensed to you under the Apache License, Version 2.0.
+ *  You may obtain a copy of the license at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Contributors:
+ *      TNO         - Initial implementation
+ *  Manager:
+ *      TNO
+ */
+
+package nl.tno.essim.benchmarks;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import esdl.AbstractBuilding;
+import esdl.Area;
+import esdl.Battery;
+import esdl.Building;
+import esdl.Bus;
+import esdl.Carrier;
+import esdl.Carriers;
+import esdl.DrivenByDemand;
+import esdl.ElectricityCommodity;
+import esdl.ElectricityDemand;
+import esdl.EnergyAsset;
+import esdl.EnergySystem;
+import esdl.EnergySystemInformation;
+import esdl.EsdlFactory;
+import esdl.EssimESDLFactory;
+import esdl.GasCommodity;
+import esdl.GasHeater;
+import esdl.GenericProfile;
+import esdl.HeatCommodity;
+import esdl.HeatPump;
+import esdl.HeatingDemand;
+import esdl.Import;
+import esdl.InPort;
+import esdl.Instance;
+import esdl.Joint;
+import esdl.OutPort;
+import esdl.PVInstallation;
+import esdl.PowerPlant;
+import esdl.ProfileReference;
+import esdl.Profiles;
+import esdl.Services;
+import essim.impl.ExtendedESSIMDateTimeProfile;
+import essim.impl.ExtendedESSIMSingleValueProfile;
+import nl.tno.essim.model.EssimSimulation;
+import nl.tno.essim.model.EssimSimulationImpl;
+import nl.tno.essim.time.EssimTime;
+
+/**
+ * Generates energy systems of arbitrary size for load tests, without any
+ * external data: all profiles are in-memory {@link ExtendedESSIMDateTimeProfile}s
+ * stored in the energy system information and referenced from the ports.
+ *
+ * Every area has a tree of buses below a national bus fed by a power plant, and
+ * a gas joint fed by a gas import. Every building has an electricity demand and
+ * a heating demand, heated by either a heat pump or a gas heater (driven by
+ * demand), and optionally a PV installation and a battery. This gives one
+ * electricity network, one gas network and one heat network per building, with
+ * the conversions ordering the solvers.
+ *
+ * The result can be simulated directly (see {@link HeadlessSimulation}) or
+ * saved with {@link nl.tno.essim.ESSimEngine#saveEcoreResource}.
+ */
+public class ScenarioGenerator {
+
+	public static final LocalDateTime START = LocalDateTime.of(2019, 1, 1, 0, 0);
+	public static final String TIME_STEP = "1h";
+
+	private final ScenarioConfiguration configuration;
+	private final Random random;
+	private final int steps;
+	private EnergySystem energySystem;
+	private Services services;
+	private Profiles profiles;
+	private ElectricityCommodity electricity;
+	private GasCommodity gas;
+	private HeatCommodity heat;
+	private List<ExtendedESSIMDateTimeProfile> electricityDemandProfiles;
+	private List<ExtendedESSIMDateTimeProfile> heatingDemandProfiles;
+	private List<ExtendedESSIMDateTimeProfile> productionProfiles;
+	private int idCount;
+
+	public ScenarioGenerator(ScenarioConfiguration configuration) {
+		this.configuration = configuration;
+		this.random = new Random(configuration.getSeed());
+		this.steps = configuration.getDays() * 24;
+	}
+
+	public LocalDateTime getEndDateTime() {
+		return START.plusHours(steps - 1);
+	}
+
+	/**
+	 * @return a simulation of the generated period without any observation
+	 *         consumers
+	 */
+	public EssimSimulation createSimulation(String scenarioId) {
+		EssimSimulation simulation = new EssimSimulationImpl();
+		simulation.setScenarioID(scenarioId);
+		simulation.setUser("ScenarioGenerator");
+		simulation.setStartDate(EssimTime.localDateTimeToDate(START));
+		simulation.setEndDate(EssimTime.localDateTimeToDate(getEndDateTime()));
+		simulation.setTimeStep(TIME_STEP);
+		return simulation;
+	}
+
+	public EnergySystem generate() {
+		energySystem = EsdlFactory.eINSTANCE.createEnergySystem();
+		energySystem.setId(nextId("EnergySystem"));
+		energySystem.setName("Generated " + configuration.getBuildings() + " buildings");
+		services = EsdlFactory.eINSTANCE.createServices();
+		energySystem.setServices(services);
+
+		EnergySystemInformation information = EsdlFactory.eINSTANCE.createEnergySystemInformation();
+		Carriers carriers = EsdlFactory.eINSTANCE.createCarriers();
+		information.setCarriers(carriers);
+		profiles = EsdlFactory.eINSTANCE.createProfiles();
+		information.setProfiles(profiles);
+		energySystem.setEnergySystemInformation(information);
+
+		electricity = EsdlFactory.eINSTANCE.createElectricityCommodity();
+		initCarrier(electricity, "Electricity", 0.5);
+		gas = EsdlFactory.eINSTANCE.createGasCommodity();
+		initCarrier(gas, "Natural Gas", 0.3);
+		heat = EsdlFactory.eINSTANCE.createHeatCommodity();
+		initCarrier(heat, "Heat", 0.0);
+		carriers.getCarrier().add(electricity);
+		carriers.getCarrier().add(gas);
+		carriers.getCarrier().add(heat);
+
+		electricityDemandProfiles = new ArrayList<ExtendedESSIMDateTimeProfile>();
+		heatingDemandProfiles = new ArrayList<ExtendedESSIMDateTimeProfile>();
+		productionProfiles = new ArrayList<ExtendedESSIMDateTimeProfile>();
+		for (int i = 0; i < configuration.getProfiles(); i++) {
+			electricityDemandProfiles.add(addProfile(500.0, 0.4));
+			heatingDemandProfiles.add(addProfile(2000.0, 0.5));
+			productionProfiles.add(addProfile(1500.0, 1.0));
+		}
+
+		Area mainArea = EsdlFactory.eINSTANCE.createArea();
+		mainArea.setId(nextId("Area"));
+		mainArea.setName("Generated");
+		Instance instance = EsdlFactory.eINSTANCE.createInstance();
+		instance.setId(nextId("Instance"));
+		instance.setName("Generated");
+		instance.setArea(mainArea);
+		energySystem.getInstance().add(instance);
+
+		PowerPlant powerPlant = EsdlFactory.eINSTANCE.createPowerPlant();
+		init(powerPlant, "PowerPlant", mainArea);
+		powerPlant.setPower(1e12);
+		Bus nationalBus = EsdlFactory.eINSTANCE.createBus();
+		init(nationalBus, "Bus", mainArea);
+		connect(addOutPort(powerPlant, electricity), addInPort(nationalBus, electricity));
+		OutPort nationalOut = addOutPort(nationalBus, electricity);
+
+		Import gasImport = EsdlFactory.eINSTANCE.createImport();
+		init(gasImport, "GasImport", mainArea);
+		gasImport.setPower(1e12);
+		OutPort gasOut = addOutPort(gasImport, gas);
+
+		for (int a = 0; a < configuration.getAreas(); a++) {
+			Area area = EsdlFactory.eINSTANCE.createArea();
+			area.setId(nextId("Area"));
+			area.setName(area.getId());
+			mainArea.getArea().add(area);
+			generateArea(area, nationalOut, gasOut);
+		}
+		return energySystem;
+	}
+
+	private void generateArea(Area area, OutPort nationalOut, OutPort gasOut) {
+		Bus areaBus = EsdlFactory.eINSTANCE.createBus();
+		init(areaBus, "Bus", area);
+		connect(nationalOut, addInPort(areaBus, electricity));
+		List<OutPort> level = new ArrayList<OutPort>();
+		level.add(addOutPort(areaBus, electricity));
+		for (int d = 0; d < configuration.getTransportDepth(); d++) {
+			List<OutPort> nextLevel = new ArrayList<OutPort>();
+			for (OutPort parent : level) {
+				for (int f = 0; f < configuration.getFanOut(); f++) {
+					Bus bus = EsdlFactory.eINSTANCE.createBus();
+					init(bus, "Bus", area);
+					connect(parent, addInPort(bus, electricity));
+					nextLevel.add(addOutPort(bus, electricity));
+				}
+			}
+			level = nextLevel;
+		}
+
+		Joint gasJoint = EsdlFactory.eINSTANCE.createJoint();
+		init(gasJoint, "GasJoint", area);
+		connect(gasOut, addInPort(gasJoint, gas));
+		OutPort areaGasOut = addOutPort(gasJoint, gas);
+
+		for (int b = 0; b < configuration.getBuildingsPerArea(); b++) {
+			Building building = EsdlFactory.eINSTANCE.createBuilding();
+			building.setId(nextId("Building"));
+			building.setName(building.getId());
+			area.getAsset().add(building);
+			generateBuilding(building, level.get(b % level.size()), areaGasOut);
+		}
+	}
+
+	private void generateBuilding(Building building, OutPort busOut, OutPort gasOut) {
+		InPort busIn = (InPort) busOut.getEnergyasset().getPort().get(0);
+
+		ElectricityDemand electricityDemand = EsdlFactory.eINSTANCE.createElectricityDemand();
+		init(electricityDemand, "ElectricityDemand", building);
+		electricityDemand.setPower(5000.0);
+		InPort electricityIn = addInPort(electricityDemand, electricity);
+		electricityIn.getProfile().add(reference(pick(electricityDemandProfiles)));
+		connect(busOut, electricityIn);
+
+		HeatingDemand heatingDemand = EsdlFactory.eINSTANCE.createHeatingDemand();
+		init(heatingDemand, "HeatingDemand", building);
+		heatingDemand.setPower(10000.0);
+		InPort heatIn = addInPort(heatingDemand, heat);
+		heatIn.getProfile().add(reference(pick(heatingDemandProfiles)));
+
+		OutPort heatOut;
+		if (random.nextDouble() < configuration.getHeatPumpShare()) {
+			HeatPump heatPump = EsdlFactory.eINSTANCE.createHeatPump();
+			init(heatPump, "HeatPump", building);
+			heatPump.setPower(10000.0);
+			heatPump.setCOP(3.5);
+			connect(busOut, addInPort(heatPump, electricity));
+			heatOut = addOutPort(heatPump, heat);
+			heatPump.setControlStrategy(drivenByDemand(heatPump, heatOut));
+		} else {
+			GasHeater gasHeater = EsdlFactory.eINSTANCE.createGasHeater();
+			init(gasHeater, "GasHeater", building);
+			gasHeater.setPower(15000.0);
+			gasHeater.setEfficiency(0.9);
+			connect(gasOut, addInPort(gasHeater, gas));
+			heatOut = addOutPort(gasHeater, heat);
+			gasHeater.setControlStrategy(drivenByDemand(gasHeater, heatOut));
+		}
+		connect(heatOut, heatIn);
+
+		if (random.nextDouble() < configuration.getPvShare()) {
+			PVInstallation pv = EsdlFactory.eINSTANCE.createPVInstallation();
+			init(pv, "PV", building);
+			pv.setPower(4000.0);
+			OutPort pvOut = addOutPort(pv, electricity);
+			pvOut.getProfile().add(reference(pick(productionProfiles)));
+			connect(pvOut, busIn);
+		}
+
+		if (random.nextDouble() < configuration.getBatteryShare()) {
+			Battery battery = EsdlFactory.eINSTANCE.createBattery();
+			init(battery, "Battery", building);
+			battery.setCapacity(3.6e7);
+			battery.setMaxChargeRate(5000.0);
+			battery.setMaxDischargeRate(5000.0);
+			battery.setFillLevel(0.5);
+			connect(busOut, addInPort(battery, electricity));
+		}
+	}
+
+	private DrivenByDemand drivenByDemand(EnergyAsset asset, OutPort outPort) {
+		DrivenByDemand drivenByDemand = EsdlFactory.eINSTANCE.createDrivenByDemand();
+		drivenByDemand.setId(nextId("DrivenByDemand"));
+		drivenByDemand.setName("DrivenByDemand for " + asset.getName());
+		drivenByDemand.setOutPort(outPort);
+		services.getService().add(drivenByDemand);
+		return drivenByDemand;
+	}
+
+	private void initCarrier(Carrier carrier, String name, double cost) {
+		carrier.setId(nextId("Carrier"));
+		carrier.setName(name);
+		ExtendedESSIMSingleValueProfile costProfile = EssimESDLFactory.eINSTANCE.createSingleValue();
+		costProfile.setId(nextId("Cost"));
+		costProfile.setValue(cost);
+		carrier.setCost(costProfile);
+	}
+
+	private ExtendedESSIMDateTimeProfile addProfile(double mean, double amplitude) {
+		ExtendedESSIMDateTimeProfile profile = NetworkGenerator.createProfile(random, START, steps, mean, amplitude);
+		profile.setId(nextId("Profile"));
+		profiles.getProfile().add(profile);
+		return profile;
+	}
+
+	private ExtendedESSIMDateTimeProfile pick(List<ExtendedESSIMDateTimeProfile> profileList) {
+		return profileList.get(random.nextInt(profileList.size()));
+	}
+
+	private ProfileReference reference(GenericProfile profile) {
+		ProfileReference reference = EsdlFactory.eINSTANCE.createProfileReference();
+		reference.setId(nextId("ProfileReference"));
+		reference.setReference(profile);
+		return reference;
+	}
+
+	private void init(EnergyAsset asset, String type, Area area) {
+		initAsset(asset, type);
+		area.getAsset().add(asset);
+	}
+
+	private void init(EnergyAsset asset, String type, AbstractBuilding building) {
+		initAsset(asset, type);
+		building.getAsset().add(asset);
+	}
+
+	private void initAsset(EnergyAsset asset, String type) {
+		String id = nextId(type);
+		asset.setId(id);
+		asset.setName(id);
+	}
+
+	private InPort addInPort(EnergyAsset asset, Carrier carrier) {
+		InPort port = EsdlFactory.eINSTANCE.createInPort();
+		port.setId(asset.getId() + "_in_" + asset.getPort().size());
+		port.setCarrier(carrier);
+		asset.getPort().add(port);
+		return port;
+	}
+
+	private OutPort addOutPort(EnergyAsset asset, Carrier carrier) {
+		OutPort port = EsdlFactory.eINSTANCE.createOutPort();
+		port.setId(asset.getId() + "_out_" + asset.getPort().size());
+		port.setCarrier(carrier);
+		asset.getPort().add(port);
+		return port;
+	}
+
+	private static void connect(OutPort from, InPort to) {
+		to.getConnectedTo().add(from);
+	}
+
+	private String nextId(String type) {
+		return type + "_" + idCount++;
+	}
+}
@@ -0,0 +1,107 @@
+/**
+ *  This work is based on original code developed and copyrighted by TNO 2020. 
+ *  Subsequent contributions are licensed to you by the developers of such code and are
+ *  made available to the Project under one or several contributor license agreements.
+ *
+ *  This work is licensed to you under the Apache License, Version 2.0.
+ *  You may obtain a copy of the license at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Contributors:
+ *      TNO         - Initial implementation
+ *  Manager:
+ *      TNO
+ */
+
+package nl.tno.essim.benchmarks;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.emf.common.util.EList;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import common.DataProcessor;
+import common.TimeSeriesDataCache;
+import esdl.Duration;
+import esdl.ProfileElement;
+import esdl.ProfileTypeEnum;
+import nl.tno.essim.time.EssimDuration;
+import nl.tno.essim.util.Converter;
+
+/**
+ * Reading one simulation step from a cached InfluxDB series of a year, walking
+ * through the year step by step as a simulation does: by searching the series
+ * for every step, and through a reader that continues where the previous step
+ * ended.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TimeSeriesDataCacheBenchmark {
+
+	private static final LocalDateTime START = LocalDateTime.of(2019, 1, 1, 0, 0);
+
+	@Param({"15", "60"})
+	private int resolutionMinutes;
+
+	private TimeSeriesDataCache cache;
+	private TimeSeriesDataCache.Reader reader;
+	private EssimDuration step;
+	private Duration precision;
+	private DataProcessor dataProcessor;
+	private int steps;
+	private int index;
+
+	@Setup
+	public void setup() {
+		Random random = new Random(42);
+		int size = 365 * 24 * 60 / resolutionMinutes;
+		List<List<Object>> series = new ArrayList<List<Object>>(size);
+		for (int i = 0; i < size; i++) {
+			LocalDateTime t = START.plusMinutes((long) i * resolutionMinutes);
+			series.add(Arrays.asList(t.format(DateTimeFormatter.ISO_DATE_TIME), 1000.0 * random.nextDouble()));
+		}
+
+		step = EssimDuration.of(1, ChronoUnit.HOURS);
+		cache = new TimeSeriesDataCache("benchmark", series, START, START.plusYears(1), step, 0.0);
+		precision = Converter.toESDLDuration(step);
+		dataProcessor = new DataProcessor(ProfileTypeEnum.POWER_IN_W, 1.0);
+		reader = cache.reader(dataProcessor);
+		steps = 365 * 24;
+	}
+
+	@Benchmark
+	public EList<ProfileElement> get() {
+		LocalDateTime from = START.plus(index * step.getAmount(), step.getUnit());
+		index = (index + 1) % steps;
+		return cache.get(from, from.plus(step.getAmount(), step.getUnit()), precision, dataProcessor);
+	}
+
+	@Benchmark
+	public EList<ProfileElement> sequentialRead() {
+		LocalDateTime from = START.plus(index * step.getAmount(), step.getUnit());
+		index = (index + 1) % steps;
+		return reader.get(from, from.plus(step.getAmount(), step.getUnit()), precision);
+	}
+}
@@ -0,0 +1,80 @@
+/**
+ *  This work is based on original code developed and copyrighted by TNO 2020. 
+ *  Subsequent contributions are licensed to you by the developers of such code and are
+ *  made available to the Project under one or several contributor license agreements.
+ *
+ *  This work is licensed to you under the Apache License, Version 2.0.
+ *  You may obtain a copy of the license at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Contributors:
+ *      TNO         - Initial implementation
+ *  Manager:
+ *      TNO
+ */
+
+package nl.tno.essim.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import nl.tno.essim.time.EssimTime;
+import nl.tno.essim.transportsolver.TransportSolver;
+
+/**
+ * One simulation step of a generated network: creating the bid curves,
+ * aggregating them, clearing and propagating the price. No observation
+ * manager is set, so observations are built but not published. Consecutive
+ * invocations walk through the generated day.
+ *
+ * Without profiles all devices bid the same in every step, so they keep their
+ * curves, the aggregated curves and the allocations of the step before.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgs = {"-Xmx4g"})
+public class TransportSolverBenchmark {
+
+	@Param({"10", "100", "1000", "10000", "100000"})
+	private int nodes;
+
+	@Param({"true", "false"})
+	private boolean profiles;
+
+	private NetworkGenerator generator;
+	private TransportSolver solver;
+	private EssimTime time;
+
+	@Setup(Level.Trial)
+	public void setup() throws Exception {
+		generator = new NetworkGenerator(42, 24);
+		generator.generateNetwork(nodes, profiles);
+		solver = generator.createSolver("TransportSolverBenchmark");
+		time = generator.getTime();
+	}
+
+	@Benchmark
+	public void step() {
+		solver.step(time);
+		time.nextTimeStep();
+		if (time.getTime().isAfter(time.getSimulationEndTime())) {
+			time = generator.getTime();
+		}
+	}
+}
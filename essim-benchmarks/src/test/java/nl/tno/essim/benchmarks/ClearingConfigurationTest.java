@@ -0,0 +1,192 @@
+/**
+ *  This work is based on original code developed and copyrighted by TNO 2020. 
+ *  Subsequent contributions are licensed to you by the developers of such code and are
+ *  made available to the Project under one or several contributor license agreements.
+ *
+ *  This work is licensed to you under the Apache License, Version 2.0.
+ *  You may obtain a copy of the license at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Contributors:
+ *      TNO         - Initial implementation
+ *  Manager:
+ *      TNO
+ */
+
+package nl.tno.essim.benchmarks;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.junit.Test;
+
+import nl.tno.essim.ESSimEngine;
+import nl.tno.essim.observation.IObservation;
+import nl.tno.essim.observation.IObservationConsumer;
+import nl.tno.essim.observation.IObservationProvider;
+
+/**
+ * Simulates a generated scenario with different clearing settings and compares
+ * the prices and allocations with those of the plain aggregation of all
+ * curves. The settings are read from the environment once per JVM, so every
+ * run is a JVM of its own (see {@link #main(String[])}).
+ */
+public class ClearingConfigurationTest {
+
+	private static final String[] SETTINGS = {"CLEARING_ENGINE", "INFLEXIBLE_PRECOMPUTE_LIMIT",
+			"PARALLEL_SUBTREE_SIZE", "SOLVER_THREADS", "TIME_PARALLEL_CHUNK_STEPS", "CURVE_SIMPLIFY_POINTS"};
+	private static final double TOLERANCE = 1e-6;
+
+	@Test(timeout = 600000)
+	public void precomputedHorizonGivesSameResults() throws Exception {
+		assertSameResults(baseline(), simulate(settings("aggregate", null, "0", "1")), false);
+	}
+
+	@Test(timeout = 600000)
+	public void breakpointMergeGivesSameResults() throws Exception {
+		assertSameResults(baseline(), simulate(settings("merge", "0", "0", "1")), false);
+		assertSameResults(baseline(), simulate(settings("merge", null, "0", "1")), false);
+	}
+
+	@Test(timeout = 600000)
+	public void priceGridGivesPricesWithinResolution() throws Exception {
+		// Allocations at a price within the resolution may differ by a whole step
+		// of a curve, so only the prices are compared
+		assertSameResults(baseline(), simulate(settings("grid", null, "0", "1")), true);
+	}
+
+	@Test(timeout = 600000)
+	public void parallelSubtreesGiveSameResults() throws Exception {
+		assertSameResults(baseline(), simulate(settings("aggregate", "0", "2", "4")), false);
+		assertSameResults(baseline(), simulate(settings("aggregate", null, "2", "4")), false);
+	}
+
+	private static Map<String, String> settings(String engine, String precomputeLimit, String subtreeSize,
+			String threads) {
+		Map<String, String> settings = new HashMap<String, String>();
+		settings.put("CLEARING_ENGINE", engine);
+		settings.put("INFLEXIBLE_PRECOMPUTE_LIMIT", precomputeLimit);
+		settings.put("PARALLEL_SUBTREE_SIZE", subtreeSize);
+		settings.put("SOLVER_THREADS", threads);
+		return settings;
+	}
+
+	private static TreeMap<String, TreeMap<String, Object>> baseline() throws Exception {
+		return simulate(settings("aggregate", "0", "0", "1"));
+	}
+
+	private static void assertSameResults(TreeMap<String, TreeMap<String, Object>> expected,
+			TreeMap<String, TreeMap<String, Object>> actual, boolean pricesOnly) {
+		assertFalse(expected.isEmpty());
+		assertEquals(expected.keySet(), actual.keySet());
+		for (Map.Entry<String, TreeMap<String, Object>> entry : expected.entrySet()) {
+			TreeMap<String, Object> values = actual.get(entry.getKey());
+			if (pricesOnly) {
+				if (values.containsKey("matchingPrice")) {
+					Object resolution = values.get("priceResolution");
+					double delta = resolution == null ? TOLERANCE : (Double) resolution * (1.0 + TOLERANCE);
+					assertEquals(entry.getKey(), (Double) entry.getValue().get("matchingPrice"),
+							(Double) values.get("matchingPrice"), delta);
+				}
+				continue;
+			}
+			for (Map.Entry<String, Object> value : entry.getValue().entrySet()) {
+				String message = entry.getKey() + " " + value.getKey();
+				Object other = values.get(value.getKey());
+				if (value.getValue() instanceof Number && other instanceof Number) {
+					double a = ((Number) value.getValue()).doubleValue();
+					double b = ((Number) other).doubleValue();
+					assertEquals(message, a, b, TOLERANCE * Math.max(1.0, Math.max(Math.abs(a), Math.abs(b))));
+				} else {
+					assertEquals(message, value.getValue(), other);
+				}
+			}
+		}
+	}
+
+	private static TreeMap<String, TreeMap<String, Object>> simulate(Map<String, String> settings)
+			throws Exception {
+		File results = File.createTempFile("essim-clearing", ".ser");
+		try {
+			ProcessBuilder builder = new ProcessBuilder(
+					new File(System.getProperty("java.home"), "bin" + File.separator + "java").getPath(), "-cp",
+					System.getProperty("java.class.path"), ClearingConfigurationTest.class.getName(),
+					results.getPath());
+			for (String setting : SETTINGS) {
+				builder.environment().remove(setting);
+			}
+			for (Map.Entry<String, String> setting : settings.entrySet()) {
+				if (setting.getValue() != null) {
+					builder.environment().put(setting.getKey(), setting.getValue());
+				}
+			}
+			builder.inheritIO();
+			assertEquals("Simulation with " + settings + " failed", 0, builder.start().waitFor());
+			try (ObjectInputStream in = new ObjectInputStream(new FileInputStream(results))) {
+				@SuppressWarnings("unchecked")
+				TreeMap<String, TreeMap<String, Object>> observations = (TreeMap<String, TreeMap<String, Object>>) in
+						.readObject();
+				return observations;
+			}
+		} finally {
+			results.delete();
+		}
+	}
+
+	/**
+	 * Simulates the scenario with the settings in the environment and writes its
+	 * observations, by time and tags, to the file in the first argument.
+	 */
+	public static void main(String[] args) throws Exception {
+		ScenarioConfiguration configuration = ScenarioConfiguration.builder().areas(2).buildingsPerArea(10).days(2)
+				.build();
+		ScenarioGenerator generator = new ScenarioGenerator(configuration);
+		ESSimEngine engine = HeadlessSimulation.createEngine(generator, generator.generate());
+		ObservationCollector collector = new ObservationCollector();
+		engine.getObservationManager().registerConsumer(collector);
+		HeadlessSimulation.run(engine);
+		assertTrue(engine.getStatus() >= 0);
+		try (ObjectOutputStream out = new ObjectOutputStream(new FileOutputStream(args[0]))) {
+			out.writeObject(collector.observations);
+		}
+		System.exit(0);
+	}
+
+	private static class ObservationCollector implements IObservationConsumer {
+		private final TreeMap<String, TreeMap<String, Object>> observations =
+				new TreeMap<String, TreeMap<String, Object>>();
+
+		@Override
+		public void init(String scenarioName) {
+		}
+
+		@Override
+		public synchronized void consume(String simulationRunName, IObservationProvider source,
+				IObservation observation) {
+			TreeMap<String, Object> values = new TreeMap<String, Object>(observation.getValues());
+			String key = observation.getObservedAt() + " " + new TreeMap<String, String>(observation.getTags());
+			if (observations.put(key, values) != null) {
+				throw new IllegalStateException("Observations with the same time and tags");
+			}
+		}
+
+		@Override
+		public void consumeBatch(String simulationRunName, IObservationProvider source, IObservation observation) {
+		}
+
+		@Override
+		public void cleanup() {
+		}
+	}
+}
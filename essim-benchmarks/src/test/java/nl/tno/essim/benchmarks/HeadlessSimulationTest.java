@@ -0,0 +1,210 @@
+/**
+ *  This work is based on original code developed and copyrighted by TNO 2020. 
+ *  Subsequent contributions are licensed to you by the developers of such code and are
+ *  made available to the Project under one or several contributor license agreements.
+ *
+ *  This work is licensed to you under the Apache License, Version 2.0.
+ *  You may obtain a copy of the license at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Contributors:
+ *      TNO         - Initial implementation
+ *  Manager:
+ *      TNO
+ */
+
+package nl.tno.essim.benchmarks;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.junit.Test;
+
+import nl.tno.essim.ESSimEngine;
+import nl.tno.essim.commons.ISimulationManager;
+import nl.tno.essim.commons.Simulatable;
+import nl.tno.essim.commons.SimulationStatus;
+import nl.tno.essim.observation.IObservation;
+import nl.tno.essim.observation.IObservationConsumer;
+import nl.tno.essim.observation.IObservationManager;
+import nl.tno.essim.observation.IObservationProvider;
+import nl.tno.essim.time.EssimTime;
+
+public class HeadlessSimulationTest {
+
+	private static final String FAILURE = "Step failed on purpose";
+
+	@Test(timeout = 120000)
+	public void generatedScenarioRunsBalanced() throws Exception {
+		ScenarioConfiguration configuration = ScenarioConfiguration.builder().areas(2).buildingsPerArea(4).days(1)
+				.build();
+		ScenarioGenerator generator = new ScenarioGenerator(configuration);
+		ESSimEngine engine = HeadlessSimulation.createEngine(generator, generator.generate());
+		ObservationRecorder recorder = new ObservationRecorder();
+		engine.getObservationManager().registerConsumer(recorder);
+		HeadlessSimulation.run(engine);
+		assertTrue("Simulation ended with status " + engine.getStatus(), engine.getStatus() >= 0);
+
+		// Every network is cleared in every step, with the energy of all its assets
+		// adding up to (almost) nothing. There is a heat network per building, so
+		// networks are told apart by their id rather than their carrier.
+		Map<LocalDateTime, Map<String, Double>> imbalances = new TreeMap<LocalDateTime, Map<String, Double>>();
+		Map<String, String> carriers = new HashMap<String, String>();
+		Map<String, Double> allocations = new HashMap<String, Double>();
+		for (IObservation observation : recorder.observations) {
+			Map<String, String> tags = observation.getTags();
+			Map<String, Object> values = observation.getValues();
+			if (tags.containsKey("transportNetworkId")) {
+				Map<String, Double> step = imbalances.get(observation.getObservedAt());
+				if (step == null) {
+					step = new HashMap<String, Double>();
+					imbalances.put(observation.getObservedAt(), step);
+				}
+				step.put(tags.get("transportNetworkId"), ((Number) values.get("imbalanceEnergy")).doubleValue());
+				carriers.put(tags.get("transportNetworkId"), tags.get("carrierId"));
+			} else if (values.containsKey("allocationEnergy")) {
+				String key = observation.getObservedAt() + " " + tags.get("carrierId");
+				double energy = Math.abs(((Number) values.get("allocationEnergy")).doubleValue());
+				allocations.put(key, allocations.getOrDefault(key, 0.0) + energy);
+			}
+		}
+		assertTrue("Only " + imbalances.size() + " steps", imbalances.size() > 1);
+		int networks = imbalances.values().iterator().next().size();
+		assertTrue(networks > 0);
+		for (Map.Entry<LocalDateTime, Map<String, Double>> step : imbalances.entrySet()) {
+			assertEquals("Networks cleared at " + step.getKey(), networks, step.getValue().size());
+			for (Map.Entry<String, Double> network : step.getValue().entrySet()) {
+				// All energy of the carrier at this step bounds the rounding errors
+				double allocated = allocations.getOrDefault(step.getKey() + " " + carriers.get(network.getKey()), 0.0);
+				assertEquals("Imbalance of " + network.getKey() + " at " + step.getKey(), 0.0, network.getValue(),
+						1e-6 * Math.max(1.0, allocated));
+			}
+		}
+	}
+
+	@Test(timeout = 60000)
+	public void failingStepEndsRun() throws Exception {
+		ScenarioConfiguration configuration = ScenarioConfiguration.builder().areas(1).buildingsPerArea(2).days(1)
+				.build();
+		ScenarioGenerator generator = new ScenarioGenerator(configuration);
+		ESSimEngine engine = HeadlessSimulation.createEngine(generator, generator.generate());
+		engine.getSimulationManager().addOtherSimulatable(new FailingSimulatable());
+		try {
+			HeadlessSimulation.run(engine);
+			fail("Simulation with a failing step did not fail");
+		} catch (IllegalStateException e) {
+			assertTrue(e.getMessage(), e.getMessage().contains(FAILURE));
+		} finally {
+			// A failed simulation leaves the thread that ran it interrupted
+			Thread.interrupted();
+		}
+	}
+
+	@Test(timeout = 120000)
+	public void chunkedRunMatchesLockstepRun() throws Exception {
+		// Without heat pumps and batteries the electricity network is time independent
+		ScenarioConfiguration configuration = ScenarioConfiguration.builder().areas(1).buildingsPerArea(8).days(2)
+				.heatPumpShare(0).batteryShare(0).build();
+		List<IObservation> lockstep = simulate(configuration, 0);
+		List<IObservation> chunked = simulate(configuration, 5);
+
+		assertFalse(lockstep.isEmpty());
+		assertEquals(sorted(lockstep), sorted(chunked));
+		for (int i = 1; i < chunked.size(); i++) {
+			LocalDateTime previous = chunked.get(i - 1).getObservedAt();
+			assertFalse("Observation " + i + " is out of time order",
+					chunked.get(i).getObservedAt().isBefore(previous));
+		}
+	}
+
+	private static List<IObservation> simulate(ScenarioConfiguration configuration, int chunkSteps)
+			throws Exception {
+		ScenarioGenerator generator = new ScenarioGenerator(configuration);
+		ESSimEngine engine = HeadlessSimulation.createEngine(generator, generator.generate());
+		engine.getSimulationManager().setTimeParallelChunkSteps(chunkSteps);
+		ObservationRecorder recorder = new ObservationRecorder();
+		engine.getObservationManager().registerConsumer(recorder);
+		HeadlessSimulation.run(engine);
+		return recorder.observations;
+	}
+
+	// Observations of the same timestep are published in any order
+	private static List<String> sorted(List<IObservation> observations) {
+		List<String> result = new ArrayList<String>();
+		for (IObservation observation : observations) {
+			result.add(observation.getObservedAt() + " " + new TreeMap<String, String>(observation.getTags()) + " "
+					+ new TreeMap<String, Object>(observation.getValues()));
+		}
+		Collections.sort(result);
+		return result;
+	}
+
+	private static class ObservationRecorder implements IObservationConsumer {
+		private final List<IObservation> observations = Collections.synchronizedList(new ArrayList<IObservation>());
+
+		@Override
+		public void init(String scenarioName) {
+		}
+
+		@Override
+		public void consume(String simulationRunName, IObservationProvider source, IObservation observation) {
+			observations.add(observation);
+		}
+
+		@Override
+		public void consumeBatch(String simulationRunName, IObservationProvider source, IObservation observation) {
+		}
+
+		@Override
+		public void cleanup() {
+		}
+	}
+
+	private static class FailingSimulatable implements Simulatable {
+
+		@Override
+		public void init(EssimTime timestamp) {
+		}
+
+		@Override
+		public void step(EssimTime timestamp) {
+			throw new IllegalStateException(FAILURE);
+		}
+
+		@Override
+		public void stop() {
+		}
+
+		@Override
+		public void reset() {
+		}
+
+		@Override
+		public SimulationStatus getState() {
+			return SimulationStatus.STARTED;
+		}
+
+		@Override
+		public void pause() {
+		}
+
+		@Override
+		public void setSimulationManager(ISimulationManager manager) {
+		}
+
+		@Override
+		public void setObservationManager(IObservationManager manager) {
+		}
+	}
+}
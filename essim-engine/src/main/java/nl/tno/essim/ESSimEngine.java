@@ -18,8 +18,8 @@ package nl.tno.essim;
 
 import java.io.File;
 import java.io.IOException;
-import java.nio.charset.StandardCharsets;
-import java.nio.file.Files;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.time.LocalDateTime;
 import java.time.ZoneId;
 import java.time.ZoneOffset;
@@ -30,7 +30,6 @@ import java.util.Base64;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
-import java.util.Map.Entry;
 import java.util.TreeMap;
 import java.util.UUID;
 import java.util.regex.Matcher;
@@ -58,13 +57,11 @@ import esdl.EnergySystem;
 import esdl.EnergySystemInformation;
 import esdl.EsdlFactory;
 import esdl.EssimESDLPackage;
-import esdl.InPort;
 import esdl.Instance;
 import esdl.OutPort;
 import esdl.Port;
 import esdl.Service;
 import esdl.Services;
-import esdl.Transport;
 import essim.EssimPackage;
 import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
@@ -95,6 +92,10 @@ import nl.tno.essim.observation.consumers.NATSObservationConsumer;
 import nl.tno.essim.time.EssimDuration;
 import nl.tno.essim.time.EssimTime;
 import nl.tno.essim.transportsolver.ChocoOptimiser;
+import nl.tno.essim.transportsolver.NetworkTopology;
+import nl.tno.essim.transportsolver.NetworkTopology.CarrierNetworks;
+import nl.tno.essim.transportsolver.SolverGraph;
+import nl.tno.essim.transportsolver.SolverLayering;
 import nl.tno.essim.transportsolver.TransportSolver;
 
 @Slf4j
@@ -110,13 +111,13 @@ public class ESSimEngine implements IStatusProvider {
 	private LocalDateTime simulationStartTime;
 	private LocalDateTime simulationEndTime;
 	private EssimDuration simulationStepLength;
-	private HashMap<EnergyAsset, Role> energyAssetRoles;
 	private List<TransportSolver> solversList = new ArrayList<TransportSolver>();
 	private String simulationDescription;
 	private String user;
 	@Getter
 	private SimulationManager simulationManager;
-	private HashMap<String, String> networkDiags = new HashMap<String, String>();
+	@Getter
+	private ObservationManager observationManager;
 	private String influxURL;
 	private Date simRunTime;
 	private List<NodeConfiguration> nodeConfig;
@@ -124,8 +125,9 @@ public class ESSimEngine implements IStatusProvider {
 	private MSOConfiguration msoConfiguration;
 	private double status;
 	private String statusDescription = "";
-	private String esdlString;
+	private EsdlSource esdlSource;
 	private HashMap<Conversion, Solvers> convAssets;
+	private SolverGraph solverGraph;
 
 	private IObservationProvider generalObservationProvider = new IObservationProvider() {
 		@Override
@@ -146,6 +148,31 @@ public class ESSimEngine implements IStatusProvider {
 
 	public ESSimEngine(String essimId, String simulationId, EssimSimulation simulation, File esdlFile)
 			throws Exception {
+		this(essimId, simulationId, simulation, EsdlSource.read(esdlFile, needsEsdlSource(simulation)));
+	}
+
+	/**
+	 * Creates a simulation of an ESDL document that was read from a stream, see
+	 * {@link EsdlSource}.
+	 */
+	public ESSimEngine(String essimId, String simulationId, EssimSimulation simulation, EsdlSource esdlSource)
+			throws Exception {
+		this(essimId, simulationId, simulation, esdlSource.getEnergySystem(), esdlSource);
+	}
+
+	/**
+	 * Creates a simulation of an energy system that is already in memory, e.g. a
+	 * generated one. Without any observation consumers in the simulation and
+	 * without MongoDB (see {@link nl.tno.essim.mongo.MongoBackend}), the engine
+	 * runs headless.
+	 */
+	public ESSimEngine(String essimId, String simulationId, EssimSimulation simulation, EnergySystem energySystem)
+			throws Exception {
+		this(essimId, simulationId, simulation, energySystem, null);
+	}
+
+	private ESSimEngine(String essimId, String simulationId, EssimSimulation simulation, EnergySystem energySystem,
+			EsdlSource esdlSource) throws Exception {
 		log.debug("ESSIM Revision: {}", essimId);
 		simulationDescription = simulation.getSimulationDescription();
 		user = simulation.getUser();
@@ -168,14 +195,19 @@ public class ESSimEngine implements IStatusProvider {
 			simulationStepLength = parseTimeStep(timeStep);
 		}
 
-		esdlString = new String(Files.readAllBytes(esdlFile.getAbsoluteFile().toPath()), StandardCharsets.UTF_8);
+		this.energySystem = energySystem;
+		if (needsEsdlSource(simulation)) {
+			// Only remote logic nodes need the ESDL itself, it is kept compressed
+			this.esdlSource = esdlSource == null || !esdlSource.hasSource() ? EsdlSource.of(energySystem)
+					: esdlSource;
+		}
 
 		// Initialise SimulationManager
 		simulationManager = new SimulationManager(simulationId, simulationStartTime, simulationEndTime,
 				simulationStepLength);
 
 		// Initialise ObservationManager
-		ObservationManager observationManager = new ObservationManager(simulationId);
+		observationManager = new ObservationManager(simulationId);
 
 		try {
 			// Register all ObservationConsumers - Eg: InfluxDB
@@ -237,12 +269,6 @@ public class ESSimEngine implements IStatusProvider {
 							.build());
 		}
 
-		energySystem = loadEcoreResource(esdlFile.getAbsoluteFile().toString());
-		if (energySystem == null) {
-			log.error("Failed to load Energy System from file {}", esdlFile);
-			throw new IllegalStateException("Failed to load ESDL File!");
-		}
-
 		energySystemId = "UnnamedEnergySystem";
 		if (energySystem.getName() != null) {
 			if (!energySystem.getName().equals("")) {
@@ -286,6 +312,7 @@ public class ESSimEngine implements IStatusProvider {
 						solver.setObservationManager(observationManager);
 					}
 				}
+				simulationManager.setSolverGraph(solverGraph);
 				EmissionManager emissionManager = EmissionManager.getInstance(simulationId);
 				emissionManager.setObservationManager(observationManager);
 				simulationManager.addOtherSimulatable(emissionManager);
@@ -322,43 +349,13 @@ public class ESSimEngine implements IStatusProvider {
 		// There could be isolated networks also. So repeat this process till we get a
 		// TransportSolver for all networks.
 
+		// Networks are built one carrier at a time: conversion assets are part of the
+		// networks of at least two carriers, and the energy system is an EMF model,
+		// which is not safe to read from several threads. The topology indexes the
+		// energy system once for all carriers.
+		NetworkTopology topology = new NetworkTopology(energyAssets);
 		for (Carrier carrier : carriers.getCarrier()) {
-			List<EnergyAsset> remainingAssets = new ArrayList<EnergyAsset>(energyAssets);
-			int i = 0;
-			List<EnergyAsset> filteredAssets = filterAssetsByCarrier(remainingAssets, carrier);
-			do {
-				String solverId = energySystemId + " "
-						+ (carrier.getName() == null ? carrier.getId() : carrier.getName()) + " Network " + i;
-				TransportSolver solver = new TransportSolver(solverId, carrier, generalObservationProvider, nodeConfig,
-						energyAssetRoles, esdlString);
-				solver.setSimulationManager(simulationManager);
-				for (EnergyAsset filteredAsset : filteredAssets) {
-					solver.addToNetwork(filteredAsset);
-				}
-				remainingAssets = solver.createTree();
-				filteredAssets = remainingAssets;
-				if (remainingAssets != null) {
-					if (solver.getDeviceNodes().size() > 1) {
-						String networkDiag = solver.getNetworkDiag();
-						if (networkDiag != null) {
-							try {
-								networkDiags.put(solverId, Base64.getEncoder().encodeToString(networkDiag.getBytes()));
-							} catch (Exception e) {
-								log.error("Error while creating network diagram for {}", solverId);
-								networkDiags.put(solverId, "");
-							}
-						} else {
-							log.debug("No network diagram for {}", solverId);
-							networkDiags.put(solverId, "");
-						}
-
-						solversList.add(solver);
-						i++;
-					}
-				} else {
-					remainingAssets = new ArrayList<EnergyAsset>();
-				}
-			} while (!remainingAssets.isEmpty());
+			solversList.addAll(createSolvers(topology, carrier));
 		}
 
 		log.debug(solversList.toString());
@@ -372,6 +369,10 @@ public class ESSimEngine implements IStatusProvider {
 
 		// List<Integer[]> constrIndices = new ArrayList<Integer[]>();
 		HashMap<String, List<Integer[]>> constrIndices = new HashMap<String, List<Integer[]>>();
+		HashMap<TransportSolver, Integer> solverIndices = new HashMap<TransportSolver, Integer>();
+		for (int i = 0; i < solversList.size(); i++) {
+			solverIndices.put(solversList.get(i), i);
+		}
 		for (Conversion convAsset : convAssets.keySet()) {
 			Solvers solverOrder = convAssets.get(convAsset);
 			if (solverOrder.getFirst().isEmpty()) {
@@ -383,13 +384,20 @@ public class ESSimEngine implements IStatusProvider {
 						constrIndices.put(convAsset.getName(), new ArrayList<Integer[]>());
 					}
 					List<Integer[]> constraintList = constrIndices.get(convAsset.getName());
-					constraintList.add(new Integer[]{solversList.indexOf(first), solversList.indexOf(later)});
+					constraintList.add(new Integer[]{solverIndices.get(first), solverIndices.get(later)});
 				}
 			}
 			log.debug(convAsset.getName() + " forces these orders: " + printableSolversList(solverOrder));
 		}
 
-		return new ChocoOptimiser(solversList, constrIndices).solve();
+		TreeMap<Integer, List<TransportSolver>> order;
+		if (SolverLayering.useChoco()) {
+			order = new ChocoOptimiser(solversList, constrIndices).solve();
+		} else {
+			order = new SolverLayering(solversList, constrIndices).solve();
+		}
+		solverGraph = new SolverGraph(solversList, constrIndices);
+		return order;
 	}
 
 	public void startSimulation() {
@@ -492,16 +500,33 @@ public class ESSimEngine implements IStatusProvider {
 
 	@SuppressWarnings("unchecked")
 	public static <T extends EObject> T loadEcoreResource(URI projectFileURI) throws IOException {
+		XMIResourceImpl resource = createEcoreResource(projectFileURI);
+		resource.load(null);
+
+		return (T) resource.getContents().get(0);
+	}
+
+	/**
+	 * Parses the ESDL document in the stream, without reading it into memory
+	 * first. The stream is not closed.
+	 */
+	@SuppressWarnings("unchecked")
+	public static <T extends EObject> T loadEcoreResource(InputStream in) throws IOException {
+		XMIResourceImpl resource = createEcoreResource(URI.createURI("stream.esdl"));
+		resource.load(in, null);
+
+		return resource.getContents().isEmpty() ? null : (T) resource.getContents().get(0);
+	}
+
+	private static XMIResourceImpl createEcoreResource(URI uri) {
 		// Initialize the models
 		EssimESDLPackage.eINSTANCE.eClass();
 		EssimPackage.eINSTANCE.eClass();
 
-		XMIResourceImpl resource = new XMIResourceImpl(projectFileURI);
+		XMIResourceImpl resource = new XMIResourceImpl(uri);
 		resource.getDefaultLoadOptions().put(XMIResource.OPTION_DEFER_IDREF_RESOLUTION, Boolean.TRUE);
 		resource.setIntrinsicIDToEObjectMap(new HashMap<String, EObject>());
-		resource.load(null);
-
-		return (T) resource.getContents().get(0);
+		return resource;
 	}
 
 	public static <T extends EObject> void saveEcoreResource(T ecoreResource, String fileName) throws IOException {
@@ -512,6 +537,25 @@ public class ESSimEngine implements IStatusProvider {
 		xmiResource.save(opts);
 	}
 
+	/**
+	 * Writes the ESDL document to the stream, which is not closed.
+	 */
+	public static <T extends EObject> void saveEcoreResource(T ecoreResource, OutputStream out) throws IOException {
+		XMIResource xmiResource = new XMIResourceImpl(URI.createURI("memory.esdl"));
+		xmiResource.getContents().add(ecoreResource);
+		HashMap<String, Object> opts = new HashMap<String, Object>();
+		opts.put(XMIResource.OPTION_SCHEMA_LOCATION, true);
+		xmiResource.save(out, opts);
+	}
+
+	/**
+	 * @return whether the simulation has remote logic nodes, which are sent the
+	 *         ESDL document itself (see {@link EsdlSource#hasSource()})
+	 */
+	public static boolean needsEsdlSource(EssimSimulation simulation) {
+		return simulation.getNodeConfig() != null && !simulation.getNodeConfig().isEmpty();
+	}
+
 	private List<List<String>> printableSolversList(Solvers x) {
 		List<String> firsts = printableSolverList(x.getFirst());
 		List<String> laters = printableSolverList(x.getLater());
@@ -526,117 +570,140 @@ public class ESSimEngine implements IStatusProvider {
 		return x.stream().map(y -> y.getId()).collect(Collectors.toList());
 	}
 
-	private List<EnergyAsset> filterAssetsByCarrier(List<EnergyAsset> energyAssets, Carrier carrier) {
-		List<EnergyAsset> filteredAssets = new ArrayList<EnergyAsset>();
-		energyAssetRoles = new HashMap<EnergyAsset, Role>();
+	/**
+	 * Creates the transport solvers of all networks of a carrier. Networks are
+	 * numbered in the order in which they are found: every network is built
+	 * around the biggest producer among the assets that are not part of a
+	 * network yet (see {@link TransportSolver#createTree()}).
+	 */
+	private List<TransportSolver> createSolvers(NetworkTopology topology, Carrier carrier) throws Exception {
+		List<TransportSolver> solvers = new ArrayList<TransportSolver>();
+		CarrierNetworks networks = topology.getNetworks(carrier);
+		int i = 0;
+		while (!networks.isEmpty()) {
+			String solverId = energySystemId + " " + (carrier.getName() == null ? carrier.getId() : carrier.getName())
+					+ " Network " + i;
+			TransportSolver solver = new TransportSolver(solverId, carrier, generalObservationProvider, nodeConfig,
+					networks.getRoles(), esdlSource);
+			solver.setSimulationManager(simulationManager);
+			for (EnergyAsset energyAsset : networks.poll()) {
+				solver.addToNetwork(energyAsset);
+			}
+			List<EnergyAsset> remainingAssets = solver.createTree();
+			if (remainingAssets == null) {
+				break;
+			}
+			if (solver.getDeviceNodes().size() > 1) {
+				solvers.add(solver);
+				i++;
+			}
+			networks.add(remainingAssets);
+		}
+		return solvers;
+	}
 
-		for (EnergyAsset energyAsset : energyAssets) {
-			for (Port port : energyAsset.getPort()) {
-				Carrier portCarrier = port.getCarrier();
-				if (portCarrier != null) {
-					if (portCarrier.getId().equals(carrier.getId()) && !filteredAssets.contains(energyAsset)) {
-						filteredAssets.add(energyAsset);
-						if (energyAsset instanceof Transport) {
-							energyAssetRoles.put(energyAsset, Role.TRANSPORT);
-						} else {
-							if (port instanceof InPort) {
-								energyAssetRoles.put(energyAsset, Role.CONSUMER);
-							} else {
-								energyAssetRoles.put(energyAsset, Role.PRODUCER);
-							}
-						}
+	private HashMap<Conversion, Solvers> findAllConversionAssets() {
+		// The solvers that feature each conversion asset, in the order of the solvers
+		HashMap<Conversion, List<TransportSolver>> conversionSolvers = new HashMap<Conversion, List<TransportSolver>>();
+		for (TransportSolver solver : solversList) {
+			for (EnergyAsset energyAsset : solver.getProcessedList()) {
+				if (energyAsset instanceof Conversion) {
+					List<TransportSolver> featuring = conversionSolvers.get(energyAsset);
+					if (featuring == null) {
+						featuring = new ArrayList<TransportSolver>();
+						conversionSolvers.put((Conversion) energyAsset, featuring);
+					}
+					if (featuring.isEmpty() || featuring.get(featuring.size() - 1) != solver) {
+						featuring.add(solver);
 					}
 				}
 			}
 		}
 
-		return filteredAssets;
-	}
-
-	private HashMap<Conversion, Solvers> findAllConversionAssets() {
 		HashMap<Conversion, Solvers> convAssets = new HashMap<Conversion, Solvers>();
 		for (EnergyAsset energyAsset : energyAssets) {
 			if (energyAsset instanceof Conversion) {
 				Conversion conversion = (Conversion) energyAsset;
 				Solvers solvers = new Solvers();
-				// From all transport solvers
-				for (TransportSolver solver : solversList) {
-					// If this solver features this conversion asset
-					if (solver.getProcessedList().contains(conversion)) {
-						// What control strategy does it follow?
-						// Driven by Demand : Put solver where Conversion is PRODUCER first, then input
-						// solver(s)
-						// Driven by Supply : Put solver where Conversion in CONSUMER first, then output
-						// solver(s)
-						// Driven by Profile : No particular ordering required
-						ControlStrategy controlStrategy = conversion.getControlStrategy();
-						if (controlStrategy != null) {
-							// Control Strategy is specified - go according to specification
-							if (controlStrategy instanceof DrivenByDemand) {
-								DrivenByDemand drivenByDemand = (DrivenByDemand) controlStrategy;
-								boolean portFound = conversion.getPort()
-										.parallelStream()
-										.anyMatch(p -> drivenByDemand.getOutPort().equals(p)
-												&& p.getCarrier().equals(solver.getCarrier()));
-								if (solver.getRole(conversion).equals(Role.PRODUCER) && portFound) {
-									solvers.addFirst(solver);
-								} else {
-									solvers.addLater(solver);
-								}
-							} else if (controlStrategy instanceof DrivenBySupply) {
-								DrivenBySupply drivenBySupply = (DrivenBySupply) controlStrategy;
-								boolean portFound = conversion.getPort()
-										.parallelStream()
-										.anyMatch(p -> drivenBySupply.getInPort().equals(p)
-												&& p.getCarrier().equals(solver.getCarrier()));
-								if (solver.getRole(conversion).equals(Role.CONSUMER) && portFound) {
-									solvers.addFirst(solver);
-								} else {
-									solvers.addLater(solver);
-								}
+				List<TransportSolver> featuring = conversionSolvers.get(conversion);
+				if (featuring == null) {
+					featuring = new ArrayList<TransportSolver>();
+				}
+				// From all transport solvers that feature this conversion asset
+				for (TransportSolver solver : featuring) {
+					// What control strategy does it follow?
+					// Driven by Demand : Put solver where Conversion is PRODUCER first, then input
+					// solver(s)
+					// Driven by Supply : Put solver where Conversion in CONSUMER first, then output
+					// solver(s)
+					// Driven by Profile : No particular ordering required
+					ControlStrategy controlStrategy = conversion.getControlStrategy();
+					if (controlStrategy != null) {
+						// Control Strategy is specified - go according to specification
+						if (controlStrategy instanceof DrivenByDemand) {
+							DrivenByDemand drivenByDemand = (DrivenByDemand) controlStrategy;
+							boolean portFound = conversion.getPort()
+									.parallelStream()
+									.anyMatch(p -> drivenByDemand.getOutPort().equals(p)
+											&& p.getCarrier().equals(solver.getCarrier()));
+							if (solver.getRole(conversion).equals(Role.PRODUCER) && portFound) {
+								solvers.addFirst(solver);
+							} else {
+								solvers.addLater(solver);
+							}
+						} else if (controlStrategy instanceof DrivenBySupply) {
+							DrivenBySupply drivenBySupply = (DrivenBySupply) controlStrategy;
+							boolean portFound = conversion.getPort()
+									.parallelStream()
+									.anyMatch(p -> drivenBySupply.getInPort().equals(p)
+											&& p.getCarrier().equals(solver.getCarrier()));
+							if (solver.getRole(conversion).equals(Role.CONSUMER) && portFound) {
+								solvers.addFirst(solver);
+							} else {
+								solvers.addLater(solver);
+							}
+						}
+					} else {
+						// No control strategy specified. Default to Driven by Demand iff there is only
+						// one outport
+						// for this device. So CHPs and FuelCells must have explicit control strategies!
+						OutPort outport = null;
+						int i = 0;
+						for (Port port : conversion.getPort()) {
+							if (port instanceof OutPort) {
+								outport = (OutPort) port;
+								i++;
 							}
+						}
+						if (i != 1) {
+							throw new IllegalStateException(
+									conversion.getClass().getInterfaces()[0].getSimpleName() + " asset "
+											+ (conversion.getName() == null
+													? (" with ID " + conversion.getId())
+													: (" with name " + conversion.getName()))
+											+ " has no control strategy defined!!");
 						} else {
-							// No control strategy specified. Default to Driven by Demand iff there is only
-							// one outport
-							// for this device. So CHPs and FuelCells must have explicit control strategies!
-							OutPort outport = null;
-							int i = 0;
-							for (Port port : conversion.getPort()) {
-								if (port instanceof OutPort) {
-									outport = (OutPort) port;
-									i++;
-								}
+							log.warn(conversion.getClass().getInterfaces()[0].getSimpleName() + " asset "
+									+ (conversion.getName() == null
+											? (" with ID " + conversion.getId())
+											: (" with name " + conversion.getName()))
+									+ " has no control strategy defined! Defaulting to DrivenByDemand.");
+							DrivenByDemand drivenByDemand = EsdlFactory.eINSTANCE.createDrivenByDemand();
+							drivenByDemand.setId(UUID.randomUUID().toString());
+							drivenByDemand.setName("DrivenByDemand for " + conversion.getName());
+							drivenByDemand.setOutPort(outport);
+							conversion.setControlStrategy(drivenByDemand);
+							Services services = energySystem.getServices();
+							if (services == null) {
+								services = EsdlFactory.eINSTANCE.createServices();
 							}
-							if (i != 1) {
-								throw new IllegalStateException(
-										conversion.getClass().getInterfaces()[0].getSimpleName() + " asset "
-												+ (conversion.getName() == null
-														? (" with ID " + conversion.getId())
-														: (" with name " + conversion.getName()))
-												+ " has no control strategy defined!!");
+							EList<Service> serviceList = services.getService();
+							serviceList.add(drivenByDemand);
+
+							if (solver.getRole(conversion).equals(Role.PRODUCER)) {
+								solvers.addFirst(solver);
 							} else {
-								log.warn(conversion.getClass().getInterfaces()[0].getSimpleName() + " asset "
-										+ (conversion.getName() == null
-												? (" with ID " + conversion.getId())
-												: (" with name " + conversion.getName()))
-										+ " has no control strategy defined! Defaulting to DrivenByDemand.");
-								DrivenByDemand drivenByDemand = EsdlFactory.eINSTANCE.createDrivenByDemand();
-								drivenByDemand.setId(UUID.randomUUID().toString());
-								drivenByDemand.setName("DrivenByDemand for " + conversion.getName());
-								drivenByDemand.setOutPort(outport);
-								conversion.setControlStrategy(drivenByDemand);
-								Services services = energySystem.getServices();
-								if (services == null) {
-									services = EsdlFactory.eINSTANCE.createServices();
-								}
-								EList<Service> serviceList = services.getService();
-								serviceList.add(drivenByDemand);
-
-								if (solver.getRole(conversion).equals(Role.PRODUCER)) {
-									solvers.addFirst(solver);
-								} else {
-									solvers.addLater(solver);
-								}
+								solvers.addLater(solver);
 							}
 						}
 					}
@@ -649,17 +716,45 @@ public class ESSimEngine implements IStatusProvider {
 
 	public List<TransportNetwork> getNetworkDiags() {
 		List<TransportNetwork> list = new ArrayList<TransportNetwork>();
-		for (Entry<String, String> network : networkDiags.entrySet()) {
-			TransportNetworkImpl tn = new TransportNetworkImpl();
-			tn.setName(network.getKey());
-			// tn.setNetworkHTMLDiag(Commons.compressString(network.getValue()));
-			tn.setNetworkHTMLDiag(network.getValue());
-			list.add(tn);
+		for (int i = 0; i < solversList.size(); i++) {
+			list.add(getNetworkDiag(i));
 		}
 
 		return list;
 	}
 
+	/**
+	 * Renders the diagram of a network when it is requested, instead of
+	 * rendering the diagrams of all networks when the simulation is set up.
+	 *
+	 * @return the network with its Base64 encoded HTML diagram, or null if there
+	 *         is no network with this index
+	 */
+	public TransportNetwork getNetworkDiag(int index) {
+		if (index < 0 || index >= solversList.size()) {
+			return null;
+		}
+		TransportSolver solver = solversList.get(index);
+		String solverId = solver.getId();
+		String encodedDiag = "";
+		String networkDiag = solver.getNetworkDiag();
+		if (networkDiag != null) {
+			try {
+				encodedDiag = Base64.getEncoder().encodeToString(networkDiag.getBytes());
+			} catch (Exception e) {
+				log.error("Error while creating network diagram for {}", solverId);
+			}
+		} else {
+			log.debug("No network diagram for {}", solverId);
+		}
+
+		TransportNetworkImpl tn = new TransportNetworkImpl();
+		tn.setName(solverId);
+		// tn.setNetworkHTMLDiag(Commons.compressString(encodedDiag));
+		tn.setNetworkHTMLDiag(encodedDiag);
+		return tn;
+	}
+
 	private EssimDuration parseTimeStep(String timeStep) {
 		String regex = "([0-9]+)([smhdMy]{1})";
 		Pattern p = Pattern.compile(regex);
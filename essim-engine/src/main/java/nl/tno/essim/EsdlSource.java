@@ -0,0 +1,211 @@
+/**
+ *  This work is based on original code developed and copyrighted by TNO 2020. 
+ *  Subsequent contributions are licensed to you by the developers of such code and are
+ *  made available to the Project under one or several contributor license agreements.
+ *
+ *  This work is licensed to you under the Apache License, Version 2.0.
+ *  You may obtain a copy of the license at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Contributors:
+ *      TNO         - Initial implementation
+ *  Manager:
+ *      TNO
+ */
+
+package nl.tno.essim;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PushbackInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import esdl.EnergySystem;
+
+/**
+ * An ESDL document that is read once from a stream: it is parsed into an
+ * {@link EnergySystem}, and only when the (remote logic) nodes need the ESDL
+ * itself, a gzip compressed copy of the source is kept, which is decompressed
+ * when it is sent. That way a large ESDL is never held in memory as a whole
+ * string, nor written to and read back from a temporary file. Streams that are
+ * gzip compressed themselves are accepted as well.
+ */
+public class EsdlSource {
+
+	private static final int BUFFER_SIZE = 65536;
+
+	private final EnergySystem energySystem;
+	// Null when the source is not kept
+	private final byte[] compressed;
+
+	private EsdlSource(EnergySystem energySystem, byte[] compressed) {
+		this.energySystem = energySystem;
+		this.compressed = compressed;
+	}
+
+	public static EsdlSource read(File esdlFile, boolean keepSource) throws IOException {
+		try (InputStream in = new FileInputStream(esdlFile)) {
+			return read(in, keepSource);
+		}
+	}
+
+	/**
+	 * Parses the ESDL document in the stream. The stream is read to its end but
+	 * not closed.
+	 *
+	 * @param keepSource whether to keep a compressed copy of the source, see
+	 *                   {@link #openStream()}
+	 */
+	public static EsdlSource read(InputStream in, boolean keepSource) throws IOException {
+		if (!keepSource) {
+			EnergySystem energySystem = ESSimEngine.loadEcoreResource(decompressIfNeeded(in));
+			if (energySystem == null) {
+				throw new IllegalStateException("Failed to load ESDL File!");
+			}
+			return new EsdlSource(energySystem, null);
+		}
+
+		ByteArrayOutputStream compressedCopy = new ByteArrayOutputStream();
+		EnergySystem energySystem;
+		try (GZIPOutputStream gzip = new GZIPOutputStream(compressedCopy, BUFFER_SIZE)) {
+			CopyingInputStream source = new CopyingInputStream(decompressIfNeeded(in), gzip);
+			energySystem = ESSimEngine.loadEcoreResource(source);
+			// The parser may stop at the end of the root element, the rest is copied too
+			byte[] buffer = new byte[BUFFER_SIZE];
+			while (source.read(buffer) != -1) {
+				continue;
+			}
+		}
+		if (energySystem == null) {
+			throw new IllegalStateException("Failed to load ESDL File!");
+		}
+		return new EsdlSource(energySystem, compressedCopy.toByteArray());
+	}
+
+	/**
+	 * Keeps a compressed copy of an energy system that is already in memory, e.g.
+	 * a generated one.
+	 */
+	public static EsdlSource of(EnergySystem energySystem) throws IOException {
+		ByteArrayOutputStream compressedCopy = new ByteArrayOutputStream();
+		try (GZIPOutputStream gzip = new GZIPOutputStream(compressedCopy, BUFFER_SIZE)) {
+			ESSimEngine.saveEcoreResource(energySystem, gzip);
+		}
+		return new EsdlSource(energySystem, compressedCopy.toByteArray());
+	}
+
+	private static InputStream decompressIfNeeded(InputStream in) throws IOException {
+		PushbackInputStream pushback = new PushbackInputStream(in, 2);
+		byte[] magic = new byte[2];
+		int read = pushback.read(magic);
+		if (read > 0) {
+			pushback.unread(magic, 0, read);
+		}
+		if (read == 2 && (magic[0] & 0xff) == 0x1f && (magic[1] & 0xff) == 0x8b) {
+			return new GZIPInputStream(pushback, BUFFER_SIZE);
+		}
+		return pushback;
+	}
+
+	public EnergySystem getEnergySystem() {
+		return energySystem;
+	}
+
+	/**
+	 * @return whether a copy of the source is kept
+	 */
+	public boolean hasSource() {
+		return compressed != null;
+	}
+
+	/**
+	 * @return the size of the kept copy of the source in bytes, 0 if it is not
+	 *         kept
+	 */
+	public int getCompressedSize() {
+		return compressed == null ? 0 : compressed.length;
+	}
+
+	/**
+	 * @return the ESDL document as it was read, decompressed while it is read
+	 */
+	public InputStream openStream() throws IOException {
+		if (compressed == null) {
+			throw new IllegalStateException("The source of ESDL " + energySystem.getId() + " is not kept");
+		}
+		return new GZIPInputStream(new ByteArrayInputStream(compressed), BUFFER_SIZE);
+	}
+
+	/**
+	 * @return the ESDL document as it was read, Base64 encoded, without holding
+	 *         the decompressed document in memory as well
+	 */
+	public String toBase64() throws IOException {
+		ByteArrayOutputStream encoded = new ByteArrayOutputStream();
+		try (InputStream in = openStream(); OutputStream out = Base64.getEncoder().wrap(encoded)) {
+			byte[] buffer = new byte[BUFFER_SIZE];
+			int read;
+			while ((read = in.read(buffer)) != -1) {
+				out.write(buffer, 0, read);
+			}
+		}
+		return new String(encoded.toByteArray(), StandardCharsets.ISO_8859_1);
+	}
+
+	/**
+	 * Passes on everything that is read from it to an output stream. Closing it
+	 * leaves the underlying stream open, so that it can be read to its end.
+	 */
+	private static class CopyingInputStream extends FilterInputStream {
+		private final OutputStream copy;
+
+		private CopyingInputStream(InputStream in, OutputStream copy) {
+			super(in);
+			this.copy = copy;
+		}
+
+		@Override
+		public int read() throws IOException {
+			int b = super.read();
+			if (b != -1) {
+				copy.write(b);
+			}
+			return b;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			int read = super.read(b, off, len);
+			if (read > 0) {
+				copy.write(b, off, read);
+			}
+			return read;
+		}
+
+		@Override
+		public long skip(long n) throws IOException {
+			byte[] buffer = new byte[(int) Math.min(n, BUFFER_SIZE)];
+			int read = read(buffer, 0, buffer.length);
+			return Math.max(read, 0);
+		}
+
+		@Override
+		public boolean markSupported() {
+			return false;
+		}
+
+		@Override
+		public void close() {
+		}
+	}
+}
@@ -16,150 +16,496 @@
 
 package nl.tno.essim.commons;
 
-import java.util.Map.Entry;
+import java.util.Arrays;
 import java.util.TreeMap;
-import java.util.TreeSet;
 
 import lombok.Getter;
 import lombok.Setter;
 
+/**
+ * Piecewise linear bid curve: energy (positive for demand, negative for
+ * supply) as a function of the price. The points are kept in two parallel
+ * arrays sorted by price, with at most one point per price.
+ *
+ * Curves built by the nodes never increase with the price. As long as that
+ * holds for all points, prices are looked up with a binary search on the
+ * energies; otherwise the points are scanned from the lowest price.
+ *
+ * A curve can be reused between steps: {@link #clear()}, {@link #add},
+ * {@link #normaliseCurve} and {@link #simplify} work in place, in arrays that
+ * only grow, so that a curve that is rebuilt every step stops allocating once
+ * it has reached its size.
+ */
 public class BidFunction {
 	private static final double eps = 1e-22;
 	private static final double pmin = 0.0;
 	private static final double pmax = 1.0;
+	private static final int INITIAL_CAPACITY = 4;
 
-	@Getter
-	@Setter
-	private TreeMap<Double, Double> curve;
+	private double[] prices;
+	private double[] bids;
+	private double[] sparePrices;
+	private double[] spareBids;
+	// Points kept by simplify, and its heap of segments by error
+	private boolean[] keep;
+	private int[] segmentFrom;
+	private int[] segmentTo;
+	private int[] segmentWorst;
+	private double[] segmentError;
+	private int segments;
+	private int size;
+	private boolean nonIncreasing;
 	@Getter
 	@Setter
 	private double marginalCost;
 
 	public BidFunction() {
-		curve = new TreeMap<Double, Double>();
+		this(INITIAL_CAPACITY);
+	}
+
+	public BidFunction(int capacity) {
+		prices = new double[capacity];
+		bids = new double[capacity];
+		size = 0;
+		nonIncreasing = true;
 		marginalCost = 0.0;
 	}
 
 	public BidFunction(TreeMap<Double, Double> curve) {
-		this.curve = curve;
-		marginalCost = 0.0;
+		this(Math.max(INITIAL_CAPACITY, curve.size()));
+		for (Double price : curve.keySet()) {
+			addPoint(price, curve.get(price));
+		}
 	}
 
+	/**
+	 * Adds a point, replacing the point at the same price if there is one.
+	 */
 	public BidFunction addPoint(double price, double bid) {
-		curve.put(price, bid);
+		// Turns -0.0 into 0.0, so that both are the same point
+		price = price + 0.0;
+		if (size == 0 || Double.compare(price, prices[size - 1]) > 0) {
+			ensureCapacity(size + 1);
+			prices[size] = price;
+			bids[size] = bid;
+			if (size > 0 && !(bid <= bids[size - 1])) {
+				nonIncreasing = false;
+			}
+			size++;
+			return this;
+		}
+
+		int index = Arrays.binarySearch(prices, 0, size, price);
+		if (index < 0) {
+			index = -index - 1;
+			ensureCapacity(size + 1);
+			System.arraycopy(prices, index, prices, index + 1, size - index);
+			System.arraycopy(bids, index, bids, index + 1, size - index);
+			size++;
+		}
+		prices[index] = price;
+		bids[index] = bid;
+		nonIncreasing = checkNonIncreasing();
 		return this;
 	}
 
+	/**
+	 * Removes all points and resets the marginal cost, keeping the arrays.
+	 */
+	public void clear() {
+		size = 0;
+		nonIncreasing = true;
+		marginalCost = 0.0;
+	}
+
+	private void ensureCapacity(int capacity) {
+		if (capacity > prices.length) {
+			int newCapacity = Math.max(capacity, prices.length * 2);
+			prices = Arrays.copyOf(prices, newCapacity);
+			bids = Arrays.copyOf(bids, newCapacity);
+		}
+	}
+
+	private boolean checkNonIncreasing() {
+		for (int i = 1; i < size; i++) {
+			if (!(bids[i] <= bids[i - 1])) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public double getPrice(int index) {
+		return prices[index];
+	}
+
+	public double getBid(int index) {
+		return bids[index];
+	}
+
+	/**
+	 * @return a copy of the points of this curve, by price
+	 */
+	public TreeMap<Double, Double> getCurve() {
+		TreeMap<Double, Double> curve = new TreeMap<Double, Double>();
+		for (int i = 0; i < size; i++) {
+			curve.put(prices[i], bids[i]);
+		}
+		return curve;
+	}
+
 	public boolean isEmpty() {
-		return curve != null && curve.isEmpty();
+		return size == 0;
+	}
+
+	/**
+	 * @return whether the energy of this curve never increases with the price
+	 */
+	public boolean isNonIncreasing() {
+		return nonIncreasing;
 	}
 
 	@Override
 	public String toString() {
-		return "[curve=" + curve + "; mc=" + marginalCost + "]";
+		return "[curve=" + getCurve() + "; mc=" + marginalCost + "]";
 	}
 
 	public BidFunction sumWith(BidFunction otherCurve) {
-		TreeMap<Double, Double> sum = new TreeMap<Double, Double>();
-		TreeSet<Double> allPrices = new TreeSet<Double>();
-		allPrices.addAll(curve.keySet());
-		allPrices.addAll(otherCurve.getCurve().keySet());
-		for (double price : allPrices) {
-			double aValue = findDemandFromCurve(curve, price);
-			double bValue = findDemandFromCurve(otherCurve.getCurve(), price);
-			sum.put(price, aValue + bValue);
+		return add(otherCurve);
+	}
+
+	/**
+	 * Adds another curve to this one in place (see {@link #sumCurves}). The
+	 * marginal cost is left as it is.
+	 */
+	public BidFunction add(BidFunction otherCurve) {
+		int capacity = size + otherCurve.size;
+		if (sparePrices == null || sparePrices.length < capacity) {
+			int newCapacity = Math.max(Math.max(INITIAL_CAPACITY, capacity), prices.length);
+			sparePrices = new double[newCapacity];
+			spareBids = new double[newCapacity];
 		}
+		double[] mergedPrices = sparePrices;
+		double[] mergedBids = spareBids;
+		size = merge(this, otherCurve, mergedPrices, mergedBids);
+		sparePrices = prices;
+		spareBids = bids;
+		prices = mergedPrices;
+		bids = mergedBids;
+		nonIncreasing = checkNonIncreasing();
+		return this;
+	}
 
+	/**
+	 * Adds a flat curve of the given energy in place. Gives the same curve as
+	 * adding the two point curve from pmin to pmax (see {@link #isFlat()}), but
+	 * only the points at pmin and pmax are inserted, without merging.
+	 */
+	public BidFunction addConstant(double energy) {
+		insertPoint(pmin);
+		insertPoint(pmax);
+		for (int i = 0; i < size; i++) {
+			bids[i] = bids[i] + energy;
+		}
+		nonIncreasing = checkNonIncreasing();
 		return this;
 	}
 
+	private void insertPoint(double price) {
+		int index = Arrays.binarySearch(prices, 0, size, price);
+		if (index < 0) {
+			index = -index - 1;
+			double bid = valueBetween(prices, bids, size, index, price);
+			ensureCapacity(size + 1);
+			System.arraycopy(prices, index, prices, index + 1, size - index);
+			System.arraycopy(bids, index, bids, index + 1, size - index);
+			prices[index] = price;
+			bids[index] = bid;
+			size++;
+		}
+	}
+
+	/**
+	 * @return whether this is a flat curve: the same energy at pmin and pmax and
+	 *         no other points, as made for inflexible nodes
+	 */
+	public boolean isFlat() {
+		return size == 2 && prices[0] == pmin && prices[1] == pmax && Double.compare(bids[0], bids[1]) == 0;
+	}
+
+	/**
+	 * Sums two curves at the union of their prices, interpolating each curve
+	 * between its own points.
+	 */
 	public static BidFunction sumCurves(BidFunction firstCurve, BidFunction otherCurve) {
-		TreeMap<Double, Double> summedCurve = new TreeMap<Double, Double>();
-		TreeSet<Double> allPrices = new TreeSet<Double>();
-		allPrices.addAll(firstCurve.getCurve().keySet());
-		allPrices.addAll(otherCurve.getCurve().keySet());
-		for (double price : allPrices) {
-			double aValue = findDemandFromCurve(firstCurve.getCurve(), price);
-			double bValue = findDemandFromCurve(otherCurve.getCurve(), price);
-			summedCurve.put(price, aValue + bValue);
+		BidFunction summedCurve = new BidFunction(
+				Math.max(INITIAL_CAPACITY, firstCurve.size + otherCurve.size));
+		summedCurve.size = merge(firstCurve, otherCurve, summedCurve.prices, summedCurve.bids);
+		summedCurve.nonIncreasing = summedCurve.checkNonIncreasing();
+		return summedCurve;
+	}
+
+	/**
+	 * Walks both curves once, side by side, writing their sum into the given
+	 * arrays, which must not be those of either curve.
+	 *
+	 * @return the number of points of the sum
+	 */
+	private static int merge(BidFunction firstCurve, BidFunction otherCurve, double[] prices, double[] bids) {
+		double[] aPrices = firstCurve.prices;
+		double[] aBids = firstCurve.bids;
+		int aSize = firstCurve.size;
+		double[] bPrices = otherCurve.prices;
+		double[] bBids = otherCurve.bids;
+		int bSize = otherCurve.size;
+
+		int n = 0;
+		int i = 0;
+		int j = 0;
+		while (i < aSize || j < bSize) {
+			double price;
+			boolean aAtPrice;
+			boolean bAtPrice;
+			if (j == bSize) {
+				price = aPrices[i];
+				aAtPrice = true;
+				bAtPrice = false;
+			} else if (i == aSize) {
+				price = bPrices[j];
+				aAtPrice = false;
+				bAtPrice = true;
+			} else {
+				int compare = Double.compare(aPrices[i], bPrices[j]);
+				price = compare <= 0 ? aPrices[i] : bPrices[j];
+				aAtPrice = compare <= 0;
+				bAtPrice = compare >= 0;
+			}
+
+			double aValue = aAtPrice ? aBids[i] : valueBetween(aPrices, aBids, aSize, i, price);
+			double bValue = bAtPrice ? bBids[j] : valueBetween(bPrices, bBids, bSize, j, price);
+			prices[n] = price;
+			bids[n] = aValue + bValue;
+			n++;
+
+			if (aAtPrice) {
+				i++;
+			}
+			if (bAtPrice) {
+				j++;
+			}
 		}
+		return n;
+	}
 
-		return new BidFunction(summedCurve);
+	/**
+	 * Value of a curve at a price that lies before the point at index next (or
+	 * after all points if next equals size), and is not one of its points.
+	 */
+	private static double valueBetween(double[] prices, double[] bids, int size, int next, double price) {
+		if (size == 0) {
+			return 0.0;
+		} else if (next == 0) {
+			return bids[0];
+		} else if (next == size) {
+			return bids[size - 1];
+		} else {
+			double p1 = prices[next - 1];
+			double v1 = bids[next - 1];
+			return v1 + (((bids[next] - v1) / (prices[next] - p1)) * (price - p1));
+		}
 	}
 
 	public double findEquillibrium() {
-		return findPriceFromCurve(curve, 0.0);
+		return findPriceFromCurve(0.0);
 	}
 
 	public double findDemandFromCurve(double price) {
-		return findDemandFromCurve(curve, price);
+		if (size == 0) {
+			return 0.0;
+		}
+		int index = Arrays.binarySearch(prices, 0, size, price);
+		if (index >= 0) {
+			return bids[index];
+		}
+		return valueBetween(prices, bids, size, -index - 1, price);
 	}
 
-	public static double findDemandFromCurve(TreeMap<Double, Double> curve, double price) {
-		if (curve.isEmpty()) {
-			return 0.0;
+	public double findPriceFromCurve(double bidPoint) {
+		if (nonIncreasing) {
+			return findPriceFromNonIncreasingCurve(bidPoint);
 		}
 
-		if (curve.containsKey(price)) {
-			return curve.get(price);
+		for (int i = 0; i < size; i++) {
+			if (Math.abs(bids[i] - bidPoint) < eps) {
+				return prices[i];
+			}
 		}
 
-		double p1 = Double.NaN;
-		double p2 = Double.NaN;
-		double v1 = Double.NaN;
-		double v2 = Double.NaN;
-		for (double p : curve.keySet()) {
-			if (p > price) {
-				p2 = p;
-				v2 = curve.get(p2);
-				break;
+		int next = 0;
+		while (next < size && !(bids[next] < bidPoint)) {
+			next++;
+		}
+		return priceBetween(next, bidPoint);
+	}
+
+	/**
+	 * Same result as the linear scan of {@link #findPriceFromCurve(double)}: the
+	 * first point within eps of the bid, or else the interpolation around the
+	 * first point below the bid. On a non-increasing curve both are found by
+	 * binary search.
+	 */
+	private double findPriceFromNonIncreasingCurve(double bidPoint) {
+		// First point with bid - bidPoint < eps. All points before it are too high
+		// to be within eps of the bid.
+		int first = firstIndex(bidPoint, true);
+		if (first < size && -(bids[first] - bidPoint) < eps) {
+			return prices[first];
+		}
+		return priceBetween(firstIndex(bidPoint, false), bidPoint);
+	}
+
+	private int firstIndex(double bidPoint, boolean withinEps) {
+		int low = 0;
+		int high = size;
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			boolean below = withinEps ? bids[mid] - bidPoint < eps : bids[mid] < bidPoint;
+			if (below) {
+				high = mid;
+			} else {
+				low = mid + 1;
 			}
-			p1 = p;
-			v1 = curve.get(p1);
 		}
+		return low;
+	}
 
-		if (Double.isNaN(p1)) {
-			return v2;
-		} else if (Double.isNaN(p2)) {
-			return v1;
+	private double priceBetween(int next, double bidPoint) {
+		if (next == 0) {
+			return size == 0 ? Double.NaN : prices[0];
+		} else if (next == size) {
+			return prices[size - 1];
 		} else {
-			return v1 + (((v2 - v1) / (p2 - p1)) * (price - p1));
+			double p1 = prices[next - 1];
+			double v1 = bids[next - 1];
+			return p1 + (((prices[next] - p1) / (bids[next] - v1)) * (bidPoint - v1));
 		}
 	}
 
-	public double findPriceFromCurve(double bidPoint) {
-		return findPriceFromCurve(curve, bidPoint);
+	/**
+	 * Removes points from this curve in a Douglas-Peucker style pass. Starting
+	 * from the first and the last point, the point furthest (in energy) from the
+	 * simplified curve is added back, until all points are within maxError of the
+	 * simplified curve or it has maxPoints points. Curves with at most maxPoints
+	 * points are left as they are.
+	 *
+	 * @return the largest energy difference between a removed point and the
+	 *         simplified curve
+	 */
+	public double simplify(int maxPoints, double maxError) {
+		if (size <= Math.max(2, maxPoints)) {
+			return 0.0;
+		}
+
+		if (keep == null || keep.length < size) {
+			int capacity = Math.max(size, prices.length);
+			keep = new boolean[capacity];
+			segmentFrom = new int[capacity];
+			segmentTo = new int[capacity];
+			segmentWorst = new int[capacity];
+			segmentError = new double[capacity];
+		}
+		Arrays.fill(keep, 0, size, false);
+		keep[0] = true;
+		keep[size - 1] = true;
+		int kept = 2;
+		segments = 0;
+		addSegment(0, size - 1);
+		while (kept < maxPoints && segmentError[0] > maxError) {
+			int from = segmentFrom[0];
+			int to = segmentTo[0];
+			int worst = segmentWorst[0];
+			removeWorstSegment();
+			keep[worst] = true;
+			kept++;
+			addSegment(from, worst);
+			addSegment(worst, to);
+		}
+		double error = segmentError[0];
+
+		int n = 0;
+		for (int i = 0; i < size; i++) {
+			if (keep[i]) {
+				prices[n] = prices[i];
+				bids[n] = bids[i];
+				n++;
+			}
+		}
+		size = n;
+		nonIncreasing = checkNonIncreasing();
+		return error;
 	}
 
-	public static double findPriceFromCurve(TreeMap<Double, Double> curve, double bidPoint) {
-		for (Entry<Double, Double> entry : curve.entrySet()) {
-			if (Math.abs(entry.getValue() - bidPoint) < eps) {
-				return entry.getKey();
+	/**
+	 * Adds the segment of points from..to, replaced by a straight line, to the
+	 * heap of segments with the point that is furthest from that line on top.
+	 */
+	private void addSegment(int from, int to) {
+		int worst = 0;
+		double error = 0.0;
+		double slope = (bids[to] - bids[from]) / (prices[to] - prices[from]);
+		for (int i = from + 1; i < to; i++) {
+			double distance = Math.abs(bids[from] + slope * (prices[i] - prices[from]) - bids[i]);
+			if (distance > error || worst == 0) {
+				worst = i;
+				error = distance;
 			}
 		}
 
-		double p1 = Double.NaN;
-		double p2 = Double.NaN;
-		double v1 = Double.NaN;
-		double v2 = Double.NaN;
-		for (double p : curve.keySet()) {
-			double v = curve.get(p);
-			if (v < bidPoint) {
-				p2 = p;
-				v2 = v;
+		int index = segments++;
+		while (index > 0) {
+			int parent = (index - 1) >>> 1;
+			if (segmentError[parent] >= error) {
 				break;
 			}
-			p1 = p;
-			v1 = v;
+			moveSegment(parent, index);
+			index = parent;
 		}
+		segmentFrom[index] = from;
+		segmentTo[index] = to;
+		segmentWorst[index] = worst;
+		segmentError[index] = error;
+	}
 
-		if (Double.isNaN(p1)) {
-			return p2;
-		} else if (Double.isNaN(p2)) {
-			return p1;
-		} else {
-			return p1 + (((p2 - p1) / (v2 - v1)) * (bidPoint - v1));
+	private void removeWorstSegment() {
+		segments--;
+		int last = segments;
+		int index = 0;
+		while (true) {
+			int child = 2 * index + 1;
+			if (child >= segments) {
+				break;
+			}
+			if (child + 1 < segments && segmentError[child + 1] > segmentError[child]) {
+				child++;
+			}
+			if (segmentError[last] >= segmentError[child]) {
+				break;
+			}
+			moveSegment(child, index);
+			index = child;
 		}
+		moveSegment(last, index);
+	}
+
+	private void moveSegment(int from, int to) {
+		segmentFrom[to] = segmentFrom[from];
+		segmentTo[to] = segmentTo[from];
+		segmentWorst[to] = segmentWorst[from];
+		segmentError[to] = segmentError[from];
 	}
 
 	public void normaliseCurve(double marginalCostSum) {
@@ -167,17 +513,49 @@ public class BidFunction {
 			return;
 		}
 
-		TreeMap<Double, Double> duplicateCurve = new TreeMap<Double, Double>();
+		if (marginalCostSum > 0.0) {
+			// Normalised prices are in the same order, so points can only collapse onto
+			// the previous one
+			if (sparePrices == null || sparePrices.length < size) {
+				sparePrices = new double[prices.length];
+				spareBids = new double[prices.length];
+			}
+			int n = 0;
+			for (int i = 0; i < size; i++) {
+				double price = Math.min(Math.max(prices[i] / marginalCostSum, pmin), pmax) + 0.0;
+				if (n > 0 && Double.compare(price, sparePrices[n - 1]) == 0) {
+					n--;
+				}
+				sparePrices[n] = price;
+				spareBids[n] = bids[i];
+				n++;
+				if (Double.compare(price, pmax) == 0) {
+					break;
+				}
+			}
+			double[] normalisedPrices = sparePrices;
+			double[] normalisedBids = spareBids;
+			sparePrices = prices;
+			spareBids = bids;
+			prices = normalisedPrices;
+			bids = normalisedBids;
+			size = n;
+			nonIncreasing = checkNonIncreasing();
+			return;
+		}
 
-		for (double p : curve.keySet()) {
-			double e = curve.get(p);
-			duplicateCurve.put(Math.min(Math.max(p / marginalCostSum, pmin), pmax), e);
-			if (duplicateCurve.containsKey(pmax)) {
+		BidFunction duplicateCurve = new BidFunction(Math.max(INITIAL_CAPACITY, size));
+		for (int i = 0; i < size; i++) {
+			duplicateCurve.addPoint(Math.min(Math.max(prices[i] / marginalCostSum, pmin), pmax), bids[i]);
+			if (Arrays.binarySearch(duplicateCurve.prices, 0, duplicateCurve.size, pmax) >= 0) {
 				break;
 			}
 		}
 
-		curve = duplicateCurve;
+		prices = duplicateCurve.prices;
+		bids = duplicateCurve.bids;
+		size = duplicateCurve.size;
+		nonIncreasing = duplicateCurve.nonIncreasing;
 	}
 
 }
@@ -24,6 +24,7 @@ import java.util.ArrayList;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 
 import org.eclipse.emf.common.util.ECollections;
@@ -31,6 +32,8 @@ import org.eclipse.emf.common.util.EList;
 
 import com.google.common.collect.RangeMap;
 
+import common.ProfileReader;
+import common.ProfileReader.Aggregation;
 import esdl.AbstractBasicConversion;
 import esdl.AbstractQuantityAndUnit;
 import esdl.Carrier;
@@ -67,7 +70,8 @@ public class Commons {
 	public static final String RESOURCE = ".";
 	public static final String ESSIM_REVISION = "ESSIM_REVISION";
 	public static RangeMap<Double, String> thresholdMap;
-	private static HashMap<Port, GenericProfile> portProfileMap = new HashMap<Port, GenericProfile>();
+	private static ConcurrentHashMap<Port, GenericProfile> portProfileMap =
+			new ConcurrentHashMap<Port, GenericProfile>();
 
 	public static enum Role {
 		TRANSPORT, PRODUCER, CONSUMER, BOTH
@@ -121,23 +125,7 @@ public class Commons {
 		if (profile != null) {
 			Date from = EssimTime.localDateTimeToDate(horizon.getStartTime());
 			Date to = EssimTime.localDateTimeToDate(horizon.getEndTime());
-
-			EnergyAsset energyAsset = port.getEnergyasset();
-			double ratedPower = 1.0;
-			if (energyAsset instanceof Producer) {
-				Producer producer = (Producer) energyAsset;
-				ratedPower = producer.getPower();
-			} else if (energyAsset instanceof Consumer) {
-				Consumer consumer = (Consumer) energyAsset;
-				ratedPower = consumer.getPower();
-			} else if (energyAsset instanceof AbstractBasicConversion) {
-				AbstractBasicConversion conversion = (AbstractBasicConversion) energyAsset;
-				ratedPower = conversion.getPower();
-			}
-			if (!isPercentageProfile(profile)) {
-				ratedPower = 1.0;
-			}
-			final double power = ratedPower;
+			final double power = ratedPower(profile, port);
 
 			EList<ProfileElement> profileElements = profile.getProfile(from, to,
 					Converter.toESDLDuration(horizon.getPeriod()));
@@ -161,6 +149,79 @@ public class Commons {
 		return null;
 	}
 
+	/**
+	 * Percentage profiles are relative to the rated power of the asset of the
+	 * port, other profiles are absolute.
+	 */
+	private static double ratedPower(GenericProfile profile, Port port) {
+		if (!isPercentageProfile(profile)) {
+			return 1.0;
+		}
+		EnergyAsset energyAsset = port.getEnergyasset();
+		double ratedPower = 1.0;
+		if (energyAsset instanceof Producer) {
+			Producer producer = (Producer) energyAsset;
+			ratedPower = producer.getPower();
+		} else if (energyAsset instanceof Consumer) {
+			Consumer consumer = (Consumer) energyAsset;
+			ratedPower = consumer.getPower();
+		} else if (energyAsset instanceof AbstractBasicConversion) {
+			AbstractBasicConversion conversion = (AbstractBasicConversion) energyAsset;
+			ratedPower = conversion.getPower();
+		}
+		return ratedPower;
+	}
+
+	/**
+	 * Reads the profile for the horizon and aggregates it in one go. Profiles
+	 * that implement {@link ProfileReader} are read directly, others through
+	 * {@link #readProfile(GenericProfile, Horizon)}.
+	 * 
+	 * @return the aggregated value, or NaN if the profile has no values in the
+	 *         horizon
+	 */
+	public static double readProfile(GenericProfile profile, Horizon horizon, Aggregation kind) {
+		if (profile instanceof ProfileReference) {
+			profile = ((ProfileReference) profile).getReference();
+		}
+		if (profile instanceof ProfileReader) {
+			return ((ProfileReader) profile).aggregate(EssimTime.toEpochSecond(horizon.getStartTime()),
+					EssimTime.toEpochSecond(horizon.getEndTime()), kind);
+		}
+		List<Double> values = readProfile(profile, horizon);
+		return kind == Aggregation.SUM ? sumOrNothing(values) : averageOrNothing(values);
+	}
+
+	public static double readCost(GenericProfile costProfile, Horizon horizon) {
+		return readProfile(costProfile, horizon, Aggregation.AVERAGE);
+	}
+
+	public static double readEnergy(GenericProfile energyProfile, Horizon horizon) {
+		return readProfile(energyProfile, horizon, Aggregation.SUM);
+	}
+
+	public static double readPower(GenericProfile powerProfile, Horizon horizon) {
+		return readProfile(powerProfile, horizon, Aggregation.AVERAGE);
+	}
+
+	/**
+	 * @return the average power of the profile of the port, see
+	 *         {@link #readProfile(GenericProfile, Port, Horizon)}
+	 */
+	public static double readPower(GenericProfile powerProfile, Port port, Horizon horizon) {
+		if (powerProfile instanceof ProfileReference) {
+			powerProfile = ((ProfileReference) powerProfile).getReference();
+		}
+		if (powerProfile == null) {
+			return Double.NaN;
+		}
+		return ratedPower(powerProfile, port) * readProfile(powerProfile, horizon, Aggregation.AVERAGE);
+	}
+
+	public static double readSoC(GenericProfile socProfile, Horizon horizon) {
+		return readProfile(socProfile, horizon, Aggregation.AVERAGE);
+	}
+
 	public static void writeProfile(Port port, EssimTime timestamp, double value) {
 		EList<GenericProfile> profiles = port.getProfile();
 		GenericProfile updatedProfile;
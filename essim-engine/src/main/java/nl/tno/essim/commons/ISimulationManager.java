@@ -17,6 +17,7 @@ package nl.tno.essim.commons;
 
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.concurrent.Executor;
 
 import nl.tno.essim.observation.IObservationConsumer;
 import nl.tno.essim.transportsolver.TransportSolver;
@@ -33,4 +34,10 @@ public interface ISimulationManager {
 
 	LocalDateTime getEndDateTime();
 
+	/**
+	 * @return the queue of this simulation on the solver scheduler, or null to run
+	 *         all solver work on the calling thread
+	 */
+	Executor getSolverExecutor();
+
 }
\ No newline at end of file
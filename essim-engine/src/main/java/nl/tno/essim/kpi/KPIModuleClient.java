@@ -21,7 +21,6 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 import java.util.concurrent.TimeoutException;
 
 import org.json.JSONArray;
@@ -30,6 +29,7 @@ import org.json.JSONObject;
 import io.nats.client.Connection;
 import io.nats.client.Nats;
 import lombok.extern.slf4j.Slf4j;
+import nl.tno.essim.managers.SimulationScheduler;
 import nl.tno.essim.model.EssimSimulation;
 import nl.tno.essim.model.KPIModule;
 import nl.tno.essim.model.RemoteKPIModule;
@@ -51,7 +51,7 @@ public class KPIModuleClient {
 		this.natsURL = simulation.getNatsURL() == null ? "nats://nats:4222" : simulation.getNatsURL();
 		this.messages = messages;
 		this.topicsOfInterest = new ArrayList<String>();
-		this.processPool = Executors.newWorkStealingPool();
+		this.processPool = SimulationScheduler.getObservationScheduler().newQueue("KPI " + simulationId);
 
 		processPool.submit(starter);
 	}
@@ -78,6 +78,10 @@ public class EmissionManager implements Simulatable, IObservationProvider {
 		initialise();
 	}
 
+	public boolean isEnabled() {
+		return enable;
+	}
+
 	private synchronized void initialise() {
 		consumerMap = new HashMap<String, List<ConsumerProducerPair>>();
 		producerMap = new HashMap<String, List<AssetEnergyPair>>();
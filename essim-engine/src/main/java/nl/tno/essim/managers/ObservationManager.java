@@ -19,7 +19,6 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 
 import nl.tno.essim.observation.IObservation;
 import nl.tno.essim.observation.IObservationConsumer;
@@ -35,7 +34,7 @@ public class ObservationManager implements IObservationManager {
 	public ObservationManager(String simulationRunName) {
 		this.simulationRunName = simulationRunName;
 		consumers = Collections.synchronizedList(new ArrayList<IObservationConsumer>());
-		executorService = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+		executorService = SimulationScheduler.getObservationScheduler().newQueue(simulationRunName);
 	}
 
 	@Override
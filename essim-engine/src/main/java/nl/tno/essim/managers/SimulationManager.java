@@ -23,11 +23,13 @@ import java.time.ZoneOffset;
 import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 
@@ -42,6 +44,7 @@ import nl.tno.essim.mso.MSOClient;
 import nl.tno.essim.observation.IObservationConsumer;
 import nl.tno.essim.time.EssimDuration;
 import nl.tno.essim.time.EssimTime;
+import nl.tno.essim.transportsolver.SolverGraph;
 import nl.tno.essim.transportsolver.TransportSolver;
 
 @Slf4j
@@ -52,7 +55,7 @@ public class SimulationManager implements ISimulationManager, IStatusProvider {
 	private LocalDateTime startDateTime;
 	private LocalDateTime endDateTime;
 	private EssimTime time;
-	private ThreadPoolExecutor simulationExecutor;
+	private ExecutorService simulationExecutor;
 	private CountDownLatch barrier;
 	private Duration precheckTime;
 	private AtomicInteger solverTypeIndex;
@@ -63,6 +66,7 @@ public class SimulationManager implements ISimulationManager, IStatusProvider {
 	public String description;
 	private List<IObservationConsumer> observationConsumers;
 	private HashMap<Integer, List<TransportSolver>> solverBlock;
+	private SolverGraph solverGraph;
 	private List<Simulatable> otherSims;
 	@Getter
 	private boolean started;
@@ -73,6 +77,12 @@ public class SimulationManager implements ISimulationManager, IStatusProvider {
 	private MSOClient msoClient;
 	private CountDownLatch msoBarrier;
 	private long modelDeployTimeout;
+	private int timeParallelChunkSteps;
+	private HashSet<TransportSolver> timeParallelSolvers;
+	private List<TimeParallelRunner> timeParallelRunners;
+	private ExecutorService timeParallelExecutor;
+	// First error of a simulatable, which ends the simulation
+	private volatile Throwable failure;
 
 	public SimulationManager(String simulationId, LocalDateTime startDateTime, LocalDateTime endDateTime,
 			EssimDuration simStepLength) {
@@ -81,6 +91,15 @@ public class SimulationManager implements ISimulationManager, IStatusProvider {
 			timeout = "45";
 		}
 		TIME_OUT_IN_SEC = Long.parseLong(timeout);
+		String chunkSteps = System.getenv("TIME_PARALLEL_CHUNK_STEPS");
+		if (chunkSteps != null) {
+			try {
+				timeParallelChunkSteps = Integer.parseInt(chunkSteps.trim());
+			} catch (NumberFormatException e) {
+				log.warn("Invalid value {} for TIME_PARALLEL_CHUNK_STEPS. Time-parallel stepping is disabled",
+						chunkSteps);
+			}
+		}
 		this.simulationId = simulationId;
 		this.startDateTime = startDateTime;
 		this.endDateTime = endDateTime;
@@ -89,12 +108,14 @@ public class SimulationManager implements ISimulationManager, IStatusProvider {
 		otherSims = new ArrayList<Simulatable>();
 		time = new EssimTime(startDateTime, endDateTime, simStepLength);
 		precheckTime = Duration.of(0, ChronoUnit.SECONDS);
+		// No MongoDB when the engine is run headless (without the REST service)
 		mongo = MongoBackend.getInstance();
 		interrupted = false;
 		interruptedCause = "";
+		timeParallelSolvers = new HashSet<TransportSolver>();
+		timeParallelRunners = new ArrayList<TimeParallelRunner>();
 
-		simulationExecutor = (ThreadPoolExecutor) Executors
-				.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+		simulationExecutor = SimulationScheduler.getSolverScheduler().newQueue(simulationId);
 		statusUpdater = Executors.newScheduledThreadPool(1);
 		statusUpdater.scheduleAtFixedRate(statusUpdaterService, 0, 1, TimeUnit.SECONDS);
 
@@ -104,7 +125,9 @@ public class SimulationManager implements ISimulationManager, IStatusProvider {
 	private Runnable statusUpdaterService = new Runnable() {
 		@Override
 		public void run() {
-			mongo.updateSimulationStatus(simulationId, Status.RUNNING, String.valueOf(status));
+			if (mongo != null) {
+				mongo.updateSimulationStatus(simulationId, Status.RUNNING, String.valueOf(status));
+			}
 		}
 	};
 
@@ -129,6 +152,11 @@ public class SimulationManager implements ISimulationManager, IStatusProvider {
 	 * 
 	 * @see nl.tno.dido.simulation.ISimulationManager#getName())
 	 */
+	@Override
+	public Executor getSolverExecutor() {
+		return simulationExecutor;
+	}
+
 	@Override
 	public String getName() {
 		return simulationId;
@@ -142,6 +170,10 @@ public class SimulationManager implements ISimulationManager, IStatusProvider {
 		}
 	}
 
+	public void setSolverGraph(SolverGraph solverGraph) {
+		this.solverGraph = solverGraph;
+	}
+
 	public void addOtherSimulatable(Simulatable sim) {
 		synchronized (otherSims) {
 			otherSims.add(sim);
@@ -178,9 +210,12 @@ public class SimulationManager implements ISimulationManager, IStatusProvider {
 			if (!result) {
 				throw new IllegalStateException("Error in Simulation Init: " + description);
 			}
+			checkFailure();
 
 			Instant startTime = Instant.now();
 
+			startTimeParallelRunners();
+
 			log.debug("Starting simulation");
 			// Step through until end of simulation
 			long start = time.getTime().toEpochSecond(ZoneOffset.UTC);
@@ -199,16 +234,22 @@ public class SimulationManager implements ISimulationManager, IStatusProvider {
 					System.gc();
 				}
 
-				for (Integer simulatableType : solverBlock.keySet()) {
-					List<TransportSolver> simulatablesOfSameType = solverBlock.get(simulatableType);
-					barrier = new CountDownLatch(simulatablesOfSameType.size());
-					for (Simulatable simulatable : simulatablesOfSameType) {
-						simulationExecutor.submit(new ExceptionRunnable(() -> {
-							simulatable.step(time);
-						}));
+				if (solverGraph != null) {
+					stepSolverGraph();
+				} else {
+					for (Integer simulatableType : solverBlock.keySet()) {
+						List<TransportSolver> simulatablesOfSameType = solverBlock.get(simulatableType);
+						barrier = new CountDownLatch(simulatablesOfSameType.size());
+						for (Simulatable simulatable : simulatablesOfSameType) {
+							simulationExecutor.submit(new ExceptionRunnable(() -> {
+								if (!timeParallelSolvers.contains(simulatable)) {
+									simulatable.step(time);
+								}
+							}));
+						}
+
+						awaitBarrier();
 					}
-
-					barrier.await();
 				}
 
 				barrier = new CountDownLatch(otherSims.size());
@@ -217,10 +258,18 @@ public class SimulationManager implements ISimulationManager, IStatusProvider {
 						simulatable.step(time);
 					}));
 				}
-				barrier.await();
+				awaitBarrier();
+
+				// Observations of the chunks of this timestep, and their errors
+				for (TimeParallelRunner runner : timeParallelRunners) {
+					runner.publishStep(time);
+				}
 
 				time = time.nextTimeStep();
 			}
+			for (TimeParallelRunner runner : timeParallelRunners) {
+				runner.await();
+			}
 			System.gc();
 
 			barrier = new CountDownLatch(numOfSolvers);
@@ -231,7 +280,7 @@ public class SimulationManager implements ISimulationManager, IStatusProvider {
 					}));
 				}
 			}
-			barrier.await();
+			awaitBarrier();
 
 			log.debug("Please wait while the data is flushed to the database. This could take a few seconds...");
 
@@ -249,25 +298,125 @@ public class SimulationManager implements ISimulationManager, IStatusProvider {
 			Instant endTime = Instant.now();
 			String simDuration = Duration.between(startTime, endTime).plus(precheckTime).toString();
 			log.debug("Simulation finished and took {}", simDuration);
-			mongo.updateSimulationStatus(simulationId, Status.COMPLETE, "Finished in " + simDuration);
-			mongo.updateStatus("Ready");
+			if (mongo != null) {
+				mongo.updateSimulationStatus(simulationId, Status.COMPLETE, "Finished in " + simDuration);
+				mongo.updateStatus("Ready");
+			}
 			shutdown();
 		} catch (Exception e) {
 			statusUpdater.shutdownNow();
 			log.error("Error in scheduled runnable", e);
 			status = -1;
 			description = e.getMessage();
-			mongo.updateSimulationStatus(simulationId, Status.ERROR, String.valueOf(description));
-			mongo.updateStatus("Ready");
+			if (mongo != null) {
+				mongo.updateSimulationStatus(simulationId, Status.ERROR, String.valueOf(description));
+				mongo.updateStatus("Ready");
+			}
 			shutdown();
 			Thread.currentThread().interrupt();
 		}
 
 	}
 
+	/**
+	 * Steps all transport solvers for the current timestep. A solver is submitted
+	 * as soon as the solvers it depends on (via conversion assets) are done,
+	 * instead of waiting for the whole previous block of solvers.
+	 */
+	private void stepSolverGraph() throws InterruptedException {
+		int[] inDegrees = solverGraph.getInDegrees();
+		AtomicInteger[] pending = new AtomicInteger[inDegrees.length];
+		for (int i = 0; i < inDegrees.length; i++) {
+			pending[i] = new AtomicInteger(inDegrees[i]);
+		}
+
+		barrier = new CountDownLatch(solverGraph.size());
+		for (int i = 0; i < inDegrees.length; i++) {
+			if (inDegrees[i] == 0) {
+				submitSolverStep(i, pending);
+			}
+		}
+		awaitBarrier();
+	}
+
+	/**
+	 * Waits for the tasks of the current barrier. A failing task releases the
+	 * barrier (see {@link ExceptionRunnable}), so that the simulation ends with
+	 * its error instead of waiting for tasks that will never run.
+	 */
+	private void awaitBarrier() throws InterruptedException {
+		barrier.await();
+		checkFailure();
+	}
+
+	private void checkFailure() {
+		if (failure != null) {
+			throw new IllegalStateException("Error in simulation step: " + failure.getMessage(), failure);
+		}
+	}
+
+	private void submitSolverStep(int index, AtomicInteger[] pending) {
+		TransportSolver solver = solverGraph.getSolver(index);
+		simulationExecutor.submit(new ExceptionRunnable(() -> {
+			if (!timeParallelSolvers.contains(solver)) {
+				solver.step(time);
+			}
+			for (int successor : solverGraph.getSuccessors(index)) {
+				if (pending[successor].decrementAndGet() == 0) {
+					submitSolverStep(successor, pending);
+				}
+			}
+		}));
+	}
+
+	/**
+	 * If TIME_PARALLEL_CHUNK_STEPS is set, solvers of time independent networks
+	 * are taken out of the lockstep loop and stepped over the whole horizon in
+	 * parallel chunks of that many timesteps. Not used when emissions are
+	 * calculated, as the emission manager collects all networks per timestep.
+	 *
+	 * Chunks run on a queue of their own, so that the solver scheduler shares its
+	 * workers fairly between the chunks and the tasks of the lockstep loop. As a
+	 * chunk keeps a worker for many timesteps, one worker of SOLVER_THREADS is left
+	 * for the lockstep loop when there are more than one.
+	 */
+	private void startTimeParallelRunners() {
+		if (timeParallelChunkSteps <= 0 || EmissionManager.getInstance(simulationId).isEnabled()) {
+			return;
+		}
+		SimulationScheduler scheduler = SimulationScheduler.getSolverScheduler();
+		int window = Math.max(1, scheduler.getThreads() - 1);
+		for (List<TransportSolver> solvers : solverBlock.values()) {
+			for (TransportSolver solver : solvers) {
+				if (solver.isTimeIndependent()) {
+					if (timeParallelExecutor == null) {
+						timeParallelExecutor = scheduler.newQueue(simulationId + " chunks");
+					}
+					TimeParallelRunner runner = new TimeParallelRunner(solver, time, timeParallelChunkSteps,
+							timeParallelExecutor);
+					timeParallelSolvers.add(solver);
+					timeParallelRunners.add(runner);
+					runner.start(window);
+				}
+			}
+		}
+		log.debug("{} of {} solvers are stepped in time-parallel chunks of {} steps", timeParallelSolvers.size(),
+				numOfSolvers, timeParallelChunkSteps);
+	}
+
 	public void shutdown() {
 		statusUpdater.shutdownNow();
 		simulationExecutor.shutdownNow();
+		if (timeParallelExecutor != null) {
+			timeParallelExecutor.shutdownNow();
+		}
+	}
+
+	/**
+	 * Overrides TIME_PARALLEL_CHUNK_STEPS, 0 steps all solvers in lockstep.
+	 */
+	public void setTimeParallelChunkSteps(int chunkSteps) {
+		timeParallelChunkSteps = chunkSteps;
 	}
 
 	public void setMSOClient(MSOClient msoClient, CountDownLatch msoBarrier, long modelDeployTimeout) {
@@ -284,24 +433,35 @@ public class SimulationManager implements ISimulationManager, IStatusProvider {
 	 */
 	public class ExceptionRunnable implements Runnable {
 		private Runnable runnable;
+		private CountDownLatch latch;
 
 		public ExceptionRunnable(Runnable r) {
 			this.runnable = r;
+			this.latch = barrier;
 		}
 
 		@Override
 		public void run() {
 			try {
 				runnable.run();
-				barrier.countDown();
+				latch.countDown();
 			} catch (Throwable e) {
 				statusUpdater.shutdownNow();
 				log.error("Error in scheduled runnable", e);
 				status = -1;
 				description = e.getMessage();
-				mongo.updateSimulationStatus(simulationId, Status.ERROR, String.valueOf(description));
-				mongo.updateStatus("Ready");
+				if (mongo != null) {
+					mongo.updateSimulationStatus(simulationId, Status.ERROR, String.valueOf(description));
+					mongo.updateStatus("Ready");
+				}
+				if (failure == null) {
+					failure = e;
+				}
 				simulationExecutor.shutdownNow();
+				// The other tasks of this barrier may never run now
+				while (latch.getCount() > 0) {
+					latch.countDown();
+				}
 				Thread.currentThread().interrupt();
 			}
 		}
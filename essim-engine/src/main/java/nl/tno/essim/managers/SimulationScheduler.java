@@ -0,0 +1,285 @@
+/**
+ *  This work is based on original code developed and copyrighted by TNO 2020. 
+ *  Subsequent contributions are licensed to you by the developers of such code and are
+ *  made available to the Project under one or several contributor license agreements.
+ *
+ *  This work is licensed to you under the Apache License, Version 2.0.
+ *  You may obtain a copy of the license at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Contributors:
+ *      TNO         - Initial implementation
+ *  Manager:
+ *      TNO
+ */
+
+package nl.tno.essim.managers;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * JVM-wide pool of worker threads shared by all simulations. Every simulation
+ * (or observation consumer) registers its own {@link RunQueue}; the workers
+ * serve the queues that have pending work in round-robin order, so that
+ * concurrent simulations get a fair share of the threads instead of each of
+ * them starting its own pool.
+ *
+ * There are three schedulers: one for solver work (CPU bound), one for
+ * observation publishing (I/O bound), so that slow consumers cannot starve the
+ * solvers, and one for loading profiles, which also bounds the number of
+ * concurrent profile queries. Their sizes are read from SOLVER_THREADS,
+ * OBSERVATION_THREADS and PROFILE_THREADS and default to the number of
+ * available processors.
+ *
+ * Submitting a task wakes a single idle worker. Callers waiting for a queue to
+ * terminate wait on a condition of their own, so they are not woken for every
+ * task. {@link RunQueue#shutdownNow()} interrupts the workers that are running
+ * tasks of that queue, as shutting down a pool of its own would.
+ */
+@Slf4j
+public class SimulationScheduler {
+
+	private static final String SOLVER_THREADS = "SOLVER_THREADS";
+	private static final String OBSERVATION_THREADS = "OBSERVATION_THREADS";
+	private static final String PROFILE_THREADS = "PROFILE_THREADS";
+	private static SimulationScheduler solverScheduler;
+	private static SimulationScheduler observationScheduler;
+	private static SimulationScheduler profileScheduler;
+
+	private final String name;
+	private final int threads;
+	private final ArrayDeque<RunQueue> readyQueues;
+	private final ReentrantLock lock;
+	// Signalled once per submitted task
+	private final Condition workAvailable;
+	// Signalled when a queue may have terminated
+	private final Condition queueIdle;
+
+	private SimulationScheduler(String name, int threads) {
+		this.name = name;
+		this.threads = threads;
+		readyQueues = new ArrayDeque<RunQueue>();
+		lock = new ReentrantLock();
+		workAvailable = lock.newCondition();
+		queueIdle = lock.newCondition();
+		for (int i = 0; i < threads; i++) {
+			Thread worker = new Thread(this::work, name + "-" + i);
+			worker.setDaemon(true);
+			worker.start();
+		}
+		log.debug("Started {} scheduler with {} threads", name, threads);
+	}
+
+	public synchronized static SimulationScheduler getSolverScheduler() {
+		if (solverScheduler == null) {
+			solverScheduler = new SimulationScheduler("solver", threadsFromEnv(SOLVER_THREADS));
+		}
+		return solverScheduler;
+	}
+
+	public synchronized static SimulationScheduler getObservationScheduler() {
+		if (observationScheduler == null) {
+			observationScheduler = new SimulationScheduler("observation", threadsFromEnv(OBSERVATION_THREADS));
+		}
+		return observationScheduler;
+	}
+
+	public synchronized static SimulationScheduler getProfileScheduler() {
+		if (profileScheduler == null) {
+			profileScheduler = new SimulationScheduler("profile", threadsFromEnv(PROFILE_THREADS));
+		}
+		return profileScheduler;
+	}
+
+	private static int threadsFromEnv(String variable) {
+		int threads = Runtime.getRuntime().availableProcessors();
+		String threadString = System.getenv(variable);
+		if (threadString != null) {
+			try {
+				threads = Integer.parseInt(threadString.trim());
+			} catch (NumberFormatException e) {
+				log.warn("Invalid value {} for {}. Defaulting to {}", threadString, variable, threads);
+			}
+		}
+		return Math.max(1, threads);
+	}
+
+	/**
+	 * @return the number of worker threads of this scheduler
+	 */
+	public int getThreads() {
+		return threads;
+	}
+
+	/**
+	 * Creates a new queue whose tasks are executed by the shared workers of this
+	 * scheduler.
+	 */
+	public RunQueue newQueue(String runName) {
+		return new RunQueue(runName);
+	}
+
+	private void work() {
+		while (true) {
+			RunQueue queue;
+			Runnable task;
+			lock.lock();
+			try {
+				while (readyQueues.isEmpty()) {
+					workAvailable.awaitUninterruptibly();
+				}
+				queue = readyQueues.poll();
+				task = queue.tasks.poll();
+				if (queue.tasks.isEmpty()) {
+					queue.ready = false;
+				} else {
+					readyQueues.add(queue);
+				}
+				queue.running.add(Thread.currentThread());
+			} finally {
+				lock.unlock();
+			}
+
+			try {
+				task.run();
+			} catch (Throwable e) {
+				log.error("Error in " + name + " task of " + queue.runName, e);
+			} finally {
+				lock.lock();
+				try {
+					queue.running.remove(Thread.currentThread());
+					if (queue.running.isEmpty() && queue.tasks.isEmpty()) {
+						queueIdle.signalAll();
+					}
+				} finally {
+					lock.unlock();
+				}
+				// Tasks may interrupt their thread on error, and shutdownNow interrupts
+				// running tasks. Workers live on. Once the thread is no longer running a
+				// task of the queue it can not be interrupted for it anymore.
+				Thread.interrupted();
+			}
+		}
+	}
+
+	/**
+	 * The tasks of one simulation run (or consumer). Behaves like an
+	 * {@link java.util.concurrent.ExecutorService} without threads of its own.
+	 */
+	public class RunQueue extends AbstractExecutorService {
+		private final String runName;
+		private final ArrayDeque<Runnable> tasks;
+		private boolean ready;
+		private boolean shutdown;
+		// Workers running a task of this queue
+		private final HashSet<Thread> running;
+
+		private RunQueue(String runName) {
+			this.runName = runName;
+			tasks = new ArrayDeque<Runnable>();
+			running = new HashSet<Thread>();
+		}
+
+		@Override
+		public void execute(Runnable command) {
+			lock.lock();
+			try {
+				if (shutdown) {
+					throw new RejectedExecutionException(runName + " is shut down");
+				}
+				tasks.add(command);
+				if (!ready) {
+					ready = true;
+					readyQueues.add(this);
+				}
+				workAvailable.signal();
+			} finally {
+				lock.unlock();
+			}
+		}
+
+		@Override
+		public void shutdown() {
+			lock.lock();
+			try {
+				shutdown = true;
+				queueIdle.signalAll();
+			} finally {
+				lock.unlock();
+			}
+		}
+
+		/**
+		 * Removes the pending tasks and interrupts the workers that are running
+		 * tasks of this queue.
+		 */
+		@Override
+		public List<Runnable> shutdownNow() {
+			lock.lock();
+			try {
+				shutdown = true;
+				List<Runnable> pending = new ArrayList<Runnable>(tasks);
+				tasks.clear();
+				if (ready) {
+					ready = false;
+					readyQueues.remove(this);
+				}
+				for (Thread worker : running) {
+					worker.interrupt();
+				}
+				queueIdle.signalAll();
+				return pending;
+			} finally {
+				lock.unlock();
+			}
+		}
+
+		@Override
+		public boolean isShutdown() {
+			lock.lock();
+			try {
+				return shutdown;
+			} finally {
+				lock.unlock();
+			}
+		}
+
+		@Override
+		public boolean isTerminated() {
+			lock.lock();
+			try {
+				return shutdown && tasks.isEmpty() && running.isEmpty();
+			} finally {
+				lock.unlock();
+			}
+		}
+
+		@Override
+		public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+			long remaining = unit.toNanos(timeout);
+			lock.lock();
+			try {
+				while (!(shutdown && tasks.isEmpty() && running.isEmpty())) {
+					if (remaining <= 0) {
+						return false;
+					}
+					remaining = queueIdle.awaitNanos(remaining);
+				}
+				return true;
+			} finally {
+				lock.unlock();
+			}
+		}
+	}
+}
@@ -0,0 +1,274 @@
+/**
+ *  This work is based on original code developed and copyrighted by TNO 2020. 
+ *  Subsequent contributions are licensed to you by the developers of such code and are
+ *  made available to the Project under one or several contributor license agreements.
+ *
+ *  This work is licensed to you under the Apache License, Version 2.0.
+ *  You may obtain a copy of the license at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Contributors:
+ *      TNO         - Initial implementation
+ *  Manager:
+ *      TNO
+ */
+
+package nl.tno.essim.managers;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+
+import lombok.extern.slf4j.Slf4j;
+import nl.tno.essim.observation.IObservation;
+import nl.tno.essim.observation.IObservationConsumer;
+import nl.tno.essim.observation.IObservationManager;
+import nl.tno.essim.observation.IObservationProvider;
+import nl.tno.essim.time.EssimTime;
+import nl.tno.essim.transportsolver.TransportSolver;
+
+/**
+ * Steps a time independent {@link TransportSolver} (see
+ * {@link TransportSolver#isTimeIndependent()}) over the whole simulation
+ * horizon by splitting it into chunks of a fixed number of timesteps. Chunks
+ * are stepped concurrently, each on its own copy of the network, with at most
+ * a window of chunks in flight at a time.
+ *
+ * All observations of the chunks are held per timestep, and only published
+ * when the lockstep loop of the simulation reaches that timestep (see
+ * {@link #publishStep(EssimTime)}). That way the consumers see the
+ * observations of all solvers merged in time order, as without chunks, which
+ * consumers that aggregate per timestep (KPIs, CSV) rely on. A chunk counts
+ * towards the window until its last timestep is published, which bounds the
+ * number of observations held.
+ */
+@Slf4j
+public class TimeParallelRunner {
+
+	private final TransportSolver solver;
+	private final IObservationManager observationManager;
+	private final ExecutorService executor;
+	private final EssimTime simulationTime;
+	private final int chunkSteps;
+	private final List<LocalDateTime> chunkStarts;
+	private final ChunkObservations[] chunkObservations;
+	private final boolean[] finished;
+	private final ConcurrentLinkedQueue<TransportSolver> copies;
+	private final CountDownLatch done;
+	private int nextToSubmit;
+	private volatile Throwable error;
+
+	public TimeParallelRunner(TransportSolver solver, EssimTime simulationTime, int chunkSteps,
+			ExecutorService executor) {
+		this.solver = solver;
+		this.observationManager = solver.getObservationManager();
+		this.executor = executor;
+		this.simulationTime = simulationTime;
+		this.chunkSteps = chunkSteps;
+
+		chunkStarts = new ArrayList<LocalDateTime>();
+		EssimTime time = newTime();
+		for (int i = 0; !time.getTime().isAfter(simulationTime.getSimulationEndTime()); i++) {
+			if (i % chunkSteps == 0) {
+				chunkStarts.add(time.getTime());
+			}
+			time.nextTimeStep();
+		}
+
+		int chunks = chunkStarts.size();
+		chunkObservations = new ChunkObservations[chunks];
+		for (int i = 0; i < chunks; i++) {
+			chunkObservations[i] = new ChunkObservations();
+		}
+		finished = new boolean[chunks];
+		copies = new ConcurrentLinkedQueue<TransportSolver>();
+		done = new CountDownLatch(chunks);
+	}
+
+	/**
+	 * Submits the first chunks. Every chunk whose observations are all published
+	 * submits the next one, so at most window chunks are stepped (and held) at the
+	 * same time.
+	 */
+	public synchronized void start(int window) {
+		log.debug("Stepping {} in {} chunks of {} steps", solver.getId(), chunkStarts.size(), chunkSteps);
+		while (nextToSubmit < Math.min(window, chunkStarts.size())) {
+			submitChunk(nextToSubmit++);
+		}
+	}
+
+	/**
+	 * Publishes the observations of a timestep, waiting for the chunk it belongs
+	 * to if that has not been stepped that far yet. Called by the lockstep loop
+	 * after every timestep, in order.
+	 *
+	 * @throws IllegalStateException if a chunk failed
+	 */
+	public void publishStep(EssimTime time) throws InterruptedException {
+		int step = time.toDiscreteSimulationTime();
+		int chunk = step / chunkSteps;
+		int stepInChunk = step % chunkSteps;
+		List<Pending> pending;
+		synchronized (this) {
+			ChunkObservations observations = chunkObservations[chunk];
+			while (error == null && !finished[chunk] && observations.stepEnds.size() <= stepInChunk) {
+				wait();
+			}
+			checkFailure();
+			pending = observations.take(stepInChunk);
+			if (stepInChunk == chunkSteps - 1) {
+				chunkObservations[chunk] = null;
+				if (nextToSubmit < chunkStarts.size()) {
+					submitChunk(nextToSubmit++);
+				}
+			}
+		}
+		for (Pending observation : pending) {
+			observation.publish();
+		}
+	}
+
+	/**
+	 * Throws the error of a failed chunk, so that the simulation stops at the
+	 * timestep it is at.
+	 */
+	public void checkFailure() {
+		if (error != null) {
+			throw new IllegalStateException(
+					"Error in time-parallel run of " + solver.getId() + ": " + error.getMessage(), error);
+		}
+	}
+
+	public void await() throws InterruptedException {
+		done.await();
+		checkFailure();
+	}
+
+	private EssimTime newTime() {
+		return new EssimTime(simulationTime.getSimulationStartTime(), simulationTime.getSimulationEndTime(),
+				simulationTime.getSimulationStepLength());
+	}
+
+	private void submitChunk(int chunk) {
+		try {
+			executor.submit(() -> runChunk(chunk));
+		} catch (RejectedExecutionException e) {
+			error = e;
+			chunkDone(chunk);
+		}
+	}
+
+	private void runChunk(int chunk) {
+		try {
+			if (error == null) {
+				TransportSolver copy = copies.poll();
+				if (copy == null) {
+					copy = solver.copyForTimeChunk();
+				}
+				ChunkObservations observations = chunkObservations[chunk];
+				copy.setObservationManager(observations);
+
+				EssimTime time = newTime();
+				time.setTime(chunkStarts.get(chunk));
+				for (int i = 0; i < chunkSteps && !time.getTime().isAfter(time.getSimulationEndTime()); i++) {
+					copy.step(time);
+					observations.stepDone();
+					time.nextTimeStep();
+				}
+				copies.add(copy);
+			}
+		} catch (Throwable e) {
+			log.error("Error in chunk " + chunk + " of " + solver.getId(), e);
+			error = e;
+		} finally {
+			chunkDone(chunk);
+		}
+	}
+
+	private synchronized void chunkDone(int chunk) {
+		finished[chunk] = true;
+		done.countDown();
+		if (error != null) {
+			// Chunks that were not submitted yet are skipped
+			while (nextToSubmit < chunkStarts.size()) {
+				nextToSubmit++;
+				done.countDown();
+			}
+		}
+		notifyAll();
+	}
+
+	private class Pending {
+		private final IObservationProvider source;
+		private final IObservation observation;
+		private final boolean batch;
+
+		private Pending(IObservationProvider source, IObservation observation, boolean batch) {
+			this.source = source;
+			this.observation = observation;
+			this.batch = batch;
+		}
+
+		private void publish() {
+			if (batch) {
+				observationManager.publishBatch(source, observation);
+			} else {
+				observationManager.publish(source, observation);
+			}
+		}
+	}
+
+	// Guarded by the runner, which is notified of every finished timestep
+	private class ChunkObservations implements IObservationManager {
+		private final List<Pending> pending = new ArrayList<Pending>();
+		// Number of pending observations at the end of every finished timestep
+		private final List<Integer> stepEnds = new ArrayList<Integer>();
+		private int published;
+
+		private void stepDone() {
+			synchronized (TimeParallelRunner.this) {
+				stepEnds.add(pending.size());
+				TimeParallelRunner.this.notifyAll();
+			}
+		}
+
+		private List<Pending> take(int step) {
+			int end = stepEnds.get(step);
+			List<Pending> taken = new ArrayList<Pending>(pending.subList(published, end));
+			for (int i = published; i < end; i++) {
+				pending.set(i, null);
+			}
+			published = end;
+			return taken;
+		}
+
+		@Override
+		public void publish(IObservationProvider source, IObservation observation) {
+			synchronized (TimeParallelRunner.this) {
+				pending.add(new Pending(source, observation, false));
+			}
+		}
+
+		@Override
+		public void publishBatch(IObservationProvider source, IObservation observation) {
+			synchronized (TimeParallelRunner.this) {
+				pending.add(new Pending(source, observation, true));
+			}
+		}
+
+		@Override
+		public void registerConsumer(IObservationConsumer consumer) {
+			observationManager.registerConsumer(consumer);
+		}
+
+		@Override
+		public void registerConsumers(List<IObservationConsumer> consumerList) {
+			observationManager.registerConsumers(consumerList);
+		}
+	}
+}
@@ -21,7 +21,6 @@ import java.net.MalformedURLException;
 import java.net.URL;
 import java.util.Map.Entry;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 
@@ -32,6 +31,7 @@ import com.rabbitmq.client.Connection;
 import com.rabbitmq.client.ConnectionFactory;
 
 import lombok.extern.slf4j.Slf4j;
+import nl.tno.essim.managers.SimulationScheduler;
 import nl.tno.essim.observation.IObservation;
 import nl.tno.essim.observation.IObservationConsumer;
 import nl.tno.essim.observation.IObservationProvider;
@@ -68,7 +68,7 @@ public class AMQPObservationConsumer implements IObservationConsumer {
 	@Override
 	public void init(String scenarioName) {
 		observationTopic = scenarioName + "." + OBSERVATION_TOPIC;
-		pool = Executors.newWorkStealingPool();
+		pool = SimulationScheduler.getObservationScheduler().newQueue(observationTopic);
 
 		try {
 			ConnectionFactory factory = new ConnectionFactory();
@@ -27,11 +27,11 @@ import java.util.HashMap;
 import java.util.Map;
 import java.util.TreeSet;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 import java.util.stream.Collectors;
 
 import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
+import nl.tno.essim.managers.SimulationScheduler;
 import nl.tno.essim.observation.IObservation;
 import nl.tno.essim.observation.IObservationConsumer;
 import nl.tno.essim.observation.IObservationProvider;
@@ -46,7 +46,7 @@ public class CSVObservationConsumer implements IObservationConsumer {
 	public CSVObservationConsumer(String csvFilesLocation) {
 		this.csvFilesLocation = csvFilesLocation;
 		tables = new HashMap<String, Table>();
-		pool = Executors.newWorkStealingPool();
+		pool = SimulationScheduler.getObservationScheduler().newQueue(csvFilesLocation);
 	}
 
 	@Override
@@ -18,7 +18,6 @@ package nl.tno.essim.observation.consumers;
 import java.util.Map.Entry;
 import java.util.UUID;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 
 import org.eclipse.paho.client.mqttv3.MqttAsyncClient;
@@ -26,6 +25,7 @@ import org.eclipse.paho.client.mqttv3.MqttConnectOptions;
 import org.eclipse.paho.client.mqttv3.MqttException;
 import org.json.JSONObject;
 
+import nl.tno.essim.managers.SimulationScheduler;
 import nl.tno.essim.observation.IObservation;
 import nl.tno.essim.observation.IObservationConsumer;
 import nl.tno.essim.observation.IObservationProvider;
@@ -47,7 +47,7 @@ public class MQTTObservationConsumer implements IObservationConsumer {
 	@Override
 	public void init(String scenarioName) {
 		observationTopic = scenarioName + "." + OBSERVATION_TOPIC;
-		pool = Executors.newWorkStealingPool();
+		pool = SimulationScheduler.getObservationScheduler().newQueue(observationTopic);
 
 		try {
 			client = new MqttAsyncClient(url, "essim" + UUID.randomUUID().toString());
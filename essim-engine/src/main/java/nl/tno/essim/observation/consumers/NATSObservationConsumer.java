@@ -18,7 +18,6 @@ package nl.tno.essim.observation.consumers;
 import java.io.IOException;
 import java.util.Map.Entry;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 
@@ -26,6 +25,7 @@ import org.json.JSONObject;
 
 import io.nats.client.Connection;
 import io.nats.client.Nats;
+import nl.tno.essim.managers.SimulationScheduler;
 import nl.tno.essim.observation.IObservation;
 import nl.tno.essim.observation.IObservationConsumer;
 import nl.tno.essim.observation.IObservationProvider;
@@ -47,7 +47,7 @@ public class NATSObservationConsumer implements IObservationConsumer {
 	@Override
 	public void init(String scenarioName) {
 		observationTopic = scenarioName + "." + OBSERVATION_TOPIC;
-		pool = Executors.newWorkStealingPool();
+		pool = SimulationScheduler.getObservationScheduler().newQueue(observationTopic);
 
 		try {
 			nc = Nats.connect(url);
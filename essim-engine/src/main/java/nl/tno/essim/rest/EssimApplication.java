@@ -20,6 +20,8 @@ import java.util.Set;
 
 import javax.ws.rs.core.Application;
 
+import org.glassfish.jersey.media.multipart.MultiPartFeature;
+
 public class EssimApplication extends Application {
 	
 	@Override
@@ -27,6 +29,8 @@ public class EssimApplication extends Application {
 		final Set<Class<?>> resources = new HashSet<>();
 
 		resources.add(RestSimulation.class);
+		resources.add(RestSimulationUpload.class);
+		resources.add(MultiPartFeature.class);
 		resources.add(DebugMapper.class);
 
 		return resources;
@@ -16,13 +16,14 @@
 
 package nl.tno.essim.rest;
 
-import java.io.File;
-import java.io.FileWriter;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.PrintWriter;
 import java.io.StringWriter;
 import java.lang.Thread.UncaughtExceptionHandler;
 import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
 import java.util.Base64;
 import java.util.Date;
 import java.util.List;
@@ -33,8 +34,10 @@ import org.json.JSONObject;
 
 import lombok.extern.slf4j.Slf4j;
 import nl.tno.essim.ESSimEngine;
+import nl.tno.essim.EsdlSource;
 import nl.tno.essim.Simulation;
 import nl.tno.essim.commons.Commons;
+import nl.tno.essim.commons.IStatusProvider;
 import nl.tno.essim.model.CreatedStatusImpl;
 import nl.tno.essim.model.ErrorStatusImpl;
 import nl.tno.essim.model.EssimSimulation;
@@ -78,31 +81,88 @@ public class RestSimulation implements Simulation {
 		error.setStatus(Status.ERROR);
 
 		String esdlContents = simulation.getEsdlContents();
-		FileWriter fw = null;
-		File esdlFile = null;
+		InputStream esdlStream;
 		if (esdlContents == null || esdlContents.isEmpty()) {
 			error.setDescription("Invalid ESDL file!");
 			return PostSimulationResponse.respond400WithApplicationJson(error);
 		} else {
 			try {
-				String decodedContents;
-				try {
-					decodedContents = new String(Base64.getDecoder().decode(esdlContents), "UTF-8");
-				} catch (IllegalArgumentException e) {
+				// Base64 is decoded from the string while the ESDL is parsed
+				if (isBase64(esdlContents)) {
+					esdlStream = Base64.getDecoder().wrap(new CharSequenceInputStream(esdlContents));
+				} else {
 					log.debug("ESDL content is not Base64 encoded. Trying URL decoder...");
-					decodedContents = URLDecoder.decode(esdlContents, "UTF-8");
+					esdlStream = new ByteArrayInputStream(
+							URLDecoder.decode(esdlContents, "UTF-8").getBytes(StandardCharsets.UTF_8));
 				}
-				esdlFile = File.createTempFile("ess", ".esdl", null);
-				fw = new FileWriter(esdlFile);
-				fw.write(decodedContents);
-				fw.close();
-				log.debug("Created temp file: {}", esdlFile.getPath());
-			} catch (IOException e) {
-				error.setDescription("Temp file write error!");
+			} catch (IOException | IllegalArgumentException e) {
+				error.setDescription("Invalid ESDL file!");
 				return PostSimulationResponse.respond400WithApplicationJson(error);
 			}
 		}
 
+		CreatedStatusImpl created = startSimulation(simulation, esdlStream, error);
+		if (created != null) {
+			return PostSimulationResponse.respond201WithApplicationJson(created);
+		}
+		return PostSimulationResponse.respond400WithApplicationJson(error);
+	}
+
+	private static boolean isBase64(String contents) {
+		if (contents.length() % 4 != 0) {
+			return false;
+		}
+		for (int i = 0; i < contents.length(); i++) {
+			char c = contents.charAt(i);
+			if (!((c >= 'A' && c <= 'Z') || (c >= 'a' && c <= 'z') || (c >= '0' && c <= '9') || c == '+' || c == '/'
+					|| c == '=')) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Reads the characters of a string as bytes, without copying it, for strings
+	 * of single byte (ISO-8859-1) characters such as Base64.
+	 */
+	private static class CharSequenceInputStream extends InputStream {
+		private final CharSequence chars;
+		private int position;
+
+		private CharSequenceInputStream(CharSequence chars) {
+			this.chars = chars;
+		}
+
+		@Override
+		public int read() {
+			return position < chars.length() ? chars.charAt(position++) & 0xff : -1;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) {
+			if (len == 0) {
+				return 0;
+			}
+			if (position >= chars.length()) {
+				return -1;
+			}
+			int read = Math.min(len, chars.length() - position);
+			for (int i = 0; i < read; i++) {
+				b[off + i] = (byte) chars.charAt(position++);
+			}
+			return read;
+		}
+	}
+
+	/**
+	 * Stores the simulation, creates its engine from the ESDL in the stream and
+	 * starts it.
+	 *
+	 * @return the status of the created simulation, or null if it could not be
+	 *         created, with the reason in the error
+	 */
+	CreatedStatusImpl startSimulation(EssimSimulation simulation, InputStream esdlStream, ErrorStatusImpl error) {
 		String simId = null;
 		try {
 			if (mongo != null) {
@@ -116,7 +176,9 @@ public class RestSimulation implements Simulation {
 
 				Date now = new Date();
 				simulation.setSimRunDate(now);
-				ESSimEngine engine = new ESSimEngine(ESSIM_ID, simId, simulation, esdlFile);
+				EsdlSource esdlSource = EsdlSource.read(esdlStream, ESSimEngine.needsEsdlSource(simulation));
+				log.debug("Read ESDL of simulation {} ({} bytes compressed)", simId, esdlSource.getCompressedSize());
+				ESSimEngine engine = new ESSimEngine(ESSIM_ID, simId, simulation, esdlSource);
 				String grafanaDashboard = engine.createGrafanaDashboard();
 				if (grafanaDashboard != null) {
 					simulation.setDashboardURL(grafanaDashboard);
@@ -140,7 +202,7 @@ public class RestSimulation implements Simulation {
 				created.setStatus(Status.CREATED);
 				created.setId(simId);
 
-				return PostSimulationResponse.respond201WithApplicationJson(created);
+				return created;
 			} else {
 				error.setDescription("MongoDB internal error!");
 			}
@@ -153,7 +215,7 @@ public class RestSimulation implements Simulation {
 			mongo.updateStatus("Ready");
 		}
 
-		return PostSimulationResponse.respond400WithApplicationJson(error);
+		return null;
 	}
 
 	@Override
@@ -188,10 +250,20 @@ public class RestSimulation implements Simulation {
 			String simulationId, String index) {
 		EssimSimulation simulation = mongo.getSimulation(simulationId);
 		if (simulation != null) {
-			List<TransportNetwork> transportNetworks = simulation.getTransport();
 			try {
 				int i = Integer.parseInt(index);
-				TransportNetwork transportNetwork = transportNetworks.get(i);
+				// Diagrams of simulations in this instance are rendered on request
+				IStatusProvider statusProvider = mongo.getStatusMap().get(simulationId);
+				TransportNetwork transportNetwork;
+				if (statusProvider instanceof ESSimEngine) {
+					transportNetwork = ((ESSimEngine) statusProvider).getNetworkDiag(i);
+					if (transportNetwork == null) {
+						throw new IndexOutOfBoundsException();
+					}
+				} else {
+					List<TransportNetwork> transportNetworks = simulation.getTransport();
+					transportNetwork = transportNetworks.get(i);
+				}
 				return GetSimulationTransportBySimulationIdAndIndexResponse
 						.respond200WithApplicationJson(transportNetwork);
 			} catch (IndexOutOfBoundsException | NumberFormatException e) {
@@ -0,0 +1,79 @@
+/**
+ *  This work is based on original code developed and copyrighted by TNO 2020. 
+ *  Subsequent contributions are licensed to you by the developers of such code and are
+ *  made available to the Project under one or several contributor license agreements.
+ *
+ *  This work is licensed to you under the Apache License, Version 2.0.
+ *  You may obtain a copy of the license at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Contributors:
+ *      TNO         - Initial implementation
+ *  Manager:
+ *      TNO
+ */
+
+package nl.tno.essim.rest;
+
+import java.io.InputStream;
+
+import javax.ws.rs.Consumes;
+import javax.ws.rs.POST;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+
+import org.glassfish.jersey.media.multipart.FormDataBodyPart;
+import org.glassfish.jersey.media.multipart.FormDataParam;
+
+import nl.tno.essim.model.CreatedStatusImpl;
+import nl.tno.essim.model.ErrorStatusImpl;
+import nl.tno.essim.model.EssimSimulation;
+import nl.tno.essim.model.EssimSimulationImpl;
+import nl.tno.essim.model.Status;
+
+/**
+ * Creates and starts a simulation like POST /simulation, but with the ESDL
+ * uploaded as a separate part of a multipart/form-data request: the
+ * "simulation" part holds the simulation as JSON (without esdlContents) and
+ * the "esdl" part the ESDL document itself, plain or gzip compressed. The ESDL
+ * is parsed while it is received, so it does not have to be Base64 encoded
+ * into the JSON and decoded again.
+ */
+@Path("simulation/upload")
+public class RestSimulationUpload {
+
+	private static final String SIMULATION_PART = "simulation";
+	private static final String ESDL_PART = "esdl";
+
+	@POST
+	@Consumes(MediaType.MULTIPART_FORM_DATA)
+	@Produces(MediaType.APPLICATION_JSON)
+	public Response postSimulation(@FormDataParam(SIMULATION_PART) FormDataBodyPart simulationPart,
+			@FormDataParam(ESDL_PART) InputStream esdlStream) {
+		ErrorStatusImpl error = new ErrorStatusImpl();
+		error.setStatus(Status.ERROR);
+		if (simulationPart == null || esdlStream == null) {
+			error.setDescription("Expected a " + SIMULATION_PART + " and an " + ESDL_PART + " part!");
+			return Response.status(Response.Status.BAD_REQUEST).entity(error).build();
+		}
+
+		// The simulation is JSON, whatever the client says its content type is
+		simulationPart.setMediaType(MediaType.APPLICATION_JSON_TYPE);
+		EssimSimulation simulation;
+		try {
+			simulation = simulationPart.getValueAs(EssimSimulationImpl.class);
+		} catch (RuntimeException e) {
+			error.setDescription("Invalid simulation: " + e.getMessage());
+			return Response.status(Response.Status.BAD_REQUEST).entity(error).build();
+		}
+
+		CreatedStatusImpl created = new RestSimulation().startSimulation(simulation, esdlStream, error);
+		if (created != null) {
+			return Response.status(Response.Status.CREATED).entity(created).build();
+		}
+		return Response.status(Response.Status.BAD_REQUEST).entity(error).build();
+	}
+}
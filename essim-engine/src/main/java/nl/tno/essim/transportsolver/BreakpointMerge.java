@@ -0,0 +1,165 @@
+/**
+ *  This work is based on original code developed and copyrighted by TNO 2020. 
+ *  Subsequent contributions are licensed to you by the developers of such code and are
+ *  made available to the Project under one or several contributor license agreements.
+ *
+ *  This work is licensed to you under the Apache License, Version 2.0.
+ *  You may obtain a copy of the license at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Contributors:
+ *      TNO         - Initial implementation
+ *  Manager:
+ *      TNO
+ */
+
+package nl.tno.essim.transportsolver;
+
+import nl.tno.essim.commons.BidFunction;
+
+/**
+ * Finds the balancing price from the curves of the device nodes (see
+ * {@link DirectClearing}) by merging their breakpoints in price order with a
+ * heap, keeping track of the summed energy and its slope, until the sum is no
+ * longer positive. The result may differ in the last bits from the default
+ * engine. Enabled with CLEARING_ENGINE=merge.
+ */
+public class BreakpointMerge extends DirectClearing {
+
+	// Relative rounding error the running sum is allowed before it is checked
+	private static final double DRIFT = 1e-9;
+
+	private int[] heap;
+	private int heapSize;
+	private int[] cursor;
+	private double[] slopes;
+
+	public BreakpointMerge() {
+		heap = new int[0];
+		cursor = new int[0];
+		slopes = new double[0];
+	}
+
+	/**
+	 * Same result as {@link BidFunction#findPriceFromCurve(double)} for 0.0 on the
+	 * sum of the curves: the first breakpoint whose summed energy is within eps
+	 * of zero, or else the interpolation between the last breakpoint above zero
+	 * and the first one below.
+	 */
+	@Override
+	protected double findPrice() {
+		int k = curves.size();
+		if (heap.length < k) {
+			heap = new int[k];
+			cursor = new int[k];
+			slopes = new double[k];
+		}
+
+		heapSize = 0;
+		double sum = 0.0;
+		double scale = 0.0;
+		for (int i = 0; i < k; i++) {
+			BidFunction curve = curves.get(i);
+			cursor[i] = 0;
+			slopes[i] = 0.0;
+			if (curve.size() > 0) {
+				sum += curve.getBid(0);
+				scale += Math.abs(curve.getBid(0)) + Math.abs(curve.getBid(curve.size() - 1));
+				heap[heapSize] = i;
+				siftUp(heapSize++);
+			}
+		}
+		if (heapSize == 0) {
+			return Double.NaN;
+		}
+
+		double slope = 0.0;
+		double previousPrice = Double.NaN;
+		while (heapSize > 0) {
+			double price = headPrice();
+			if (!Double.isNaN(previousPrice)) {
+				sum += slope * (price - previousPrice);
+			}
+
+			// Move the curves with a breakpoint at this price on to their next segment
+			while (heapSize > 0 && headPrice() == price) {
+				int i = heap[0];
+				BidFunction curve = curves.get(i);
+				int next = ++cursor[i];
+				slope -= slopes[i];
+				if (next < curve.size()) {
+					slopes[i] = (curve.getBid(next) - curve.getBid(next - 1))
+							/ (curve.getPrice(next) - curve.getPrice(next - 1));
+					slope += slopes[i];
+					siftDown(0);
+				} else {
+					slopes[i] = 0.0;
+					heap[0] = heap[--heapSize];
+					siftDown(0);
+				}
+			}
+
+			if (sum < eps + DRIFT * scale) {
+				// The running sum is only used to find the breakpoint; the energies at
+				// the breakpoints are summed again from the curves
+				sum = sumAt(price);
+				if (sum < eps) {
+					if (-sum < eps || Double.isNaN(previousPrice)) {
+						return price;
+					}
+					double previousSum = sumAt(previousPrice);
+					return previousPrice + (((price - previousPrice) / (sum - previousSum)) * (0.0 - previousSum));
+				}
+			}
+			previousPrice = price;
+		}
+		return previousPrice;
+	}
+
+	private double headPrice() {
+		int i = heap[0];
+		return curves.get(i).getPrice(cursor[i]);
+	}
+
+	private double price(int heapIndex) {
+		int i = heap[heapIndex];
+		return curves.get(i).getPrice(cursor[i]);
+	}
+
+	private void siftUp(int index) {
+		while (index > 0) {
+			int parent = (index - 1) >>> 1;
+			if (price(parent) <= price(index)) {
+				break;
+			}
+			swap(index, parent);
+			index = parent;
+		}
+	}
+
+	private void siftDown(int index) {
+		while (true) {
+			int smallest = index;
+			int left = 2 * index + 1;
+			int right = left + 1;
+			if (left < heapSize && price(left) < price(smallest)) {
+				smallest = left;
+			}
+			if (right < heapSize && price(right) < price(smallest)) {
+				smallest = right;
+			}
+			if (smallest == index) {
+				return;
+			}
+			swap(index, smallest);
+			index = smallest;
+		}
+	}
+
+	private void swap(int a, int b) {
+		int tmp = heap[a];
+		heap[a] = heap[b];
+		heap[b] = tmp;
+	}
+}
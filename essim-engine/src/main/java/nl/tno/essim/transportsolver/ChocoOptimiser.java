@@ -73,6 +73,10 @@ public class ChocoOptimiser {
 
 		Solver solver = model.getSolver();
 		Solution solution = solver.findSolution();
+		HashMap<String, TransportSolver> solversByName = new HashMap<String, TransportSolver>();
+		for (TransportSolver network : networks) {
+			solversByName.putIfAbsent(network.getId(), network);
+		}
 
 		if (solution != null) {
 			for (IntVar var : solution.retrieveIntVars(true)) {
@@ -80,7 +84,7 @@ public class ChocoOptimiser {
 				if (list == null) {
 					list = new ArrayList<TransportSolver>();
 				}
-				list.add(findSolverByName(var.getName()));
+				list.add(solversByName.get(var.getName()));
 				order.put(var.getValue(), list);
 			}
 
@@ -91,13 +95,4 @@ public class ChocoOptimiser {
 		}
 		return order;
 	}
-
-	private TransportSolver findSolverByName(String name) {
-		for (TransportSolver solver : networks) {
-			if (solver.getId().equals(name)) {
-				return solver;
-			}
-		}
-		return null;
-	}
 }
@@ -0,0 +1,176 @@
+/**
+ *  This work is based on original code developed and copyrighted by TNO 2020. 
+ *  Subsequent contributions are licensed to you by the developers of such code and are
+ *  made available to the Project under one or several contributor license agreements.
+ *
+ *  This work is licensed to you under the Apache License, Version 2.0.
+ *  You may obtain a copy of the license at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Contributors:
+ *      TNO         - Initial implementation
+ *  Manager:
+ *      TNO
+ */
+
+package nl.tno.essim.transportsolver;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import nl.tno.essim.commons.BidFunction;
+import nl.tno.essim.commons.Commons;
+import nl.tno.essim.transportsolver.nodes.Node;
+
+/**
+ * Clears a network directly from the curves of its device nodes, instead of
+ * summing the bid curves up the tree (see {@link FlatTree#aggregate(int)})
+ * and searching the summed curve. Flat curves and subtrees with precomputed energy (see
+ * {@link InflexibleHorizon}) are folded into one flat curve.
+ *
+ * The aggregated curves of the transport nodes are not built, so transport
+ * nodes are allocated the sum of the allocations in their subtree instead (see
+ * {@link FlatTree#allocateTransportNodes(double, int)}).
+ *
+ * The engine is chosen with CLEARING_ENGINE: aggregate (the default), merge
+ * ({@link BreakpointMerge}) or grid ({@link PriceGrid}).
+ */
+@Slf4j
+public abstract class DirectClearing {
+
+	private static final String CLEARING_ENGINE = "CLEARING_ENGINE";
+	private static final String AGGREGATE = "aggregate";
+	private static final String MERGE = "merge";
+	private static final String GRID = "grid";
+	protected static final double eps = 1e-22;
+
+	protected List<BidFunction> curves;
+	private BidFunction flatCurve;
+	private double flatEnergy;
+	private boolean hasFlatCurve;
+	@Getter
+	private double balancingPrice;
+	@Getter
+	private double imbalance;
+
+	protected DirectClearing() {
+		curves = new ArrayList<BidFunction>();
+		flatCurve = new BidFunction();
+	}
+
+	/**
+	 * @return a new engine of the kind set in CLEARING_ENGINE, or null when
+	 *         networks are cleared by aggregating their curves
+	 */
+	public static DirectClearing fromEnv() {
+		String engine = System.getenv(CLEARING_ENGINE);
+		if (engine == null || engine.trim().equalsIgnoreCase(AGGREGATE)) {
+			return null;
+		}
+		if (engine.trim().equalsIgnoreCase(MERGE)) {
+			return new BreakpointMerge();
+		}
+		if (engine.trim().equalsIgnoreCase(GRID)) {
+			return new PriceGrid();
+		}
+		log.warn("Invalid value {} for {}. Defaulting to {}", engine, CLEARING_ENGINE, AGGREGATE);
+		return null;
+	}
+
+	/**
+	 * Finds the balancing price and the imbalance of the tree for this step.
+	 *
+	 * @return false if a curve may increase with the price, in which case the
+	 *         price can not be found by stopping at the first point below zero
+	 *         and the curves have to be aggregated instead
+	 */
+	public boolean clear(FlatTree tree, int step) {
+		curves.clear();
+		flatEnergy = 0.0;
+		hasFlatCurve = false;
+		for (int i = 0; i < tree.size(); i++) {
+			if (tree.isAggregated(i)) {
+				collect(tree, i, step);
+			}
+		}
+		if (hasFlatCurve) {
+			flatCurve.clear();
+			flatCurve.addPoint(Commons.P_MIN, flatEnergy);
+			flatCurve.addPoint(Commons.P_MAX, flatEnergy);
+			curves.add(flatCurve);
+		}
+		for (BidFunction curve : curves) {
+			if (!curve.isNonIncreasing()) {
+				return false;
+			}
+		}
+
+		balancingPrice = findPrice();
+		imbalance = sumAt(balancingPrice);
+		return true;
+	}
+
+	/**
+	 * Collects the curve of a node of the tree, visited in pre-order. Flat
+	 * curves, precomputed nodes and subtrees, and transport nodes without
+	 * children only add to the energy of the flat curve; the nodes below a
+	 * precomputed subtree are not visited.
+	 */
+	private void collect(FlatTree tree, int index, int step) {
+		double[] subtreeEnergy = tree.getSubtreeEnergy(index);
+		if (subtreeEnergy != null) {
+			addFlat(subtreeEnergy[step]);
+			return;
+		}
+		Node node = tree.getNode(index);
+		boolean children = tree.hasChildren(index);
+		if (tree.isTransport(index)) {
+			if (!children) {
+				addFlat(0.0);
+			}
+			return;
+		}
+
+		double[] nodeEnergy = tree.getNodeEnergy(index);
+		if (nodeEnergy != null) {
+			addFlat(nodeEnergy[step]);
+		} else if (!children && node.getDemandFunction() == null) {
+			node.makeInflexibleConsumptionFunction(0.0);
+			addFlat(0.0);
+		} else if (node.getDemandFunction().isFlat()) {
+			addFlat(node.getDemandFunction().getBid(0));
+		} else {
+			curves.add(node.getDemandFunction());
+		}
+	}
+
+	private void addFlat(double energy) {
+		flatEnergy += energy;
+		hasFlatCurve = true;
+	}
+
+	/**
+	 * @return the balancing price on the sum of the collected curves
+	 */
+	protected abstract double findPrice();
+
+	/**
+	 * @return the largest difference between the price found by this engine and
+	 *         the balancing price of the summed curve, 0.0 when they are the same
+	 *         up to rounding
+	 */
+	public double getPriceResolution() {
+		return 0.0;
+	}
+
+	protected double sumAt(double price) {
+		double sum = 0.0;
+		for (BidFunction curve : curves) {
+			sum += curve.findDemandFromCurve(price);
+		}
+		return sum;
+	}
+}
@@ -0,0 +1,549 @@
+/**
+ *  This work is based on original code developed and copyrighted by TNO 2020. 
+ *  Subsequent contributions are licensed to you by the developers of such code and are
+ *  made available to the Project under one or several contributor license agreements.
+ *
+ *  This work is licensed to you under the Apache License, Version 2.0.
+ *  You may obtain a copy of the license at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Contributors:
+ *      TNO         - Initial implementation
+ *  Manager:
+ *      TNO
+ */
+
+package nl.tno.essim.transportsolver;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import esdl.Transport;
+import nl.tno.essim.commons.BidFunction;
+import nl.tno.essim.commons.Commons;
+import nl.tno.essim.managers.EmissionManager;
+import nl.tno.essim.observation.Observation;
+import nl.tno.essim.time.EssimTime;
+import nl.tno.essim.transportsolver.nodes.CurveSimplifier;
+import nl.tno.essim.transportsolver.nodes.Node;
+import nl.tno.essim.transportsolver.nodes.SubtreeTasks;
+
+/**
+ * Compiled form of the tree of a network, used for stepping. The nodes are
+ * kept in pre-order (every node before its children, every subtree in one
+ * range), with the index of the parent and the end of the subtree of every
+ * node, and the energies precomputed by an {@link InflexibleHorizon} by index.
+ * Aggregation is a backward sweep and propagation a forward sweep over these
+ * arrays, so that deep networks are stepped without recursion.
+ *
+ * The {@link Node} objects remain the model of the network and make the bid
+ * curves of the devices, but the state of a step (aggregated curves, flat
+ * offsets, allocated energy and cost) is kept here, by index. Subtrees that are
+ * large enough to be stepped in parallel (see {@link SubtreeTasks}) are split
+ * into the ranges of their children.
+ */
+public class FlatTree {
+
+	// Most points of a curve made by a single device (storage)
+	private static final int DEVICE_CURVE_POINTS = 6;
+	private static final int MAX_PRESIZED_POINTS = 1024;
+
+	private final InflexibleHorizon inflexible;
+	private final Executor executor;
+	private final Node[] nodes;
+	private final int[] parents;
+	private final int[] subtreeEnds;
+	private final boolean[] transport;
+	// Nodes below a subtree with precomputed energy, which is not aggregated
+	private final boolean[] precomputedBelow;
+	private final double[][] subtreeEnergy;
+	private final double[][] nodeEnergy;
+
+	// Aggregated curve of every subtree, built in a buffer per node with children
+	// and reused every step. A null aggregate has to be rebuilt.
+	private final BidFunction[] buffers;
+	private final BidFunction[] aggregates;
+	// Energy of the aggregated curves that are flat, which are summed as offsets
+	private final boolean[] flat;
+	private final double[] offsets;
+	// Whether the aggregated curve changed in the last aggregation, and the bound
+	// on its energy error from simplification (see CurveSimplifier)
+	private final boolean[] changed;
+	private final double[] errors;
+	// Energy of precomputed nodes with children in the previous step, to find the
+	// subtrees that did not change. Device nodes tell whether they kept their
+	// curve themselves (see Node#isBidCurveReused).
+	private final double[] previousEnergy;
+	// Allocation of the last step: the net energy of every subtree, and the
+	// energy and marginal cost of every node
+	private final double[] subtreeAllocation;
+	private final double[] energy;
+	private final double[] marginalCost;
+	// Price of the last allocation, and whether the curves have been aggregated
+	// since, so that nodes whose curve did not change keep their allocation
+	private double allocatedPrice;
+	private boolean aggregated;
+
+	/**
+	 * @param inflexible the precomputed energies to step with, or null
+	 * @param executor   the queue of the simulation to run subtree tasks on, or
+	 *                   null to step on the calling thread only
+	 */
+	public FlatTree(Node root, InflexibleHorizon inflexible, Executor executor) {
+		this.inflexible = inflexible;
+		this.executor = executor;
+
+		List<Node> order = new ArrayList<Node>();
+		List<Integer> parentList = new ArrayList<Integer>();
+		ArrayDeque<Node> stack = new ArrayDeque<Node>();
+		ArrayDeque<Integer> parentStack = new ArrayDeque<Integer>();
+		stack.push(root);
+		parentStack.push(-1);
+		while (!stack.isEmpty()) {
+			Node node = stack.pop();
+			int index = order.size();
+			order.add(node);
+			parentList.add(parentStack.pop());
+			List<Node> children = node.getChildren();
+			if (children != null) {
+				for (int i = children.size() - 1; i >= 0; i--) {
+					stack.push(children.get(i));
+					parentStack.push(index);
+				}
+			}
+		}
+
+		int n = order.size();
+		nodes = order.toArray(new Node[n]);
+		parents = new int[n];
+		subtreeEnds = new int[n];
+		transport = new boolean[n];
+		precomputedBelow = new boolean[n];
+		subtreeEnergy = new double[n][];
+		nodeEnergy = new double[n][];
+		buffers = new BidFunction[n];
+		aggregates = new BidFunction[n];
+		flat = new boolean[n];
+		offsets = new double[n];
+		changed = new boolean[n];
+		errors = new double[n];
+		previousEnergy = new double[n];
+		subtreeAllocation = new double[n];
+		energy = new double[n];
+		marginalCost = new double[n];
+		for (int i = 0; i < n; i++) {
+			parents[i] = parentList.get(i);
+			subtreeEnds[i] = i + 1;
+			transport[i] = nodes[i].getAsset() instanceof Transport;
+			if (inflexible != null) {
+				subtreeEnergy[i] = inflexible.getSubtreeEnergy(nodes[i]);
+				nodeEnergy[i] = inflexible.getNodeEnergy(nodes[i]);
+			}
+			int parent = parents[i];
+			if (parent >= 0) {
+				precomputedBelow[i] = precomputedBelow[parent] || subtreeEnergy[parent] != null;
+			}
+			previousEnergy[i] = Double.NaN;
+		}
+
+		// Presize the curve buffers for the number of devices below each node, so
+		// that aggregation does not have to grow them while stepping
+		int[] devices = new int[n];
+		for (int i = n - 1; i >= 0; i--) {
+			devices[i] += transport[i] ? 0 : 1;
+			if (i > 0) {
+				subtreeEnds[parents[i]] = Math.max(subtreeEnds[parents[i]], subtreeEnds[i]);
+				devices[parents[i]] += devices[i];
+			}
+			if (hasChildren(i)) {
+				int points = (int) Math.min((long) devices[i] * DEVICE_CURVE_POINTS, MAX_PRESIZED_POINTS);
+				buffers[i] = new BidFunction(Math.max(points, DEVICE_CURVE_POINTS));
+			}
+		}
+	}
+
+	public InflexibleHorizon getInflexible() {
+		return inflexible;
+	}
+
+	public Node getRoot() {
+		return nodes[0];
+	}
+
+	public int size() {
+		return nodes.length;
+	}
+
+	public Node getNode(int index) {
+		return nodes[index];
+	}
+
+	public int getParent(int index) {
+		return parents[index];
+	}
+
+	/**
+	 * @return whether the node is aggregated on its own, as opposed to being part
+	 *         of a subtree with precomputed energy
+	 */
+	public boolean isAggregated(int index) {
+		return !precomputedBelow[index];
+	}
+
+	public boolean isTransport(int index) {
+		return transport[index];
+	}
+
+	public boolean hasChildren(int index) {
+		return nodes[index].getChildren() != null;
+	}
+
+	public double[] getSubtreeEnergy(int index) {
+		return subtreeEnergy[index];
+	}
+
+	public double[] getNodeEnergy(int index) {
+		return nodeEnergy[index];
+	}
+
+	/**
+	 * @return the energy allocated to the node in the last step
+	 */
+	public double getEnergy(int index) {
+		return energy[index];
+	}
+
+	/**
+	 * @return the marginal cost of the node in the last step
+	 */
+	public double getMarginalCost(int index) {
+		return marginalCost[index];
+	}
+
+	/**
+	 * @return whether the last aggregation gave a different curve for the whole
+	 *         tree than the one before, see {@link #aggregate(int)}
+	 */
+	public boolean isAggregateChanged() {
+		return changed[0];
+	}
+
+	/**
+	 * @return the bound on the energy error of the last aggregated curve of the
+	 *         whole tree from simplification, see {@link CurveSimplifier}
+	 */
+	public double getAggregateError() {
+		return errors[0];
+	}
+
+	/**
+	 * Forgets the aggregated curves of the previous step, so that the next
+	 * aggregation sums all curves again.
+	 */
+	public void resetAggregates() {
+		Arrays.fill(aggregates, null);
+		aggregated = false;
+	}
+
+	/**
+	 * Aggregates the demand functions of the tree. Subtrees whose energy is
+	 * precomputed are not traversed, but contribute a single flat curve.
+	 *
+	 * The aggregated curve is built in a buffer owned by this tree, so it is only
+	 * valid until the next aggregation. The children of large subtrees are
+	 * aggregated in parallel (see {@link SubtreeTasks}), but their curves are
+	 * summed in the same order.
+	 *
+	 * A subtree in which no device node made a new curve (see
+	 * {@link Node#isBidCurveReused()}) keeps its previous aggregated curve instead
+	 * of summing it again. Large aggregated curves may be simplified (see
+	 * {@link CurveSimplifier}).
+	 */
+	public BidFunction aggregate(int step) {
+		aggregate(0, step);
+		aggregated = true;
+		return aggregates[0];
+	}
+
+	private void aggregate(int index, int step) {
+		if (subtreeEnergy[index] == null && hasChildren(index) && SubtreeTasks.isParallel(subtreeSize(index))) {
+			int[] children = children(index);
+			SubtreeTasks.forEachChild(subtreeSizes(children), executor, i -> aggregate(children[i], step));
+			aggregateNode(index, step);
+			return;
+		}
+
+		for (int i = subtreeEnds[index] - 1; i >= index; i--) {
+			if (!precomputedBelow[i]) {
+				aggregateNode(i, step);
+			}
+		}
+	}
+
+	/**
+	 * Aggregates the curve of a node from the aggregated curves of its children,
+	 * which must have been aggregated for this step already.
+	 */
+	private void aggregateNode(int index, int step) {
+		boolean rebuild = aggregates[index] == null;
+		if (subtreeEnergy[index] != null) {
+			double subtree = subtreeEnergy[index][step];
+			BidFunction aggregatedFunction = buffer(index);
+			changed[index] = rebuild || aggregates[index] != aggregatedFunction
+					|| Double.compare(offsets[index], subtree) != 0;
+			if (changed[index]) {
+				setFlat(aggregatedFunction, subtree);
+			}
+			setAggregate(index, aggregatedFunction, true, subtree, 0.0);
+			return;
+		}
+
+		Node node = nodes[index];
+		if (!hasChildren(index)) {
+			BidFunction demandFunction = node.getDemandFunction();
+			if (demandFunction == null) {
+				demandFunction = new BidFunction();
+				demandFunction.addPoint(Commons.P_MIN, 0.0);
+				demandFunction.addPoint(Commons.P_MAX, 0.0);
+				node.setDemandFunction(demandFunction);
+			}
+			changed[index] = !node.isBidCurveReused() || rebuild;
+			boolean isFlat = demandFunction.isFlat();
+			setAggregate(index, demandFunction, isFlat, isFlat ? demandFunction.getBid(0) : 0.0, 0.0);
+			return;
+		}
+
+		boolean subtreeChanged = rebuild;
+		for (int child = index + 1; child < subtreeEnds[index]; child = subtreeEnds[child]) {
+			subtreeChanged |= changed[child];
+		}
+
+		// A precomputed node is allocated from its precomputed energy (see
+		// propagate), so its own curve is flat
+		BidFunction nodeFunction = null;
+		boolean nodeFlat = false;
+		double nodeOffset = 0.0;
+		if (!transport[index]) {
+			if (nodeEnergy[index] != null) {
+				nodeFlat = true;
+				nodeOffset = nodeEnergy[index][step];
+				subtreeChanged |= Double.compare(previousEnergy[index], nodeOffset) != 0;
+				previousEnergy[index] = nodeOffset;
+			} else {
+				nodeFunction = node.getDemandFunction();
+				subtreeChanged |= !node.isBidCurveReused();
+				if (nodeFunction.isFlat()) {
+					nodeFlat = true;
+					nodeOffset = nodeFunction.getBid(0);
+				}
+			}
+		}
+
+		// Unchanged curves in the whole subtree give the same sum as last step
+		BidFunction aggregatedFunction = buffer(index);
+		if (subtreeChanged) {
+			// Flat curves only shift the sum, so they are folded into one offset and
+			// only the flexible curves are merged
+			aggregatedFunction.clear();
+			double offset = 0.0;
+			boolean hasOffset = false;
+			double error = 0.0;
+			for (int child = index + 1; child < subtreeEnds[index]; child = subtreeEnds[child]) {
+				if (flat[child]) {
+					offset += offsets[child];
+					hasOffset = true;
+				} else {
+					aggregatedFunction.add(aggregates[child]);
+				}
+				// Errors of simplified curves add up in their sum
+				error += errors[child];
+			}
+			if (nodeFlat) {
+				offset += nodeOffset;
+				hasOffset = true;
+			} else if (nodeFunction != null) {
+				aggregatedFunction.add(nodeFunction);
+			}
+			if (hasOffset) {
+				aggregatedFunction.addConstant(offset);
+			}
+
+			if (CurveSimplifier.isEnabled()) {
+				error += CurveSimplifier.simplify(aggregatedFunction);
+			}
+			boolean isFlat = aggregatedFunction.isFlat();
+			setAggregate(index, aggregatedFunction, isFlat, isFlat ? aggregatedFunction.getBid(0) : 0.0, error);
+		} else {
+			aggregates[index] = aggregatedFunction;
+		}
+		if (transport[index]) {
+			node.setDemandFunction(aggregatedFunction);
+		}
+		changed[index] = subtreeChanged;
+	}
+
+	private void setAggregate(int index, BidFunction aggregate, boolean isFlat, double offset, double error) {
+		aggregates[index] = aggregate;
+		flat[index] = isFlat;
+		offsets[index] = offset;
+		errors[index] = error;
+	}
+
+	private BidFunction buffer(int index) {
+		if (buffers[index] == null) {
+			buffers[index] = new BidFunction();
+		}
+		return buffers[index];
+	}
+
+	private static BidFunction setFlat(BidFunction function, double e) {
+		function.clear();
+		function.setMarginalCost(Commons.P_MIN);
+		function.addPoint(Commons.P_MIN, e);
+		function.addPoint(Commons.P_MAX, e);
+		return function;
+	}
+
+	/**
+	 * Gives the transport nodes a flat curve with the net energy of their subtree
+	 * at the given price, in place of their aggregated curve, for when the price
+	 * is found without aggregating (see {@link DirectClearing}).
+	 */
+	public void allocateTransportNodes(double price, int step) {
+		// The curves are not aggregated for this step, so the next aggregation can
+		// not tell which of them changed
+		resetAggregates();
+		for (int i = nodes.length - 1; i >= 0; i--) {
+			if (precomputedBelow[i]) {
+				continue;
+			}
+			if (subtreeEnergy[i] != null) {
+				subtreeAllocation[i] = subtreeEnergy[i][step];
+				continue;
+			}
+
+			// Children in their own order, for the same sum as the aggregation
+			double childrenEnergy = 0.0;
+			for (int child = i + 1; child < subtreeEnds[i]; child = subtreeEnds[child]) {
+				childrenEnergy += subtreeAllocation[child];
+			}
+			if (transport[i]) {
+				nodes[i].setDemandFunction(setFlat(buffer(i), childrenEnergy));
+				aggregates[i] = null;
+				subtreeAllocation[i] = childrenEnergy;
+			} else {
+				subtreeAllocation[i] = childrenEnergy + (nodeEnergy[i] == null
+						? nodes[i].getDemandFunction().findDemandFromCurve(price)
+						: nodeEnergy[i][step]);
+			}
+		}
+	}
+
+	/**
+	 * Finds the balancing price on the aggregated curve (see
+	 * {@link #aggregate(int)}) and allocates every node at that price.
+	 *
+	 * @return the imbalance and the balancing price
+	 */
+	public double[] allocateAndPropagate(BidFunction summedFunction, List<Observation> observations,
+			EssimTime timestamp, int step) {
+		double balancingPrice = summedFunction.findPriceFromCurve(0.0);
+		double imbalance = summedFunction.findDemandFromCurve(balancingPrice);
+		return allocateAndPropagate(balancingPrice, imbalance, observations, timestamp, step);
+	}
+
+	/**
+	 * Propagates a balancing price that is already known: found without
+	 * aggregating the curves of this tree (see {@link DirectClearing} and
+	 * {@link #allocateTransportNodes}), or the price of the previous step when
+	 * the aggregated curve did not change.
+	 *
+	 * @return the imbalance and the balancing price
+	 */
+	public double[] allocateAndPropagate(double balancingPrice, double imbalance, List<Observation> observations,
+			EssimTime timestamp, int step) {
+		// At the same price, nodes whose curve did not change since the last
+		// allocation get the same energy
+		boolean reuse = aggregated && Double.compare(allocatedPrice, balancingPrice) == 0;
+		propagate(0, balancingPrice, reuse, observations, timestamp, step);
+		allocatedPrice = balancingPrice;
+		aggregated = false;
+
+		double[] vals = {imbalance, balancingPrice};
+		return vals;
+	}
+
+	private void propagate(int index, double price, boolean reuse, List<Observation> observations,
+			EssimTime timestamp, int step) {
+		Node node = nodes[index];
+		if (hasChildren(index) && SubtreeTasks.isParallel(subtreeSize(index))
+				&& !EmissionManager.getInstance(node.getSimulationId()).isEnabled()) {
+			// Every child collects the observations of its subtree, so that they are
+			// added in the same order as when propagating sequentially. The emission
+			// manager depends on the order of the allocations, so it rules this out.
+			propagateNode(index, price, reuse, observations, timestamp, step);
+			int[] children = children(index);
+			@SuppressWarnings("unchecked")
+			List<Observation>[] childObservations = new List[children.length];
+			SubtreeTasks.forEachChild(subtreeSizes(children), executor, i -> {
+				childObservations[i] = new ArrayList<Observation>();
+				propagate(children[i], price, reuse, childObservations[i], timestamp, step);
+			});
+			for (List<Observation> list : childObservations) {
+				observations.addAll(list);
+			}
+			return;
+		}
+
+		for (int i = index; i < subtreeEnds[index]; i++) {
+			propagateNode(i, price, reuse, observations, timestamp, step);
+		}
+	}
+
+	private void propagateNode(int index, double price, boolean reuse, List<Observation> observations,
+			EssimTime timestamp, int step) {
+		if (nodeEnergy[index] != null) {
+			energy[index] = nodeEnergy[index][step];
+			marginalCost[index] = Commons.P_MIN;
+		} else if (!reuse || changed[index]) {
+			BidFunction demandFunction = nodes[index].getDemandFunction();
+			energy[index] = demandFunction.findDemandFromCurve(price);
+			marginalCost[index] = demandFunction.getMarginalCost();
+		}
+		nodes[index].allocate(price, energy[index], marginalCost[index], observations, timestamp);
+	}
+
+	private int subtreeSize(int index) {
+		return subtreeEnds[index] - index;
+	}
+
+	private int[] children(int index) {
+		int count = 0;
+		for (int child = index + 1; child < subtreeEnds[index]; child = subtreeEnds[child]) {
+			count++;
+		}
+		int[] children = new int[count];
+		int i = 0;
+		for (int child = index + 1; child < subtreeEnds[index]; child = subtreeEnds[child]) {
+			children[i++] = child;
+		}
+		return children;
+	}
+
+	private int[] subtreeSizes(int[] children) {
+		int[] sizes = new int[children.length];
+		for (int i = 0; i < children.length; i++) {
+			sizes[i] = subtreeSize(children[i]);
+		}
+		return sizes;
+	}
+
+	@Override
+	public String toString() {
+		return "FlatTree" + Arrays.toString(nodes);
+	}
+}
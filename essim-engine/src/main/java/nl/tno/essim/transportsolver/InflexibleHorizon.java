@@ -0,0 +1,271 @@
+/**
+ *  This work is based on original code developed and copyrighted by TNO 2020. 
+ *  Subsequent contributions are licensed to you by the developers of such code and are
+ *  made available to the Project under one or several contributor license agreements.
+ *
+ *  This work is licensed to you under the Apache License, Version 2.0.
+ *  You may obtain a copy of the license at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Contributors:
+ *      TNO         - Initial implementation
+ *  Manager:
+ *      TNO
+ */
+
+package nl.tno.essim.transportsolver;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+
+import esdl.Transport;
+import lombok.extern.slf4j.Slf4j;
+import nl.tno.essim.commons.BidFunction;
+import nl.tno.essim.commons.Commons;
+import nl.tno.essim.time.EssimTime;
+import nl.tno.essim.time.Horizon;
+import nl.tno.essim.transportsolver.nodes.Node;
+
+/**
+ * Energy of the inflexible (profile driven) nodes of a network, precomputed for
+ * every timestep of the simulation horizon. Subtrees that only contain such
+ * nodes and transport nodes are collapsed into one array with their net
+ * energy, so that they contribute a single flat curve when the network is
+ * stepped instead of one curve per node.
+ *
+ * The energies are read from the profiles of the nodes in one pass per node
+ * (see {@link Node#readInflexibleEnergy}), without creating a bid curve per
+ * step, so that the precomputation fits in the timeout of the initialisation
+ * (PROFILE_QUERY_TIMEOUT). They are checked against the bid curves of a sample
+ * of the steps. Nodes that can not be read that way get their bid curve
+ * created for every step instead.
+ *
+ * Every precomputed value takes 8 bytes, so the number of node-steps (device
+ * nodes times timesteps) per network is bounded by INFLEXIBLE_PRECOMPUTE_LIMIT.
+ * By default that is as many as fit in an eighth of the maximum heap, 0
+ * disables precomputation.
+ */
+@Slf4j
+public class InflexibleHorizon {
+
+	private static final String INFLEXIBLE_PRECOMPUTE_LIMIT = "INFLEXIBLE_PRECOMPUTE_LIMIT";
+	private static final long DEFAULT_LIMIT = Runtime.getRuntime().maxMemory() / 8 / Double.BYTES;
+	// Steps at which energies read from the profiles are checked against the
+	// bid curves
+	private static final int CHECKED_STEPS = 8;
+
+	private IdentityHashMap<Node, double[]> nodeEnergy;
+	private IdentityHashMap<Node, double[]> subtreeEnergy;
+
+	private InflexibleHorizon() {
+		nodeEnergy = new IdentityHashMap<Node, double[]>();
+		subtreeEnergy = new IdentityHashMap<Node, double[]>();
+	}
+
+	/**
+	 * Creates the bid curves of all precomputable device nodes for the whole
+	 * horizon. Profiles must be initialised before calling this.
+	 *
+	 * @return the precomputed energies, or null if nothing could be precomputed
+	 */
+	public static InflexibleHorizon precompute(String networkId, Node tree, List<Node> deviceNodes,
+			EssimTime time) {
+		long limit = DEFAULT_LIMIT;
+		String limitString = System.getenv(INFLEXIBLE_PRECOMPUTE_LIMIT);
+		if (limitString != null) {
+			try {
+				limit = Long.parseLong(limitString.trim());
+			} catch (NumberFormatException e) {
+				log.warn("Invalid value {} for {}. Defaulting to {}", limitString, INFLEXIBLE_PRECOMPUTE_LIMIT,
+						limit);
+			}
+		}
+
+		List<Node> candidates = new ArrayList<Node>();
+		for (Node node : deviceNodes) {
+			if (node.isPrecomputable()) {
+				candidates.add(node);
+			}
+		}
+		if (candidates.isEmpty()) {
+			return null;
+		}
+
+		List<Horizon> horizon = new ArrayList<Horizon>();
+		EssimTime stepTime = new EssimTime(time.getSimulationStartTime(), time.getSimulationEndTime(),
+				time.getSimulationStepLength());
+		while (!stepTime.getTime().isAfter(stepTime.getSimulationEndTime())) {
+			horizon.add(new Horizon(stepTime.getTime(), stepTime.getSimulationStepLength()));
+			stepTime.nextTimeStep();
+		}
+		int steps = horizon.size();
+		if ((long) steps * candidates.size() > limit) {
+			log.debug("Network {} is too large to precompute {} timesteps", networkId, steps);
+			return null;
+		}
+
+		InflexibleHorizon inflexible = new InflexibleHorizon();
+		long timeStep = time.getSimulationStepLength().getSeconds();
+		for (Node node : candidates) {
+			double[] energy = node.readInflexibleEnergy(timeStep, horizon);
+			if (energy != null && !matchesBidCurves(node, energy, timeStep, horizon)) {
+				log.warn("Energy of node {} read from its profiles does not match its bid curves", node.getNodeId());
+				energy = null;
+			}
+			if (energy == null) {
+				energy = createBidCurves(node, timeStep, horizon);
+			}
+			if (energy != null) {
+				inflexible.nodeEnergy.put(node, energy);
+			}
+		}
+		if (inflexible.nodeEnergy.isEmpty()) {
+			return null;
+		}
+
+		List<Node> nodes = tree.subtree();
+
+		// Children come after their parent in the subtree, so walking it backwards
+		// collapses the children first
+		for (int i = nodes.size() - 1; i >= 0; i--) {
+			inflexible.collapse(nodes.get(i), steps);
+		}
+		log.debug("Precomputed {} of {} device nodes of network {}", inflexible.nodeEnergy.size(),
+				deviceNodes.size(), networkId);
+		return inflexible;
+	}
+
+	/**
+	 * @return the energy of the flat bid curves of the node for every step, or
+	 *         null if one of its curves is not flat
+	 */
+	private static double[] createBidCurves(Node node, long timeStep, List<Horizon> horizon) {
+		double[] energy = new double[horizon.size()];
+		for (int i = 0; i < energy.length; i++) {
+			if (!isInflexibleBid(node, timeStep, horizon.get(i))) {
+				return null;
+			}
+			energy[i] = node.getDemandFunction().getBid(0);
+		}
+		return energy;
+	}
+
+	private static boolean matchesBidCurves(Node node, double[] energy, long timeStep, List<Horizon> horizon) {
+		int checks = Math.min(CHECKED_STEPS, energy.length);
+		for (int c = 0; c < checks; c++) {
+			// Spread over the horizon, including the first and the last step
+			int i = checks == 1 ? 0 : (int) ((long) c * (energy.length - 1) / (checks - 1));
+			if (!isInflexibleBid(node, timeStep, horizon.get(i)) || node.getDemandFunction().getBid(0) != energy[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static boolean isInflexibleBid(Node node, long timeStep, Horizon now) {
+		node.createBidCurve(timeStep, now, Commons.P_MIN, Commons.P_MAX);
+		BidFunction curve = node.getDemandFunction();
+		return curve.getMarginalCost() == Commons.P_MIN && curve.isFlat();
+	}
+
+	/**
+	 * Collapses the subtree of a node whose children have been collapsed already.
+	 * Sums the children in the same order as {@link FlatTree#aggregate(int)}
+	 * does, so that collapsed subtrees give exactly the same energy.
+	 */
+	private void collapse(Node node, int steps) {
+		boolean transport = node.getAsset() instanceof Transport;
+		boolean collapsed = transport || nodeEnergy.containsKey(node);
+
+		List<double[]> childEnergies = new ArrayList<double[]>();
+		if (node.getChildren() != null) {
+			for (Node child : node.getChildren()) {
+				double[] childEnergy = subtreeEnergy.get(child);
+				if (childEnergy == null) {
+					collapsed = false;
+				}
+				childEnergies.add(childEnergy);
+			}
+		}
+		if (!collapsed) {
+			return;
+		}
+
+		double[] energy;
+		if (childEnergies.isEmpty() && !transport) {
+			energy = nodeEnergy.get(node);
+		} else {
+			energy = new double[steps];
+			for (double[] childEnergy : childEnergies) {
+				for (int i = 0; i < steps; i++) {
+					energy[i] = childEnergy[i] + energy[i];
+				}
+			}
+			if (transport) {
+				nodeEnergy.put(node, energy);
+			} else {
+				double[] ownEnergy = nodeEnergy.get(node);
+				for (int i = 0; i < steps; i++) {
+					energy[i] = ownEnergy[i] + energy[i];
+				}
+			}
+		}
+		subtreeEnergy.put(node, energy);
+	}
+
+	/**
+	 * Maps the precomputed energies onto a copy of the tree (see
+	 * {@link Node#copy(Node)}). The arrays themselves are shared.
+	 */
+	public InflexibleHorizon copyFor(Node tree, Node copy) {
+		InflexibleHorizon inflexible = new InflexibleHorizon();
+		// Both trees have the same shape, so their nodes are in the same order
+		List<Node> nodes = tree.subtree();
+		List<Node> copies = copy.subtree();
+		for (int i = 0; i < nodes.size(); i++) {
+			Node node = nodes.get(i);
+			if (nodeEnergy.containsKey(node)) {
+				inflexible.nodeEnergy.put(copies.get(i), nodeEnergy.get(node));
+			}
+			if (subtreeEnergy.containsKey(node)) {
+				inflexible.subtreeEnergy.put(copies.get(i), subtreeEnergy.get(node));
+			}
+		}
+		return inflexible;
+	}
+
+	public boolean isPrecomputed(Node node) {
+		return nodeEnergy.containsKey(node);
+	}
+
+	/**
+	 * @return the allocated energy of the node per timestep: its own energy for
+	 *         device nodes, the net energy of its subtree for transport nodes.
+	 */
+	public double[] getNodeEnergy(Node node) {
+		return nodeEnergy.get(node);
+	}
+
+	/**
+	 * @return the net energy per timestep of the subtree of this node, or null if
+	 *         the subtree is not completely precomputed
+	 */
+	public double[] getSubtreeEnergy(Node node) {
+		return subtreeEnergy.get(node);
+	}
+
+	/**
+	 * Sets the flat bid curves of the precomputed device nodes for the given
+	 * timestep, for when the curves of all nodes are needed.
+	 */
+	public void createBidCurves(List<Node> deviceNodes, int step) {
+		for (Node node : deviceNodes) {
+			double[] energy = nodeEnergy.get(node);
+			if (energy != null) {
+				node.makeInflexibleConsumptionFunction(energy[step]);
+			}
+		}
+	}
+}
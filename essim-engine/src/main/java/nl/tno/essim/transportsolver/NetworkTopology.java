@@ -0,0 +1,226 @@
+/**
+ *  This work is based on original code developed and copyrighted by TNO 2020. 
+ *  Subsequent contributions are licensed to you by the developers of such code and are
+ *  made available to the Project under one or several contributor license agreements.
+ *
+ *  This work is licensed to you under the Apache License, Version 2.0.
+ *  You may obtain a copy of the license at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Contributors:
+ *      TNO         - Initial implementation
+ *  Manager:
+ *      TNO
+ */
+
+package nl.tno.essim.transportsolver;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.PriorityQueue;
+
+import esdl.Carrier;
+import esdl.EnergyAsset;
+import esdl.InPort;
+import esdl.Port;
+import esdl.Transport;
+import nl.tno.essim.commons.Commons;
+import nl.tno.essim.commons.Commons.Role;
+
+/**
+ * Index of the assets of an energy system, built in one pass: the assets of
+ * every carrier with their role in its networks, and the assets connected to
+ * every asset. The assets of a carrier are split into groups that can not be
+ * connected to each other (with a union-find over the connections), so that
+ * the networks of the carrier can be built from one group at a time instead
+ * of from all its remaining assets.
+ */
+public class NetworkTopology {
+
+	private final HashMap<EnergyAsset, Integer> positions;
+	private final HashMap<EnergyAsset, List<EnergyAsset>> connections;
+	private final HashMap<String, LinkedHashMap<EnergyAsset, Role>> carrierAssets;
+
+	public NetworkTopology(List<EnergyAsset> energyAssets) {
+		positions = new HashMap<EnergyAsset, Integer>();
+		connections = new HashMap<EnergyAsset, List<EnergyAsset>>();
+		carrierAssets = new HashMap<String, LinkedHashMap<EnergyAsset, Role>>();
+		for (EnergyAsset energyAsset : energyAssets) {
+			if (positions.containsKey(energyAsset)) {
+				continue;
+			}
+			positions.put(energyAsset, positions.size());
+			connections.put(energyAsset, new ArrayList<EnergyAsset>(Commons.findAllConnectedAssets(energyAsset).keySet()));
+
+			// The first port of a carrier decides the role of the asset in its networks
+			for (Port port : energyAsset.getPort()) {
+				Carrier portCarrier = port.getCarrier();
+				if (portCarrier != null) {
+					LinkedHashMap<EnergyAsset, Role> assets = carrierAssets.computeIfAbsent(portCarrier.getId(),
+							id -> new LinkedHashMap<EnergyAsset, Role>());
+					if (!assets.containsKey(energyAsset)) {
+						if (energyAsset instanceof Transport) {
+							assets.put(energyAsset, Role.TRANSPORT);
+						} else if (port instanceof InPort) {
+							assets.put(energyAsset, Role.CONSUMER);
+						} else {
+							assets.put(energyAsset, Role.PRODUCER);
+						}
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * @return the assets with a port of this carrier, in the order of the energy
+	 *         system, with their role
+	 */
+	public LinkedHashMap<EnergyAsset, Role> getAssets(Carrier carrier) {
+		LinkedHashMap<EnergyAsset, Role> assets = carrierAssets.get(carrier.getId());
+		return assets == null ? new LinkedHashMap<EnergyAsset, Role>() : assets;
+	}
+
+	/**
+	 * @return the assets of this carrier, split into the groups of assets that
+	 *         are connected to each other
+	 */
+	public CarrierNetworks getNetworks(Carrier carrier) {
+		LinkedHashMap<EnergyAsset, Role> assets = getAssets(carrier);
+		HashMap<EnergyAsset, Integer> indices = new HashMap<EnergyAsset, Integer>();
+		List<EnergyAsset> assetList = new ArrayList<EnergyAsset>(assets.keySet());
+		for (int i = 0; i < assetList.size(); i++) {
+			indices.put(assetList.get(i), i);
+		}
+
+		int[] parents = new int[assetList.size()];
+		for (int i = 0; i < parents.length; i++) {
+			parents[i] = i;
+		}
+		for (int i = 0; i < assetList.size(); i++) {
+			for (EnergyAsset connected : connections.get(assetList.get(i))) {
+				Integer j = indices.get(connected);
+				if (j != null) {
+					union(parents, i, j);
+				}
+			}
+		}
+
+		// Groups in the order of their first asset, assets in their own order
+		LinkedHashMap<Integer, List<EnergyAsset>> groups = new LinkedHashMap<Integer, List<EnergyAsset>>();
+		for (int i = 0; i < assetList.size(); i++) {
+			groups.computeIfAbsent(find(parents, i), root -> new ArrayList<EnergyAsset>()).add(assetList.get(i));
+		}
+
+		CarrierNetworks networks = new CarrierNetworks(new HashMap<EnergyAsset, Role>(assets));
+		for (List<EnergyAsset> group : groups.values()) {
+			networks.add(group);
+		}
+		return networks;
+	}
+
+	private static int find(int[] parents, int i) {
+		while (parents[i] != i) {
+			parents[i] = parents[parents[i]];
+			i = parents[i];
+		}
+		return i;
+	}
+
+	private static void union(int[] parents, int i, int j) {
+		int rootI = find(parents, i);
+		int rootJ = find(parents, j);
+		if (rootI != rootJ) {
+			parents[Math.max(rootI, rootJ)] = Math.min(rootI, rootJ);
+		}
+	}
+
+	/**
+	 * The assets of a carrier that are not part of a network yet, in groups that
+	 * can not be connected to each other. {@link #poll()} gives the group that
+	 * holds the asset that {@link TransportSolver#createTree()} would choose as
+	 * root among all remaining assets, so the networks are found in the same
+	 * order as when every network is built from all remaining assets.
+	 */
+	public class CarrierNetworks {
+		private final HashMap<EnergyAsset, Role> roles;
+		private final PriorityQueue<AssetGroup> groups;
+
+		private CarrierNetworks(HashMap<EnergyAsset, Role> roles) {
+			this.roles = roles;
+			groups = new PriorityQueue<AssetGroup>(Comparator.comparingInt((AssetGroup group) -> group.rank)
+					.thenComparing(Comparator.comparingDouble((AssetGroup group) -> group.capacity).reversed())
+					.thenComparingInt(group -> group.position));
+		}
+
+		/**
+		 * @return the roles of the assets of this carrier, shared by all its networks
+		 */
+		public HashMap<EnergyAsset, Role> getRoles() {
+			return roles;
+		}
+
+		public boolean isEmpty() {
+			return groups.isEmpty();
+		}
+
+		/**
+		 * @return the assets of the group to build the next network from
+		 */
+		public List<EnergyAsset> poll() {
+			return groups.poll().assets;
+		}
+
+		/**
+		 * Adds a group of assets, for instance the assets of a polled group that are
+		 * left after building a network from it.
+		 */
+		public void add(List<EnergyAsset> assets) {
+			if (!assets.isEmpty()) {
+				groups.add(new AssetGroup(assets));
+			}
+		}
+
+		/**
+		 * A group of assets with the root that {@link TransportSolver#createTree()}
+		 * would choose from it: its biggest producer, or else its first consumer.
+		 */
+		private class AssetGroup {
+			private final List<EnergyAsset> assets;
+			private int rank;
+			private double capacity;
+			private int position;
+
+			private AssetGroup(List<EnergyAsset> assets) {
+				this.assets = assets;
+				EnergyAsset root = null;
+				double maxCapacity = Double.NEGATIVE_INFINITY;
+				for (EnergyAsset asset : assets) {
+					double rootCapacity = TransportSolver.rootCapacity(asset, roles);
+					if (rootCapacity > maxCapacity) {
+						root = asset;
+						maxCapacity = rootCapacity;
+					}
+				}
+				rank = 0;
+				capacity = maxCapacity;
+				if (root == null) {
+					rank = 2;
+					capacity = 0.0;
+					for (EnergyAsset asset : assets) {
+						if (roles.get(asset).equals(Role.CONSUMER)) {
+							root = asset;
+							rank = 1;
+							break;
+						}
+					}
+				}
+				position = root == null ? Integer.MAX_VALUE : positions.get(root);
+			}
+		}
+	}
+}
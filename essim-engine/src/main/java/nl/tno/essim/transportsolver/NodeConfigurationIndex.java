@@ -0,0 +1,95 @@
+/**
+ *  This work is based on original code developed and copyrighted by TNO 2020. 
+ *  Subsequent contributions are licensed to you by the developers of such code and are
+ *  made available to the Project under one or several contributor license agreements.
+ *
+ *  This work is licensed to you under the Apache License, Version 2.0.
+ *  You may obtain a copy of the license at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Contributors:
+ *      TNO         - Initial implementation
+ *  Manager:
+ *      TNO
+ */
+
+package nl.tno.essim.transportsolver;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import nl.tno.essim.model.NodeConfiguration;
+
+/**
+ * Finds the configuration of the (remote logic) node of an asset. The ESDL
+ * node ids of the configurations are regular expressions, which are compiled
+ * once here instead of for every asset. Ids without special characters are
+ * looked up by hash; like before, the first configuration that matches wins.
+ */
+class NodeConfigurationIndex {
+
+	private static final String SPECIAL_CHARACTERS = "\\^$.|?*+()[]{}";
+
+	private final HashMap<String, Integer> literals;
+	private final HashMap<String, Integer> firstEqual;
+	private final List<Integer> patternIndices;
+	private final List<Pattern> patterns;
+	private final List<NodeConfiguration> configurations;
+
+	NodeConfigurationIndex(Collection<NodeConfiguration> nodeConfig) {
+		literals = new HashMap<String, Integer>();
+		firstEqual = new HashMap<String, Integer>();
+		patternIndices = new ArrayList<Integer>();
+		patterns = new ArrayList<Pattern>();
+		configurations = new ArrayList<NodeConfiguration>(nodeConfig);
+		for (int i = 0; i < configurations.size(); i++) {
+			String esdlNodeId = configurations.get(i).getEsdlNodeId();
+			if (esdlNodeId == null) {
+				continue;
+			}
+			firstEqual.putIfAbsent(esdlNodeId, i);
+			if (isLiteral(esdlNodeId)) {
+				literals.putIfAbsent(esdlNodeId, i);
+			} else {
+				patternIndices.add(i);
+				patterns.add(Pattern.compile(esdlNodeId));
+			}
+		}
+	}
+
+	private static boolean isLiteral(String regex) {
+		for (int i = 0; i < regex.length(); i++) {
+			if (SPECIAL_CHARACTERS.indexOf(regex.charAt(i)) >= 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * @return the first configuration whose ESDL node id matches the id, or null
+	 */
+	NodeConfiguration find(String nodeId) {
+		Integer literal = literals.get(nodeId);
+		int first = literal == null ? Integer.MAX_VALUE : literal;
+		for (int i = 0; i < patterns.size() && patternIndices.get(i) < first; i++) {
+			if (patterns.get(i).matcher(nodeId).matches()) {
+				first = patternIndices.get(i);
+				break;
+			}
+		}
+		return first == Integer.MAX_VALUE ? null : configurations.get(first);
+	}
+
+	/**
+	 * @return the first configuration with exactly this ESDL node id, or null
+	 */
+	NodeConfiguration findEqual(String nodeId) {
+		Integer index = firstEqual.get(nodeId);
+		return index == null ? null : configurations.get(index);
+	}
+}
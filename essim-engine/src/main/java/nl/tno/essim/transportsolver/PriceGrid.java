@@ -0,0 +1,154 @@
+/**
+ *  This work is based on original code developed and copyrighted by TNO 2020. 
+ *  Subsequent contributions are licensed to you by the developers of such code and are
+ *  made available to the Project under one or several contributor license agreements.
+ *
+ *  This work is licensed to you under the Apache License, Version 2.0.
+ *  You may obtain a copy of the license at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Contributors:
+ *      TNO         - Initial implementation
+ *  Manager:
+ *      TNO
+ */
+
+package nl.tno.essim.transportsolver;
+
+import lombok.extern.slf4j.Slf4j;
+import nl.tno.essim.commons.BidFunction;
+import nl.tno.essim.commons.Commons;
+
+/**
+ * Finds the balancing price from the curves of the device nodes (see
+ * {@link DirectClearing}) on a uniform grid of PRICE_GRID_POINTS prices
+ * (default 1024) between P_MIN and P_MAX. The summed energy is computed at the
+ * grid prices only, and the price is interpolated between the two grid prices
+ * around the zero crossing. The curves are exact at the grid prices, so the
+ * price differs at most one grid step from the balancing price of the summed
+ * curve; that step is reported as priceResolution in the observations of the
+ * network. Enabled with CLEARING_ENGINE=grid.
+ *
+ * Sampling every curve at every grid price would cost the number of grid
+ * prices per device. Instead, every segment of a curve adds its slope from the
+ * grid price after its first point and removes it after its last point, which
+ * costs the number of points per device. The changes are then accumulated in
+ * two running sums over the grid, and the energy follows from those sums and
+ * the grid prices, which are computed once, in a separate element-wise pass.
+ */
+@Slf4j
+public class PriceGrid extends DirectClearing {
+
+	private static final String PRICE_GRID_POINTS = "PRICE_GRID_POINTS";
+	private static final int DEFAULT_POINTS = 1024;
+
+	private final int points;
+	private final double step;
+	private final double[] gridPrices;
+	// Changes in the constant and the slope of the summed energy from each grid
+	// price onwards
+	private final double[] constants;
+	private final double[] slopes;
+	private final double[] energy;
+
+	public PriceGrid() {
+		int points = DEFAULT_POINTS;
+		String pointsString = System.getenv(PRICE_GRID_POINTS);
+		if (pointsString != null) {
+			try {
+				points = Integer.parseInt(pointsString.trim());
+			} catch (NumberFormatException e) {
+				log.warn("Invalid value {} for {}. Defaulting to {}", pointsString, PRICE_GRID_POINTS, points);
+			}
+		}
+		if (points < 2) {
+			log.warn("Invalid value {} for {}. Defaulting to {}", points, PRICE_GRID_POINTS, DEFAULT_POINTS);
+			points = DEFAULT_POINTS;
+		}
+		this.points = points;
+		step = (Commons.P_MAX - Commons.P_MIN) / (points - 1);
+		constants = new double[points + 1];
+		slopes = new double[points + 1];
+		energy = new double[points];
+		gridPrices = new double[points];
+		for (int i = 0; i < points - 1; i++) {
+			gridPrices[i] = Commons.P_MIN + i * step;
+		}
+		gridPrices[points - 1] = Commons.P_MAX;
+	}
+
+	@Override
+	public double getPriceResolution() {
+		return step;
+	}
+
+	@Override
+	protected double findPrice() {
+		if (curves.isEmpty()) {
+			return Double.NaN;
+		}
+
+		for (int i = 0; i <= points; i++) {
+			constants[i] = 0.0;
+			slopes[i] = 0.0;
+		}
+		for (BidFunction curve : curves) {
+			addCurve(curve);
+		}
+
+		// Sum the changes into the constant and the slope at every grid price
+		for (int i = 1; i < points; i++) {
+			constants[i] += constants[i - 1];
+			slopes[i] += slopes[i - 1];
+		}
+		for (int i = 0; i < points; i++) {
+			energy[i] = constants[i] + slopes[i] * gridPrices[i];
+		}
+
+		// Same search as BidFunction.findPriceFromCurve on a non-increasing curve
+		for (int i = 0; i < points; i++) {
+			if (energy[i] < eps) {
+				if (-energy[i] < eps || i == 0) {
+					return gridPrices[i];
+				}
+				double previousPrice = gridPrices[i - 1];
+				return previousPrice
+						+ (((gridPrices[i] - previousPrice) / (energy[i] - energy[i - 1])) * (0.0 - energy[i - 1]));
+			}
+		}
+		return Commons.P_MAX;
+	}
+
+	/**
+	 * Adds a curve as its first energy plus, for every segment, a ramp with the
+	 * slope of the segment that starts at its first price and a ramp with the
+	 * opposite slope that starts at its last price.
+	 */
+	private void addCurve(BidFunction curve) {
+		int size = curve.size();
+		if (size == 0) {
+			return;
+		}
+		constants[0] += curve.getBid(0);
+		for (int i = 1; i < size; i++) {
+			double fromPrice = curve.getPrice(i - 1);
+			double toPrice = curve.getPrice(i);
+			double slope = (curve.getBid(i) - curve.getBid(i - 1)) / (toPrice - fromPrice);
+			if (slope != 0.0) {
+				addRamp(fromPrice, slope);
+				addRamp(toPrice, -slope);
+			}
+		}
+	}
+
+	/**
+	 * Adds slope * (price - from) for all grid prices after from.
+	 */
+	private void addRamp(double from, double slope) {
+		double index = Math.floor((from - Commons.P_MIN) / step) + 1;
+		int first = index <= 0 ? 0 : index >= points ? points : (int) index;
+		constants[first] -= slope * from;
+		slopes[first] += slope;
+	}
+}
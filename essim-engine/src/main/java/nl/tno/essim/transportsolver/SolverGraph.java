@@ -0,0 +1,88 @@
+/**
+ *  This work is based on original code developed and copyrighted by TNO 2020. 
+ *  Subsequent contributions are licensed to you by the developers of such code and are
+ *  made available to the Project under one or several contributor license agreements.
+ *
+ *  This work is licensed to you under the Apache License, Version 2.0.
+ *  You may obtain a copy of the license at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Contributors:
+ *      TNO         - Initial implementation
+ *  Manager:
+ *      TNO
+ */
+
+package nl.tno.essim.transportsolver;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Precedence graph between transport solvers, built from the same (first,
+ * later) index pairs that are handed to the {@link ChocoOptimiser}. Whereas
+ * the optimiser groups solvers into blocks that run one after the other, this
+ * graph lets a solver start as soon as its own predecessors are done.
+ */
+public class SolverGraph {
+
+	private List<TransportSolver> solvers;
+	private int[][] successors;
+	private int[] inDegree;
+
+	public SolverGraph(List<TransportSolver> solvers, HashMap<String, List<Integer[]>> orders) {
+		this.solvers = new ArrayList<TransportSolver>(solvers);
+		int n = solvers.size();
+
+		List<Set<Integer>> edges = new ArrayList<Set<Integer>>(n);
+		for (int i = 0; i < n; i++) {
+			edges.add(new LinkedHashSet<Integer>());
+		}
+		for (List<Integer[]> constraints : orders.values()) {
+			for (Integer[] constraint : constraints) {
+				int first = constraint[0];
+				int later = constraint[1];
+				if (first < 0 || later < 0 || first == later) {
+					continue;
+				}
+				edges.get(first).add(later);
+			}
+		}
+
+		successors = new int[n][];
+		inDegree = new int[n];
+		for (int i = 0; i < n; i++) {
+			Set<Integer> next = edges.get(i);
+			successors[i] = new int[next.size()];
+			int j = 0;
+			for (int later : next) {
+				successors[i][j++] = later;
+				inDegree[later]++;
+			}
+		}
+	}
+
+	public int size() {
+		return solvers.size();
+	}
+
+	public TransportSolver getSolver(int index) {
+		return solvers.get(index);
+	}
+
+	public int[] getSuccessors(int index) {
+		return successors[index];
+	}
+
+	/**
+	 * @return a fresh copy of the number of predecessors of every solver, to be
+	 *         counted down while stepping
+	 */
+	public int[] getInDegrees() {
+		return inDegree.clone();
+	}
+}
@@ -0,0 +1,181 @@
+/**
+ *  This work is based on original code developed and copyrighted by TNO 2020. 
+ *  Subsequent contributions are licensed to you by the developers of such code and are
+ *  made available to the Project under one or several contributor license agreements.
+ *
+ *  This work is licensed to you under the Apache License, Version 2.0.
+ *  You may obtain a copy of the license at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Contributors:
+ *      TNO         - Initial implementation
+ *  Manager:
+ *      TNO
+ */
+
+package nl.tno.essim.transportsolver;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Orders the networks of a simulation into layers, so that every network comes
+ * after the networks it depends on through conversion assets (see
+ * ESSimEngine#determineTransportSolverOrder). Every network is put in the
+ * lowest layer that its constraints allow (Kahn's algorithm, keeping the
+ * longest path to each network), and the networks within a layer are kept in
+ * their own order.
+ *
+ * The ordering used to be solved as a constraint problem with
+ * {@link ChocoOptimiser}, which can still be chosen with SOLVER_ORDERING=choco
+ * (the default is layers).
+ */
+@Slf4j
+public class SolverLayering {
+
+	private static final String SOLVER_ORDERING = "SOLVER_ORDERING";
+	private static final String LAYERS = "layers";
+	private static final String CHOCO = "choco";
+
+	private List<TransportSolver> networks;
+	private HashMap<String, List<Integer[]>> orders;
+
+	public SolverLayering(List<TransportSolver> networks, HashMap<String, List<Integer[]>> orders) {
+		this.networks = networks;
+		this.orders = orders;
+	}
+
+	/**
+	 * @return whether SOLVER_ORDERING asks for the constraint solver instead of
+	 *         the layering
+	 */
+	public static boolean useChoco() {
+		String ordering = System.getenv(SOLVER_ORDERING);
+		if (ordering == null || ordering.trim().equalsIgnoreCase(LAYERS)) {
+			return false;
+		}
+		if (ordering.trim().equalsIgnoreCase(CHOCO)) {
+			return true;
+		}
+		log.warn("Invalid value {} for {}. Defaulting to {}", ordering, SOLVER_ORDERING, LAYERS);
+		return false;
+	}
+
+	public TreeMap<Integer, List<TransportSolver>> solve() {
+		TreeMap<Integer, List<TransportSolver>> order = new TreeMap<Integer, List<TransportSolver>>();
+
+		if (networks.size() == 1) {
+			order.put(0, networks);
+			return order;
+		}
+
+		int n = networks.size();
+		List<List<Integer>> later = new ArrayList<List<Integer>>(n);
+		for (int i = 0; i < n; i++) {
+			later.add(new ArrayList<Integer>());
+		}
+		int[] earlierCount = new int[n];
+		for (List<Integer[]> constraints : orders.values()) {
+			for (Integer[] constraint : constraints) {
+				later.get(constraint[0]).add(constraint[1]);
+				earlierCount[constraint[1]]++;
+			}
+		}
+
+		int[] layers = new int[n];
+		ArrayDeque<Integer> ready = new ArrayDeque<Integer>();
+		for (int i = 0; i < n; i++) {
+			if (earlierCount[i] == 0) {
+				ready.add(i);
+			}
+		}
+		int ordered = 0;
+		while (!ready.isEmpty()) {
+			int i = ready.poll();
+			ordered++;
+			for (int j : later.get(i)) {
+				layers[j] = Math.max(layers[j], layers[i] + 1);
+				if (--earlierCount[j] == 0) {
+					ready.add(j);
+				}
+			}
+		}
+
+		if (ordered < n) {
+			boolean[] cyclic = findCycles(later, earlierCount);
+			TreeSet<String> responsible = new TreeSet<String>();
+			StringBuilder sb = new StringBuilder();
+			for (Entry<String, List<Integer[]>> constraintSet : orders.entrySet()) {
+				for (Integer[] constraint : constraintSet.getValue()) {
+					if (cyclic[constraint[0]] && cyclic[constraint[1]]) {
+						responsible.add(constraintSet.getKey());
+						sb.append(constraintSet.getKey());
+						sb.append(" enforced ");
+						sb.append(networks.get(constraint[0]).getId());
+						sb.append(" < ");
+						sb.append(networks.get(constraint[1]).getId());
+						sb.append("\n");
+					}
+				}
+			}
+			log.error("Circular dependency detected - conflicting control strategies configured!");
+			log.error(sb.toString());
+			throw new IllegalStateException(
+					"Circular dependency between networks caused by conversion assets " + responsible);
+		}
+
+		for (int i = 0; i < n; i++) {
+			order.computeIfAbsent(layers[i], layer -> new ArrayList<TransportSolver>()).add(networks.get(i));
+		}
+		return order;
+	}
+
+	/**
+	 * The networks that are left after the layering wait for each other, or for
+	 * such networks. Removing the ones that no other network left waits for,
+	 * until there are none, leaves the networks on a cycle.
+	 */
+	private static boolean[] findCycles(List<List<Integer>> later, int[] earlierCount) {
+		int n = earlierCount.length;
+		boolean[] cyclic = new boolean[n];
+		int[] laterCount = new int[n];
+		List<List<Integer>> earlier = new ArrayList<List<Integer>>(n);
+		for (int i = 0; i < n; i++) {
+			earlier.add(new ArrayList<Integer>());
+			cyclic[i] = earlierCount[i] > 0;
+		}
+		for (int i = 0; i < n; i++) {
+			for (int j : later.get(i)) {
+				if (cyclic[i] && cyclic[j]) {
+					laterCount[i]++;
+					earlier.get(j).add(i);
+				}
+			}
+		}
+
+		ArrayDeque<Integer> done = new ArrayDeque<Integer>();
+		for (int i = 0; i < n; i++) {
+			if (cyclic[i] && laterCount[i] == 0) {
+				done.add(i);
+			}
+		}
+		while (!done.isEmpty()) {
+			int j = done.poll();
+			cyclic[j] = false;
+			for (int i : earlier.get(j)) {
+				if (--laterCount[i] == 0) {
+					done.add(i);
+				}
+			}
+		}
+		return cyclic;
+	}
+}
@@ -18,15 +18,27 @@ package nl.tno.essim.transportsolver;
 
 import java.io.PrintWriter;
 import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 import java.util.stream.Collectors;
 
 import org.json.JSONArray;
 
+import common.ProfileReader;
+import common.ProfileReader.Aggregation;
 import esdl.AbstractBasicConversion;
 import esdl.Asset;
 import esdl.Carrier;
@@ -47,6 +59,7 @@ import essim.ESSIMDateTimeProfile;
 import essim.ESSIMInfluxDBProfile;
 import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
+import nl.tno.essim.EsdlSource;
 import nl.tno.essim.commons.BidFunction;
 import nl.tno.essim.commons.Commons;
 import nl.tno.essim.commons.Commons.Role;
@@ -55,16 +68,20 @@ import nl.tno.essim.commons.ITransportSolver;
 import nl.tno.essim.commons.Simulatable;
 import nl.tno.essim.commons.SimulationStatus;
 import nl.tno.essim.managers.EmissionManager;
+import nl.tno.essim.managers.SimulationScheduler;
 import nl.tno.essim.model.NodeConfiguration;
 import nl.tno.essim.observation.IObservationManager;
 import nl.tno.essim.observation.IObservationProvider;
 import nl.tno.essim.observation.Observation;
+import nl.tno.essim.observation.Observation.ObservationBuilder;
 import nl.tno.essim.time.EssimDuration;
 import nl.tno.essim.time.EssimTime;
 import nl.tno.essim.time.Horizon;
+import nl.tno.essim.transportsolver.nodes.CurveSimplifier;
 import nl.tno.essim.transportsolver.nodes.Node;
 import nl.tno.essim.transportsolver.nodes.Node.NodeBuilder;
 import nl.tno.essim.transportsolver.nodes.RemoteLogicNode;
+import nl.tno.essim.transportsolver.nodes.StorageNode;
 import nl.tno.essim.util.Converter;
 
 @Slf4j
@@ -74,17 +91,20 @@ public class TransportSolver implements ITransportSolver, Simulatable, IObservat
 	private static final String D3_TREEDATA_VAR_PLACEHOLDER = "$$TREEDATA$$";
 	private static final String D3_HEADER_PLACEHOLDER = "$$HEADER$$";
 	private static final double eps = 1e-4;
+	private static String treeTemplate;
 	@Getter
 	private String id;
 	@Getter
 	private Carrier carrier;
-	private List<EnergyAsset> assetList;
+	private LinkedHashSet<EnergyAsset> assetList;
 	@Getter
 	private List<EnergyAsset> processedList;
+	private HashSet<EnergyAsset> processedAssets;
 	@Getter
 	private List<Node> deviceNodes;
+	// JSON of the tree for the network diagram, made when it is first requested
+	private String treeDescription;
 	@Getter
-	private String networkDiag;
 	private IObservationManager observationManager;
 	@Getter
 	private Node tree;
@@ -95,19 +115,33 @@ public class TransportSolver implements ITransportSolver, Simulatable, IObservat
 	private int transportCount;
 	private int transportWithCapacityCount;
 	private Collection<NodeConfiguration> nodeConfig;
+	private NodeConfigurationIndex nodeConfigIndex;
 	private String simulationId;
-	private String esdlString;
+	// Queue of the simulation on the solver scheduler, for the subtree tasks
+	private Executor solverExecutor;
+	private EsdlSource esdlSource;
+	private InflexibleHorizon inflexibleHorizon;
+	private FlatTree flatTree;
+	private FlatTree uncollapsedTree;
+	private FlatTree steppedTree;
+	private DirectClearing directClearing;
+	private double[] previousResults;
 
 	public TransportSolver(String name, Carrier carrier, IObservationProvider generalObservationProvider,
-			Collection<NodeConfiguration> nodeConfig, HashMap<EnergyAsset, Role> roleMap, String energySystem) {
+			Collection<NodeConfiguration> nodeConfig, HashMap<EnergyAsset, Role> roleMap, EsdlSource esdlSource) {
 		this.id = name;
 		this.carrier = carrier;
 		this.nodeConfig = nodeConfig;
-		this.esdlString = energySystem;
-		assetList = new ArrayList<EnergyAsset>();
+		if (nodeConfig != null) {
+			nodeConfigIndex = new NodeConfigurationIndex(nodeConfig);
+		}
+		this.esdlSource = esdlSource;
+		assetList = new LinkedHashSet<EnergyAsset>();
 		processedList = new ArrayList<EnergyAsset>();
+		processedAssets = new HashSet<EnergyAsset>();
 		deviceNodes = new ArrayList<Node>();
 		this.roleMap = roleMap;
+		directClearing = DirectClearing.fromEnv();
 	}
 
 	public boolean isPartOfNetwork(Asset asset) {
@@ -124,26 +158,61 @@ public class TransportSolver implements ITransportSolver, Simulatable, IObservat
 
 	public void addToNetwork(EnergyAsset asset) {
 		if (!assetList.contains(asset)) {
-			if (asset instanceof Conversion && asset.getControlStrategy() == null) {
-				log.warn("Conversion asset {} has no Control Strategy. Defaulting to DrivenByDemand",
-						asset.getName() == null ? asset.getId() : asset.getName());
-				DrivenByDemand drivenByDemand = EsdlFactory.eINSTANCE.createDrivenByDemand();
-				drivenByDemand.setId(UUID.randomUUID().toString());
-				drivenByDemand.setName("DrivenByDemand for " + asset.getName());
-				OutPort outport = null;
-				for (Port port : asset.getPort()) {
-					if (port instanceof OutPort) {
-						outport = (OutPort) port;
-						break;
-					}
+			setDefaultControlStrategy(asset);
+			assetList.add(asset);
+		}
+	}
+
+	/**
+	 * Gives a conversion asset without control strategy a DrivenByDemand
+	 * strategy.
+	 */
+	private static void setDefaultControlStrategy(EnergyAsset asset) {
+		if (asset instanceof Conversion && asset.getControlStrategy() == null) {
+			log.warn("Conversion asset {} has no Control Strategy. Defaulting to DrivenByDemand",
+					asset.getName() == null ? asset.getId() : asset.getName());
+			DrivenByDemand drivenByDemand = EsdlFactory.eINSTANCE.createDrivenByDemand();
+			drivenByDemand.setId(UUID.randomUUID().toString());
+			drivenByDemand.setName("DrivenByDemand for " + asset.getName());
+			OutPort outport = null;
+			for (Port port : asset.getPort()) {
+				if (port instanceof OutPort) {
+					outport = (OutPort) port;
+					break;
 				}
-				drivenByDemand.setOutPort(outport);
-				asset.setControlStrategy(drivenByDemand);
 			}
-			assetList.add(asset);
+			drivenByDemand.setOutPort(outport);
+			asset.setControlStrategy(drivenByDemand);
 		}
 	}
 
+	/**
+	 * @return whether the asset is part of this network
+	 */
+	public boolean isProcessed(EnergyAsset asset) {
+		return processedAssets.contains(asset);
+	}
+
+	private void addProcessed(EnergyAsset asset) {
+		processedList.add(asset);
+		processedAssets.add(asset);
+	}
+
+	/**
+	 * @return the capacity with which the asset competes to be the root of a
+	 *         network in {@link #createTree()}, or NaN if it is not a producer
+	 */
+	public static double rootCapacity(EnergyAsset asset, Map<EnergyAsset, Role> roleMap) {
+		if (asset instanceof Producer) {
+			return ((Producer) asset).getPower();
+		} else if (asset instanceof AbstractBasicConversion && roleMap.get(asset).equals(Role.PRODUCER)) {
+			return ((AbstractBasicConversion) asset).getPower();
+		} else if (asset instanceof Consumer && roleMap.get(asset).equals(Role.PRODUCER)) {
+			return ((Consumer) asset).getPower();
+		}
+		return Double.NaN;
+	}
+
 	public Role getRole(EnergyAsset asset) {
 		return getRole(tree, asset);
 	}
@@ -171,24 +240,10 @@ public class TransportSolver implements ITransportSolver, Simulatable, IObservat
 
 		// Choose the biggest producer as the root node
 		for (EnergyAsset asset : assetList) {
-			if (asset instanceof Producer) {
-				Producer producer = (Producer) asset;
-				if (producer.getPower() > maxCapacity) {
-					rootAsset = producer;
-					maxCapacity = producer.getPower();
-				}
-			} else if (asset instanceof AbstractBasicConversion && roleMap.get(asset).equals(Role.PRODUCER)) {
-				AbstractBasicConversion conversion = (AbstractBasicConversion) asset;
-				if (conversion.getPower() > maxCapacity) {
-					rootAsset = conversion;
-					maxCapacity = conversion.getPower();
-				}
-			} else if (asset instanceof Consumer && roleMap.get(asset).equals(Role.PRODUCER)) {
-				Consumer consumer = (Consumer) asset;
-				if (consumer.getPower() > maxCapacity) {
-					rootAsset = consumer;
-					maxCapacity = consumer.getPower();
-				}
+			double capacity = rootCapacity(asset, roleMap);
+			if (capacity > maxCapacity) {
+				rootAsset = asset;
+				maxCapacity = capacity;
 			}
 		}
 
@@ -220,14 +275,16 @@ public class TransportSolver implements ITransportSolver, Simulatable, IObservat
 
 		String rootAssetId = rootAsset.getId();
 		NodeBuilder nodeBuilder = Node.builder().nodeId(rootAssetId).simulationId(simulationId).asset(rootAsset)
-				.esdlString(esdlString).role(rootRole).parent(null).networkId(getId()).carrier(carrier);
-		if (nodeConfig != null) {
-			this.nodeConfig.stream().filter(n -> rootAssetId.equals(n.getEsdlNodeId())).findFirst()
-					.ifPresent(nodeBuilder::config);
+				.esdlSource(esdlSource).role(rootRole).parent(null).networkId(getId()).carrier(carrier);
+		if (nodeConfigIndex != null) {
+			NodeConfiguration config = nodeConfigIndex.findEqual(rootAssetId);
+			if (config != null) {
+				nodeBuilder.config(config);
+			}
 		}
 		tree = nodeBuilder.build();
 
-		processedList.add(rootAsset);
+		addProcessed(rootAsset);
 		assetList.remove(rootAsset);
 		if (rootAsset instanceof Transport) {
 			transportCount += 1;
@@ -242,24 +299,47 @@ public class TransportSolver implements ITransportSolver, Simulatable, IObservat
 			log.error("Only one asset in network " + getId() + " for carrier: " + getCarrier().getId() + "!! : "
 					+ deviceNodes.get(0));
 			log.error("This network ({}) will not be created!", getId());
-			return assetList;
+			return new ArrayList<EnergyAsset>(assetList);
 		}
 
-		printTree(getId());
+		return new ArrayList<EnergyAsset>(assetList);
+	}
 
-		return assetList;
+	/**
+	 * Builds the tree below the given node, depth first. Walks the network with
+	 * an explicit stack instead of recursing, so that deep networks (long radial
+	 * feeders) do not overflow the call stack; the nodes are visited in the same
+	 * order as the recursion did.
+	 */
+	public void makeTree(Node rootNode) throws Exception {
+		ArrayDeque<Node> stack = new ArrayDeque<Node>();
+		stack.push(rootNode);
+		while (!stack.isEmpty()) {
+			Node parentNode = stack.pop();
+			if (parentNode != rootNode && Commons.isConversionToSameCarrier(parentNode.getAsset())) {
+				addProcessed(parentNode.getAsset());
+				continue;
+			}
+			addChildren(parentNode);
+			if (parentNode.getChildren() != null) {
+				List<Node> children = parentNode.getChildren();
+				for (int i = children.size() - 1; i >= 0; i--) {
+					stack.push(children.get(i));
+				}
+			}
+		}
 	}
 
-	public void makeTree(Node parentNode) throws Exception {
+	private void addChildren(Node parentNode) throws Exception {
 		// if (!(Commons.isConversionToSameCarrier(parentNode.getAsset()))) {
 		HashMap<EnergyAsset, Port> assetConnections = Commons.findAllConnectedAssets(parentNode.getAsset());
 		for (EnergyAsset connectedAsset : assetConnections.keySet()) {
-			if (assetList.contains(connectedAsset) && !processedList.contains(connectedAsset)) {
+			if (assetList.contains(connectedAsset) && !processedAssets.contains(connectedAsset)) {
 				String nodeId = connectedAsset.getId();
 				Port connectedPort = assetConnections.get(connectedAsset);
 				NodeBuilder nodeBuilder = Node.builder().nodeId(nodeId).connectedPort(connectedPort)
 						.simulationId(simulationId).asset(connectedAsset).parent(parentNode).networkId(getId())
-						.esdlString(esdlString).carrier(carrier);
+						.esdlSource(esdlSource).carrier(carrier);
 				for (Port myPort : connectedAsset.getPort()) {
 					if (myPort instanceof InPort) {
 						InPort myInPort = (InPort) myPort;
@@ -293,7 +373,7 @@ public class TransportSolver implements ITransportSolver, Simulatable, IObservat
 				}
 
 				if (!Commons.isConversionToSameCarrier(connectedAsset)) {
-					processedList.add(connectedAsset);
+					addProcessed(connectedAsset);
 					assetList.remove(connectedAsset);
 				} else {
 					if (connectedVia(connectedAsset, parentNode.getAsset()) instanceof InPort) {
@@ -311,24 +391,57 @@ public class TransportSolver implements ITransportSolver, Simulatable, IObservat
 					}
 				}
 
-				if (nodeConfig != null) {
-					this.nodeConfig.stream().filter(n -> nodeId.matches(n.getEsdlNodeId())).findFirst()
-							.ifPresent(nodeBuilder::config);
+				if (nodeConfigIndex != null) {
+					NodeConfiguration config = nodeConfigIndex.find(nodeId);
+					if (config != null) {
+						nodeBuilder.config(config);
+					}
 				}
 
 				parentNode.addChild(nodeBuilder.build());
 			}
 		}
 		// }
-		if (parentNode.getChildren() != null) {
-			for (Node childNode : parentNode.getChildren()) {
-				if (!(Commons.isConversionToSameCarrier(childNode.getAsset()))) {
-					makeTree(childNode);
-				} else {
-					processedList.add(childNode.getAsset());
-				}
+	}
+
+	/**
+	 * A network is time independent if no node carries state from one timestep
+	 * to the next (storage), depends on external models, or exchanges energy
+	 * with other networks through a conversion asset. Each timestep of such a
+	 * network only depends on its profiles.
+	 */
+	public boolean isTimeIndependent() {
+		for (Node node : deviceNodes) {
+			if (node instanceof StorageNode || node instanceof RemoteLogicNode
+					|| node.getAsset() instanceof Conversion) {
+				return false;
 			}
 		}
+		return true;
+	}
+
+	/**
+	 * Creates a copy of this (initialised) solver with its own node tree, so that
+	 * different parts of the simulation horizon can be stepped concurrently.
+	 */
+	public TransportSolver copyForTimeChunk() throws Exception {
+		TransportSolver copy = new TransportSolver(id, carrier, null, nodeConfig, roleMap, esdlSource);
+		copy.simulationId = simulationId;
+		copy.solverExecutor = solverExecutor;
+		copy.simulationStartTime = simulationStartTime;
+		copy.simulationEndTime = simulationEndTime;
+		copy.simulationStepLength = simulationStepLength;
+		copy.transportCount = transportCount;
+		copy.transportWithCapacityCount = transportWithCapacityCount;
+		copy.processedList.addAll(processedList);
+		copy.processedAssets.addAll(processedAssets);
+		copy.tree = tree.copy(null);
+		copy.tree.findDeviceNodes(copy.deviceNodes);
+		if (inflexibleHorizon != null) {
+			copy.inflexibleHorizon = inflexibleHorizon.copyFor(tree, copy.tree);
+		}
+		copy.flatTree = new FlatTree(copy.tree, copy.inflexibleHorizon, solverExecutor);
+		return copy;
 	}
 
 	private Port connectedVia(EnergyAsset from, EnergyAsset to) {
@@ -355,18 +468,61 @@ public class TransportSolver implements ITransportSolver, Simulatable, IObservat
 		return port;
 	}
 
+	/**
+	 * Renders the network diagram of this network: the tree page template with
+	 * the tree of this network. Diagrams are only made on request (see
+	 * ESSimEngine#getNetworkDiag(int)), the JSON of the tree is kept for the next
+	 * request.
+	 *
+	 * @return the HTML page of the diagram, or null if it could not be made
+	 */
+	public String getNetworkDiag() {
+		return getNetworkDiag(getId());
+	}
+
+	private String getNetworkDiag(String diff) {
+		if (tree == null) {
+			return null;
+		}
+		String template = getTreeTemplate();
+		if (template == null) {
+			return null;
+		}
+		String description;
+		synchronized (this) {
+			if (treeDescription == null) {
+				treeDescription = new JSONArray().put(tree.getJSONString()).toString();
+			}
+			description = treeDescription;
+		}
+		String outString = template.replace(D3_TREEDATA_VAR_PLACEHOLDER, "var treeData=" + description + ";");
+		return outString.replace(D3_HEADER_PLACEHOLDER, diff);
+	}
+
+	private synchronized static String getTreeTemplate() {
+		if (treeTemplate == null) {
+			try {
+				treeTemplate = Commons.readFileIntoString(D3_TREE_PAGE_TEMPLATE);
+			} catch (Exception e) {
+				treeTemplate = null;
+			}
+			if (treeTemplate == null) {
+				log.error("Could not read TREE template located at {}!", D3_TREE_PAGE_TEMPLATE);
+			}
+		}
+		return treeTemplate;
+	}
+
+	/**
+	 * Writes the network diagram of this network to a file in the working
+	 * directory, for debugging.
+	 */
 	public void printTree(String diff) {
 		try {
-			String template = Commons.readFileIntoString(D3_TREE_PAGE_TEMPLATE);
-			if (template == null) {
-				log.error("Could not read TREE template located at {}!", D3_TREE_PAGE_TEMPLATE);
+			String networkDiag = getNetworkDiag(diff);
+			if (networkDiag == null) {
 				return;
 			}
-
-			JSONArray jsonTree = new JSONArray().put(tree.getJSONString());
-			String outString = template.replace(D3_TREEDATA_VAR_PLACEHOLDER,
-					"var treeData=" + jsonTree.toString() + ";");
-			networkDiag = outString.replace(D3_HEADER_PLACEHOLDER, diff);
 			String fileName = D3_TREE_PAGE_OUTPUT_FILE + "_" + diff.replace(' ', '_') + ".html";
 			PrintWriter out = new PrintWriter(fileName);
 			out.println(networkDiag);
@@ -388,6 +544,8 @@ public class TransportSolver implements ITransportSolver, Simulatable, IObservat
 			throw new IllegalStateException("TransportSolver " + getId() + " in init() without creating tree!");
 		}
 
+		// Profiles used by more than one asset are initialised once
+		LinkedHashSet<GenericProfile> profiles = new LinkedHashSet<GenericProfile>();
 		for (Node node : deviceNodes) {
 			if (node instanceof RemoteLogicNode) {
 				RemoteLogicNode remoteLogicNode = (RemoteLogicNode) node;
@@ -396,19 +554,25 @@ public class TransportSolver implements ITransportSolver, Simulatable, IObservat
 
 			EnergyAsset asset = node.getAsset();
 			for (Port port : asset.getPort()) {
-				initialiseProfile(port);
+				for (GenericProfile profile : port.getProfile()) {
+					addProfile(profiles, profile);
+				}
 			}
 
 			if (asset.getControlStrategy() != null) {
 				if (asset.getControlStrategy() instanceof DrivenByProfile) {
-					initialiseProfile(((DrivenByProfile) asset.getControlStrategy()).getProfile());
+					addProfile(profiles, ((DrivenByProfile) asset.getControlStrategy()).getProfile());
 				}
 			}
 		}
 
 		if (carrier.getCost() != null) {
-			initialiseProfile(carrier.getCost());
+			addProfile(profiles, carrier.getCost());
 		}
+		initialiseProfiles(profiles);
+
+		inflexibleHorizon = InflexibleHorizon.precompute(getId(), tree, deviceNodes, timestamp);
+		flatTree = new FlatTree(tree, inflexibleHorizon, solverExecutor);
 	}
 
 	@Override
@@ -419,11 +583,16 @@ public class TransportSolver implements ITransportSolver, Simulatable, IObservat
 		EssimDuration timeStepinDT = timestamp.getSimulationStepLength();
 		long timeStep = timeStepinDT.getSeconds();
 		Horizon now = new Horizon(timestamp.getTime(), timeStepinDT);
+		int stepIndex = timestamp.toDiscreteSimulationTime();
 
-		// Create Bid Curves.
+		// Create Bid Curves. Precomputed nodes have a marginal cost of zero. Nodes
+		// whose inputs did not change keep their curve (see Node#isBidCurveReused).
 		double marginalCostSum = 0.0;
 		boolean normalise = false;
 		for (Node deviceNode : deviceNodes) {
+			if (inflexibleHorizon != null && inflexibleHorizon.isPrecomputed(deviceNode)) {
+				continue;
+			}
 			deviceNode.createBidCurve(timeStep, now, Commons.P_MIN, Commons.P_MAX);
 			double marginalCost = deviceNode.getDemandFunction().getMarginalCost();
 			if (marginalCost > 1.0) {
@@ -432,27 +601,66 @@ public class TransportSolver implements ITransportSolver, Simulatable, IObservat
 			marginalCostSum += marginalCost;
 		}
 
+		// Normalised curves are no longer flat at the same prices, so all nodes need
+		// their own curve then
+		FlatTree stepTree = flatTree;
+		if (normalise && inflexibleHorizon != null) {
+			inflexibleHorizon.createBidCurves(deviceNodes, stepIndex);
+			if (uncollapsedTree == null) {
+				uncollapsedTree = new FlatTree(tree, null, solverExecutor);
+			}
+			stepTree = uncollapsedTree;
+		}
+		// The curves a tree remembers are those of the last step it was used in
+		if (stepTree != steppedTree) {
+			stepTree.resetAggregates();
+			steppedTree = stepTree;
+		}
+
 		if (normalise) {
 			for (Node deviceNode : deviceNodes) {
-				deviceNode.getDemandFunction().normaliseCurve(marginalCostSum);
+				deviceNode.normaliseBidCurve(marginalCostSum);
 			}
 		}
 
-		// Send demand functions upwards
-		BidFunction summedFunction = tree.aggregateDemandFunction();
-
 		// Allocate devices and collect observations
 		ArrayList<Observation> observations = new ArrayList<Observation>();
-		double[] results = tree.allocateAndPropagate(summedFunction, observations, timestamp);
+		double[] results;
+		double priceResolution = 0.0;
+		double curveError = 0.0;
+		if (directClearing != null && directClearing.clear(stepTree, stepIndex)) {
+			stepTree.allocateTransportNodes(directClearing.getBalancingPrice(), stepIndex);
+			results = stepTree.allocateAndPropagate(directClearing.getBalancingPrice(), directClearing.getImbalance(),
+					observations, timestamp, stepIndex);
+			priceResolution = directClearing.getPriceResolution();
+		} else {
+			// Send demand functions upwards
+			BidFunction summedFunction = stepTree.aggregate(stepIndex);
+			if (previousResults != null && !stepTree.isAggregateChanged()) {
+				// Same curves as in the previous step, so the same price and allocations
+				results = stepTree.allocateAndPropagate(previousResults[1], previousResults[0], observations,
+						timestamp, stepIndex);
+			} else {
+				results = stepTree.allocateAndPropagate(summedFunction, observations, timestamp, stepIndex);
+			}
+			previousResults = results;
+			curveError = stepTree.getAggregateError();
+		}
 
 		// Publish observations
 		if (observationManager != null) {
-			observationManager.publish(this,
-					Observation.builder().observedAt(timestamp.getTime()).tag("transportNetworkId", getId())
-							.tag("carrierId", carrier.getId())
-							.tag("carrierName", (carrier.getName() == null) ? "UnnamedCarrier" : carrier.getName())
-							.value("imbalanceEnergy", results[0]).value("matchingPrice", results[1])
-							.value("imbalancePower", results[0] / timeStep).build());
+			ObservationBuilder builder = Observation.builder().observedAt(timestamp.getTime())
+					.tag("transportNetworkId", getId()).tag("carrierId", carrier.getId())
+					.tag("carrierName", (carrier.getName() == null) ? "UnnamedCarrier" : carrier.getName())
+					.value("imbalanceEnergy", results[0]).value("matchingPrice", results[1])
+					.value("imbalancePower", results[0] / timeStep);
+			if (priceResolution > 0.0) {
+				builder.value("priceResolution", priceResolution);
+			}
+			if (CurveSimplifier.isEnabled()) {
+				builder.value("curveError", curveError);
+			}
+			observationManager.publish(this, builder.build());
 
 			for (Observation observation : observations) {
 				observationManager.publish(this, observation);
@@ -505,6 +713,7 @@ public class TransportSolver implements ITransportSolver, Simulatable, IObservat
 	@Override
 	public void setSimulationManager(ISimulationManager manager) {
 		this.simulationId = manager.getName();
+		this.solverExecutor = manager.getSolverExecutor();
 	}
 
 	@Override
@@ -527,9 +736,48 @@ public class TransportSolver implements ITransportSolver, Simulatable, IObservat
 		return getId();
 	}
 
-	private void initialiseProfile(Port port) {
-		for (GenericProfile profile : port.getProfile()) {
-			initialiseProfile(profile);
+	private static void addProfile(Collection<GenericProfile> profiles, GenericProfile profile) {
+		if (profile instanceof ProfileReference) {
+			profile = ((ProfileReference) profile).getReference();
+		}
+		if (profile != null) {
+			profiles.add(profile);
+		}
+	}
+
+	/**
+	 * Initialises the profiles concurrently on the profile scheduler (see
+	 * {@link SimulationScheduler}), so that loading them from their sources is not
+	 * done one by one. A single profile goes through the profile scheduler as
+	 * well, so that it bounds the number of concurrent loads of all networks.
+	 */
+	private void initialiseProfiles(Collection<GenericProfile> profiles) {
+		if (profiles.isEmpty()) {
+			return;
+		}
+
+		List<Callable<Void>> profileTasks = new ArrayList<Callable<Void>>();
+		for (GenericProfile profile : profiles) {
+			profileTasks.add(() -> {
+				initialiseProfile(profile);
+				return null;
+			});
+		}
+		ExecutorService executor = SimulationScheduler.getProfileScheduler().newQueue(getId() + " profiles");
+		try {
+			for (Future<Void> profileTask : executor.invokeAll(profileTasks)) {
+				profileTask.get();
+			}
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			throw new IllegalStateException("Error initialising profiles of " + getId(), e.getCause());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while initialising profiles of " + getId(), e);
+		} finally {
+			executor.shutdown();
 		}
 	}
 
@@ -549,9 +797,25 @@ public class TransportSolver implements ITransportSolver, Simulatable, IObservat
 						EssimTime.localDateTimeToDate(simulationEndTime),
 						Converter.toESDLDuration(simulationStepLength));
 			}
+			if (profile instanceof ProfileReader && hasFixedStepLength()) {
+				long startEpoch = EssimTime.toEpochSecond(simulationStartTime);
+				long stepSeconds = simulationStepLength.getSeconds();
+				int steps = (int) ((EssimTime.toEpochSecond(simulationEndTime) - startEpoch) / stepSeconds + 1);
+				((ProfileReader) profile).resample(startEpoch, stepSeconds, steps,
+						Commons.isEnergyProfile(profile) ? Aggregation.SUM : Aggregation.AVERAGE);
+			}
 		}
 	}
 
+	/**
+	 * Profiles can only be resampled onto steps of a fixed number of seconds, so
+	 * not onto months or years.
+	 */
+	private boolean hasFixedStepLength() {
+		ChronoUnit unit = simulationStepLength.getUnit();
+		return unit.isTimeBased() || unit == ChronoUnit.DAYS || unit == ChronoUnit.WEEKS;
+	}
+
 	@Override
 	public boolean hasAnyTransportAsset() {
 		return transportCount >= 1;
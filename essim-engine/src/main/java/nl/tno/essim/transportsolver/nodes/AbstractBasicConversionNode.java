@@ -35,6 +35,7 @@ import lombok.Builder;
 import lombok.Data;
 import lombok.EqualsAndHashCode;
 import lombok.extern.slf4j.Slf4j;
+import nl.tno.essim.EsdlSource;
 import nl.tno.essim.commons.BidFunction;
 import nl.tno.essim.commons.Commons;
 import nl.tno.essim.commons.Commons.Role;
@@ -65,9 +66,9 @@ public class AbstractBasicConversionNode extends Node {
 
 	@Builder(builderMethodName = "abstractBasicConversionNodeBuilder")
 	public AbstractBasicConversionNode(String simulationId, String nodeId, String address, String networkId,
-			EnergyAsset asset, String esdlString, int directionFactor, Role role, BidFunction demandFunction,
+			EnergyAsset asset, EsdlSource esdlSource, int directionFactor, Role role, BidFunction demandFunction,
 			double energy, double cost, Node parent, Carrier carrier, List<Node> children, long timeStep, Horizon now, Port connectedPort) {
-		super(simulationId, nodeId, address, networkId, asset, esdlString, directionFactor, role, demandFunction,
+		super(simulationId, nodeId, address, networkId, asset, esdlSource, directionFactor, role, demandFunction,
 				energy, cost, parent, carrier, children, timeStep, now, connectedPort);
 		this.conversion = (AbstractBasicConversion) asset;
 		this.conversionName = asset.getName() == null ? asset.getId() : asset.getName();
@@ -93,6 +94,11 @@ public class AbstractBasicConversionNode extends Node {
 		specialConversion = inputCarrier.equals(outputCarrier);
 	}
 
+	@Override
+	public boolean isPrecomputable() {
+		return controlStrategy instanceof DrivenByProfile;
+	}
+
 	@Override
 	public void createBidCurve(long timeStep, Horizon now, double minPrice, double maxPrice) {
 		// Generic Conversion or Gas Heater (All single-input/single-output conversions)
@@ -115,13 +121,13 @@ public class AbstractBasicConversionNode extends Node {
 					// Make Flexible Producer Curve
 					double energyOutput = timeStep * power;
 					if (marginalCostProfile != null) {
-						Double aggregateCost = Commons.aggregateCost(Commons.readProfile(marginalCostProfile, now));
+						Double aggregateCost = Commons.readCost(marginalCostProfile, now);
 						if(Double.isNaN(aggregateCost)) {
 							aggregateCost = DEFAULT_MARGINAL_COST;
 						}
 						setCost(aggregateCost);
 					} else if (costProfile != null) {
-						Double aggregateCost = Commons.aggregateCost(Commons.readProfile(costProfile, now)) / efficiency;
+						Double aggregateCost = Commons.readCost(costProfile, now) / efficiency;
 						if(Double.isNaN(aggregateCost)) {
 							aggregateCost = DEFAULT_MARGINAL_COST;
 						}
@@ -158,9 +164,9 @@ public class AbstractBasicConversionNode extends Node {
 
 						if (convProfile != null) {
 							if (Commons.isPowerProfile(convProfile)) {
-								energyOutput = timeStep * Commons.aggregatePower(Commons.readProfile(convProfile, now));
+								energyOutput = timeStep * Commons.readPower(convProfile, now);
 							} else if (Commons.isEnergyProfile(convProfile)) {
-								energyOutput = Commons.aggregateEnergy(Commons.readProfile(convProfile, now));
+								energyOutput = Commons.readEnergy(convProfile, now);
 							} else {
 								throw new IllegalStateException("Profile in the outPort of " + conversionName
 										+ " is neither Power nor Energy!");
@@ -190,9 +196,9 @@ public class AbstractBasicConversionNode extends Node {
 
 					if (convProfile != null) {
 						if (Commons.isPowerProfile(convProfile)) {
-							energyOutput = timeStep * Commons.aggregatePower(Commons.readProfile(convProfile, now));
+							energyOutput = timeStep * Commons.readPower(convProfile, now);
 						} else if (Commons.isEnergyProfile(convProfile)) {
-							energyOutput = Commons.aggregateEnergy(Commons.readProfile(convProfile, now));
+							energyOutput = Commons.readEnergy(convProfile, now);
 						} else {
 							throw new IllegalStateException(
 									"Profile in the outPort of " + conversionName + " is neither Power nor Energy!");
@@ -210,9 +216,9 @@ public class AbstractBasicConversionNode extends Node {
 				double energyOutput;
 				if (convProfile != null) {
 					if (Commons.isPowerProfile(convProfile)) {
-						energyOutput = timeStep * Commons.aggregatePower(Commons.readProfile(convProfile, now));
+						energyOutput = timeStep * Commons.readPower(convProfile, now);
 					} else if (Commons.isEnergyProfile(convProfile)) {
-						energyOutput = Commons.aggregateEnergy(Commons.readProfile(convProfile, now));
+						energyOutput = Commons.readEnergy(convProfile, now);
 					} else {
 						throw new IllegalStateException(
 								"Profile in the outPort of " + conversionName + " is neither Power nor Energy!");
@@ -251,9 +257,9 @@ public class AbstractBasicConversionNode extends Node {
 
 						if (convProfile != null) {
 							if (Commons.isPowerProfile(convProfile)) {
-								energyOutput = timeStep * Commons.aggregatePower(Commons.readProfile(convProfile, now));
+								energyOutput = timeStep * Commons.readPower(convProfile, now);
 							} else if (Commons.isEnergyProfile(convProfile)) {
-								energyOutput = Commons.aggregateEnergy(Commons.readProfile(convProfile, now));
+								energyOutput = Commons.readEnergy(convProfile, now);
 							} else {
 								throw new IllegalStateException("Profile in the outPort of " + conversionName
 										+ " is neither Power nor Energy!");
@@ -283,9 +289,9 @@ public class AbstractBasicConversionNode extends Node {
 
 					if (convProfile != null) {
 						if (Commons.isPowerProfile(convProfile)) {
-							energyOutput = timeStep * Commons.aggregatePower(Commons.readProfile(convProfile, now));
+							energyOutput = timeStep * Commons.readPower(convProfile, now);
 						} else if (Commons.isEnergyProfile(convProfile)) {
-							energyOutput = Commons.aggregateEnergy(Commons.readProfile(convProfile, now));
+							energyOutput = Commons.readEnergy(convProfile, now);
 						} else {
 							throw new IllegalStateException(
 									"Profile in the outPort of " + conversionName + " is neither Power nor Energy!");
@@ -304,12 +310,12 @@ public class AbstractBasicConversionNode extends Node {
 					// Make flexible consumption curve
 					double energyOutput = (timeStep * power) / efficiency;
 					if (marginalCostProfile != null) {
-						Double aggregateCost = Commons.aggregateCost(Commons.readProfile(marginalCostProfile, now));
+						Double aggregateCost = Commons.readCost(marginalCostProfile, now);
 						if(Double.isNaN(aggregateCost)) {
 							aggregateCost = DEFAULT_MARGINAL_COST;
 						}
 					} else if (costProfile != null) {
-						Double aggregateCost = Commons.aggregateCost(Commons.readProfile(costProfile, now));
+						Double aggregateCost = Commons.readCost(costProfile, now);
 						if(Double.isNaN(aggregateCost)) {
 							aggregateCost = DEFAULT_MARGINAL_COST;
 						}
@@ -332,9 +338,9 @@ public class AbstractBasicConversionNode extends Node {
 				double energyOutput;
 				if (convProfile != null) {
 					if (Commons.isPowerProfile(convProfile)) {
-						energyOutput = timeStep * Commons.aggregatePower(Commons.readProfile(convProfile, now));
+						energyOutput = timeStep * Commons.readPower(convProfile, now);
 					} else if (Commons.isEnergyProfile(convProfile)) {
-						energyOutput = Commons.aggregateEnergy(Commons.readProfile(convProfile, now));
+						energyOutput = Commons.readEnergy(convProfile, now);
 					} else {
 						throw new IllegalStateException(
 								"Profile in the outPort of " + conversionName + " is neither Power nor Energy!");
@@ -386,9 +392,8 @@ public class AbstractBasicConversionNode extends Node {
 							builder.value("emission", emission);
 							builder.value("fuelConsumption", inputCarrierQuantity);
 
-							double currentInputCarrierCost = Commons
-									.aggregateCost(Commons.readProfile(inputCarrier.getCost(),
-											new Horizon(timestamp.getTime(), timestamp.getSimulationStepLength())));
+							double currentInputCarrierCost = Commons.readCost(inputCarrier.getCost(),
+									new Horizon(timestamp.getTime(), timestamp.getSimulationStepLength()));
 							if (!Double.isNaN(currentInputCarrierCost)) {
 								double inputCarrierCost = inputCarrierQuantity * currentInputCarrierCost;
 								builder.value("cost", inputCarrierCost);
@@ -436,9 +441,8 @@ public class AbstractBasicConversionNode extends Node {
 						builder.value("emission", emission);
 						builder.value("fuelConsumption", inputCarrierQuantity);
 
-						double currentInputCarrierCost = Commons
-								.aggregateCost(Commons.readProfile(inputCarrier.getCost(),
-										new Horizon(timestamp.getTime(), timestamp.getSimulationStepLength())));
+						double currentInputCarrierCost = Commons.readCost(inputCarrier.getCost(),
+								new Horizon(timestamp.getTime(), timestamp.getSimulationStepLength()));
 						if (!Double.isNaN(currentInputCarrierCost)) {
 							double inputCarrierCost = inputCarrierQuantity * currentInputCarrierCost;
 							builder.value("cost", inputCarrierCost);
@@ -491,9 +495,8 @@ public class AbstractBasicConversionNode extends Node {
 							builder.value("emission", emission);
 							builder.value("fuelConsumption", inputCarrierQuantity);
 
-							double currentInputCarrierCost = Commons
-									.aggregateCost(Commons.readProfile(inputCarrier.getCost(),
-											new Horizon(timestamp.getTime(), timestamp.getSimulationStepLength())));
+							double currentInputCarrierCost = Commons.readCost(inputCarrier.getCost(),
+									new Horizon(timestamp.getTime(), timestamp.getSimulationStepLength()));
 							if (!Double.isNaN(currentInputCarrierCost)) {
 								double inputCarrierCost = inputCarrierQuantity * currentInputCarrierCost;
 								builder.value("cost", inputCarrierCost);
@@ -526,9 +529,8 @@ public class AbstractBasicConversionNode extends Node {
 						builder.value("emission", emission);
 						builder.value("fuelConsumption", inputCarrierQuantity);
 
-						double currentInputCarrierCost = Commons
-								.aggregateCost(Commons.readProfile(inputCarrier.getCost(),
-										new Horizon(timestamp.getTime(), timestamp.getSimulationStepLength())));
+						double currentInputCarrierCost = Commons.readCost(inputCarrier.getCost(),
+								new Horizon(timestamp.getTime(), timestamp.getSimulationStepLength()));
 						if (!Double.isNaN(currentInputCarrierCost)) {
 							double inputCarrierCost = inputCarrierQuantity * currentInputCarrierCost;
 							builder.value("cost", inputCarrierCost);
@@ -37,6 +37,7 @@ import lombok.Builder;
 import lombok.Data;
 import lombok.EqualsAndHashCode;
 import lombok.extern.slf4j.Slf4j;
+import nl.tno.essim.EsdlSource;
 import nl.tno.essim.commons.BidFunction;
 import nl.tno.essim.commons.Commons;
 import nl.tno.essim.commons.Commons.Role;
@@ -62,9 +63,10 @@ public class CoGenerationNode extends AbstractBasicConversionNode {
 
 	@Builder(builderMethodName = "coGenerationNodeBuilder")
 	public CoGenerationNode(String simulationId, String nodeId, String address, String networkId, EnergyAsset asset,
-			String esdlString, int directionFactor, Role role, BidFunction demandFunction, double energy, double cost,
-			Node parent, Carrier carrier, List<Node> children, long timeStep, Horizon now, Port connectedPort) {
-		super(simulationId, nodeId, address, networkId, asset, esdlString, directionFactor, role, demandFunction,
+			EsdlSource esdlSource, int directionFactor, Role role, BidFunction demandFunction, double energy,
+			double cost, Node parent, Carrier carrier, List<Node> children, long timeStep, Horizon now,
+			Port connectedPort) {
+		super(simulationId, nodeId, address, networkId, asset, esdlSource, directionFactor, role, demandFunction,
 				energy, cost, parent, carrier, children, timeStep, now, connectedPort);
 		coGenerationPlant = (CoGeneration) asset;
 		controlStrategy = coGenerationPlant.getControlStrategy();
@@ -100,6 +102,11 @@ public class CoGenerationNode extends AbstractBasicConversionNode {
 
 	}
 
+	@Override
+	public boolean isPrecomputable() {
+		return false;
+	}
+
 	@Override
 	public void createBidCurve(long timeStep, Horizon now, double minPrice, double maxPrice) {
 
@@ -130,12 +137,12 @@ public class CoGenerationNode extends AbstractBasicConversionNode {
 						}
 						double energyOutput = timeStep * power * heatFactor;
 						if (marginalCostProfile != null) {
-							Double aggregateCost = Commons.aggregateCost(Commons.readProfile(marginalCostProfile, now));
+							Double aggregateCost = Commons.readCost(marginalCostProfile, now);
 							if(Double.isNaN(aggregateCost)) {
 								aggregateCost = DEFAULT_MARGINAL_COST;
 							}
 						} else if (costProfile != null) {
-							Double aggregateCost = Commons.aggregateCost(Commons.readProfile(costProfile, now))/ costFactor;
+							Double aggregateCost = Commons.readCost(costProfile, now)/ costFactor;
 							if(Double.isNaN(aggregateCost)) {
 								aggregateCost = DEFAULT_MARGINAL_COST;
 							}
@@ -154,10 +161,9 @@ public class CoGenerationNode extends AbstractBasicConversionNode {
 
 							if (convProfile != null) {
 								if (Commons.isPowerProfile(convProfile)) {
-									energyOutput = timeStep
-											* Commons.aggregatePower(Commons.readProfile(convProfile, now));
+									energyOutput = timeStep * Commons.readPower(convProfile, now);
 								} else if (Commons.isEnergyProfile(convProfile)) {
-									energyOutput = Commons.aggregateEnergy(Commons.readProfile(convProfile, now));
+									energyOutput = Commons.readEnergy(convProfile, now);
 								} else {
 									throw new IllegalStateException(
 											"Profile in the outPort of " + coGenName + " is neither Power nor Energy!");
@@ -198,9 +204,9 @@ public class CoGenerationNode extends AbstractBasicConversionNode {
 
 						if (convProfile != null) {
 							if (Commons.isPowerProfile(convProfile)) {
-								energyOutput = timeStep * Commons.aggregatePower(Commons.readProfile(convProfile, now));
+								energyOutput = timeStep * Commons.readPower(convProfile, now);
 							} else if (Commons.isEnergyProfile(convProfile)) {
-								energyOutput = Commons.aggregateEnergy(Commons.readProfile(convProfile, now));
+								energyOutput = Commons.readEnergy(convProfile, now);
 							} else {
 								throw new IllegalStateException("Profile in the outPort of " + coGenerationPlant
 										+ " is neither Power nor Energy!");
@@ -220,9 +226,9 @@ public class CoGenerationNode extends AbstractBasicConversionNode {
 
 					if (convProfile != null) {
 						if (Commons.isPowerProfile(convProfile)) {
-							energyOutput = timeStep * Commons.aggregatePower(Commons.readProfile(convProfile, now));
+							energyOutput = timeStep * Commons.readPower(convProfile, now);
 						} else if (Commons.isEnergyProfile(convProfile)) {
-							energyOutput = Commons.aggregateEnergy(Commons.readProfile(convProfile, now));
+							energyOutput = Commons.readEnergy(convProfile, now);
 						} else {
 							throw new IllegalStateException("Profile attached to " + coGenerationPlant
 									+ "'s DrivenByProfile strategy is neither Power nor Energy!");
@@ -250,9 +256,9 @@ public class CoGenerationNode extends AbstractBasicConversionNode {
 
 						if (convProfile != null) {
 							if (Commons.isPowerProfile(convProfile)) {
-								energyOutput = timeStep * Commons.aggregatePower(Commons.readProfile(convProfile, now));
+								energyOutput = timeStep * Commons.readPower(convProfile, now);
 							} else if (Commons.isEnergyProfile(convProfile)) {
-								energyOutput = Commons.aggregateEnergy(Commons.readProfile(convProfile, now));
+								energyOutput = Commons.readEnergy(convProfile, now);
 							} else {
 								throw new IllegalStateException("Profile in the inPort of " + coGenerationPlant
 										+ " is neither Power nor Energy!");
@@ -272,12 +278,12 @@ public class CoGenerationNode extends AbstractBasicConversionNode {
 						// = Make Flexible Consumer curve
 						double energyInput = (timeStep * power) / electricalEfficiency;
 						if (marginalCostProfile != null) {
-							Double aggregateCost = Commons.aggregateCost(Commons.readProfile(marginalCostProfile, now));
+							Double aggregateCost = Commons.readCost(marginalCostProfile, now);
 							if(Double.isNaN(aggregateCost)) {
 								aggregateCost = DEFAULT_MARGINAL_COST;
 							}
 						} else if (costProfile != null) {
-							Double aggregateCost = Commons.aggregateCost(Commons.readProfile(costProfile, now))* (electricalEfficiency + heatEfficiency);
+							Double aggregateCost = Commons.readCost(costProfile, now)* (electricalEfficiency + heatEfficiency);
 							if(Double.isNaN(aggregateCost)) {
 								aggregateCost = DEFAULT_MARGINAL_COST;
 							}
@@ -303,9 +309,9 @@ public class CoGenerationNode extends AbstractBasicConversionNode {
 
 					if (convProfile != null) {
 						if (Commons.isPowerProfile(convProfile)) {
-							energyOutput = timeStep * Commons.aggregatePower(Commons.readProfile(convProfile, now));
+							energyOutput = timeStep * Commons.readPower(convProfile, now);
 						} else if (Commons.isEnergyProfile(convProfile)) {
-							energyOutput = Commons.aggregateEnergy(Commons.readProfile(convProfile, now));
+							energyOutput = Commons.readEnergy(convProfile, now);
 						} else {
 							throw new IllegalStateException("Profile attached to " + coGenName
 									+ "'s DrivenByProfile strategy is neither Power nor Energy!");
@@ -377,9 +383,8 @@ public class CoGenerationNode extends AbstractBasicConversionNode {
 								builder.value("emission", emission);
 								builder.value("fuelConsumption", inputCarrierQuantity);
 
-								double currentInputCarrierCost = Commons
-										.aggregateCost(Commons.readProfile(inputCarrier.getCost(),
-												new Horizon(timestamp.getTime(), timestamp.getSimulationStepLength())));
+								double currentInputCarrierCost = Commons.readCost(inputCarrier.getCost(),
+										new Horizon(timestamp.getTime(), timestamp.getSimulationStepLength()));
 								if (!Double.isNaN(currentInputCarrierCost)) {
 									double inputCarrierCost = inputCarrierQuantity * currentInputCarrierCost;
 									builder.value("cost", inputCarrierCost);
@@ -413,9 +418,8 @@ public class CoGenerationNode extends AbstractBasicConversionNode {
 								builder.value("emission", emission);
 								builder.value("fuelConsumption", inputCarrierQuantity);
 
-								double currentInputCarrierCost = Commons
-										.aggregateCost(Commons.readProfile(inputCarrier.getCost(),
-												new Horizon(timestamp.getTime(), timestamp.getSimulationStepLength())));
+								double currentInputCarrierCost = Commons.readCost(inputCarrier.getCost(),
+										new Horizon(timestamp.getTime(), timestamp.getSimulationStepLength()));
 								if (!Double.isNaN(currentInputCarrierCost)) {
 									double inputCarrierCost = inputCarrierQuantity * currentInputCarrierCost;
 									builder.value("cost", inputCarrierCost);
@@ -453,9 +457,8 @@ public class CoGenerationNode extends AbstractBasicConversionNode {
 							builder.value("emission", emission);
 							builder.value("fuelConsumption", inputCarrierQuantity);
 
-							double currentInputCarrierCost = Commons
-									.aggregateCost(Commons.readProfile(inputCarrier.getCost(),
-											new Horizon(timestamp.getTime(), timestamp.getSimulationStepLength())));
+							double currentInputCarrierCost = Commons.readCost(inputCarrier.getCost(),
+									new Horizon(timestamp.getTime(), timestamp.getSimulationStepLength()));
 							if (!Double.isNaN(currentInputCarrierCost)) {
 								double inputCarrierCost = inputCarrierQuantity * currentInputCarrierCost;
 								builder.value("cost", inputCarrierCost);
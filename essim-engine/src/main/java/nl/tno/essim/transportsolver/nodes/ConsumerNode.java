@@ -29,6 +29,7 @@ import lombok.Builder;
 import lombok.Data;
 import lombok.EqualsAndHashCode;
 import lombok.extern.slf4j.Slf4j;
+import nl.tno.essim.EsdlSource;
 import nl.tno.essim.commons.BidFunction;
 import nl.tno.essim.commons.Commons;
 import nl.tno.essim.commons.Commons.Role;
@@ -54,9 +55,10 @@ public class ConsumerNode extends Node {
 
 	@Builder(builderMethodName = "consumerNodeBuilder")
 	public ConsumerNode(String simulationId, String nodeId, String address, String networkId, EnergyAsset asset,
-			String esdlString, int directionFactor, Role role, BidFunction demandFunction, double energy, double cost,
-			Node parent, Carrier carrier, List<Node> children, long timeStep, Horizon now, Port connectedPort) {
-		super(simulationId, nodeId, address, networkId, asset, esdlString, directionFactor, role, demandFunction,
+			EsdlSource esdlSource, int directionFactor, Role role, BidFunction demandFunction, double energy,
+			double cost, Node parent, Carrier carrier, List<Node> children, long timeStep, Horizon now,
+			Port connectedPort) {
+		super(simulationId, nodeId, address, networkId, asset, esdlSource, directionFactor, role, demandFunction,
 				energy, cost, parent, carrier, children, timeStep, now, connectedPort);
 		this.consumer = (Consumer) asset;
 		this.consumerName = consumer.getName() == null ? consumer.getId() : consumer.getName();
@@ -75,36 +77,68 @@ public class ConsumerNode extends Node {
 	}
 
 	@Override
-	public void createBidCurve(long timeStep, Horizon now, double minPrice, double maxPrice) {
-		double energyOutput = Double.NaN;
-		GenericProfile consumerProfile = Commons.getEnergyProfile(inputPort);
+	public boolean isPrecomputable() {
+		return true;
+	}
 
-		// Checks if an asset is operational (accounts for Commissioning and
-		// Decommissioning date)
-		if (!isOperational(now)) {
-			makeInflexibleConsumptionFunction(0);
-			return;
+	@Override
+	public double[] readInflexibleEnergy(long timeStep, List<Horizon> horizon) {
+		GenericProfile consumerProfile = Commons.getEnergyProfile(inputPort);
+		double[] energy = new double[horizon.size()];
+		for (int i = 0; i < energy.length; i++) {
+			Horizon now = horizon.get(i);
+			if (isOperational(now)) {
+				energy[i] = readEnergy(consumerProfile, timeStep, now);
+				if (Double.isNaN(energy[i])) {
+					return null;
+				}
+			}
 		}
+		return energy;
+	}
+
+	private double readEnergy(GenericProfile consumerProfile, long timeStep, Horizon now) {
+		double energyOutput = Double.NaN;
 		if (consumerProfile != null) {
 			if (Commons.isPowerProfile(consumerProfile)) {
-				energyOutput = timeStep * Commons.aggregatePower(Commons.readProfile(consumerProfile, now));
+				energyOutput = timeStep * Commons.readPower(consumerProfile, now);
 			} else if (Commons.isEnergyProfile(consumerProfile)) {
-				energyOutput = Commons.aggregateEnergy(Commons.readProfile(consumerProfile, now));
+				energyOutput = Commons.readEnergy(consumerProfile, now);
 			} else if (Commons.isPercentageProfile(consumerProfile)) {
-				energyOutput = timeStep * Commons.aggregatePower(Commons.readProfile(consumerProfile, inputPort, now));
+				energyOutput = timeStep * Commons.readPower(consumerProfile, inputPort, now);
 			}
 		}
+		return energyOutput;
+	}
+
+	@Override
+	public void createBidCurve(long timeStep, Horizon now, double minPrice, double maxPrice) {
+		GenericProfile consumerProfile = Commons.getEnergyProfile(inputPort);
+
+		// Checks if an asset is operational (accounts for Commissioning and
+		// Decommissioning date)
+		if (!isOperational(now)) {
+			if (!reuseBidCurve(0.0, Double.NaN)) {
+				makeInflexibleConsumptionFunction(0);
+				keepBidCurve(0.0, Double.NaN);
+			}
+			return;
+		}
+		double energyOutput = readEnergy(consumerProfile, timeStep, now);
 		if (!Double.isNaN(energyOutput)) {
-			makeInflexibleConsumptionFunction(energyOutput);
+			if (!reuseBidCurve(energyOutput, Double.NaN)) {
+				makeInflexibleConsumptionFunction(energyOutput);
+				keepBidCurve(energyOutput, Double.NaN);
+			}
 		} else {
 			energyOutput = timeStep * power;
 			if (marginalCostProfile != null) {
-				Double aggregateCost = Commons.aggregateCost(Commons.readProfile(marginalCostProfile, now));
+				Double aggregateCost = Commons.readCost(marginalCostProfile, now);
 				if(Double.isNaN(aggregateCost)) {
 					aggregateCost = DEFAULT_MARGINAL_COST;
 				}
 			} else if (costProfile != null) {
-				Double aggregateCost = Commons.aggregateCost(Commons.readProfile(costProfile, now));
+				Double aggregateCost = Commons.readCost(costProfile, now);
 				if(Double.isNaN(aggregateCost)) {
 					aggregateCost = DEFAULT_MARGINAL_COST;
 				}
@@ -114,7 +148,10 @@ public class ConsumerNode extends Node {
 						DEFAULT_MARGINAL_COST);
 				setCost(DEFAULT_MARGINAL_COST);
 			}
-			makeAdjustableConsumptionFunction(energyOutput);
+			if (!reuseBidCurve(energyOutput, cost)) {
+				makeAdjustableConsumptionFunction(energyOutput);
+				keepBidCurve(energyOutput, cost);
+			}
 		}
 	}
 
@@ -29,6 +29,7 @@ import lombok.Builder;
 import lombok.Data;
 import lombok.EqualsAndHashCode;
 import lombok.extern.slf4j.Slf4j;
+import nl.tno.essim.EsdlSource;
 import nl.tno.essim.commons.BidFunction;
 import nl.tno.essim.commons.Commons;
 import nl.tno.essim.commons.Commons.Role;
@@ -54,9 +55,10 @@ public class CoolingDemandNode extends Node {
 
 	@Builder(builderMethodName = "consumerNodeBuilder")
 	public CoolingDemandNode(String simulationId, String nodeId, String address, String networkId, EnergyAsset asset,
-			String esdlString, int directionFactor, Role role, BidFunction demandFunction, double energy, double cost,
-			Node parent, Carrier carrier, List<Node> children, long timeStep, Horizon now, Port connectedPort) {
-		super(simulationId, nodeId, address, networkId, asset, esdlString, directionFactor, role, demandFunction,
+			EsdlSource esdlSource, int directionFactor, Role role, BidFunction demandFunction, double energy,
+			double cost, Node parent, Carrier carrier, List<Node> children, long timeStep, Horizon now,
+			Port connectedPort) {
+		super(simulationId, nodeId, address, networkId, asset, esdlSource, directionFactor, role, demandFunction,
 				energy, cost, parent, carrier, children, timeStep, now, connectedPort);
 		this.consumer = (CoolingDemand) asset;
 		this.consumerName = consumer.getName() == null ? consumer.getId() : consumer.getName();
@@ -90,9 +92,9 @@ public class CoolingDemandNode extends Node {
 		}
 		if (convProfile != null) {
 			if (Commons.isPowerProfile(convProfile)) {
-				energyOutput = timeStep * Commons.aggregatePower(Commons.readProfile(convProfile, now));
+				energyOutput = timeStep * Commons.readPower(convProfile, now);
 			} else if (Commons.isEnergyProfile(convProfile)) {
-				energyOutput = Commons.aggregateEnergy(Commons.readProfile(convProfile, now));
+				energyOutput = Commons.readEnergy(convProfile, now);
 			}
 		}
 		if (!Double.isNaN(energyOutput)) {
@@ -100,12 +102,12 @@ public class CoolingDemandNode extends Node {
 		} else {
 			energyOutput = timeStep * power;
 			if (marginalCostProfile != null) {
-				Double aggregateCost = Commons.aggregateCost(Commons.readProfile(marginalCostProfile, now));
+				Double aggregateCost = Commons.readCost(marginalCostProfile, now);
 				if(Double.isNaN(aggregateCost)) {
 					aggregateCost = DEFAULT_MARGINAL_COST;
 				}
 			} else if (costProfile != null) {
-				Double aggregateCost = Commons.aggregateCost(Commons.readProfile(costProfile, now));
+				Double aggregateCost = Commons.readCost(costProfile, now);
 				if(Double.isNaN(aggregateCost)) {
 					aggregateCost = DEFAULT_MARGINAL_COST;
 				}
@@ -0,0 +1,76 @@
+/**
+ *  This work is based on original code developed and copyrighted by TNO 2020. 
+ *  Subsequent contributions are licensed to you by the developers of such code and are
+ *  made available to the Project under one or several contributor license agreements.
+ *
+ *  This work is licensed to you under the Apache License, Version 2.0.
+ *  You may obtain a copy of the license at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Contributors:
+ *      TNO         - Initial implementation
+ *  Manager:
+ *      TNO
+ */
+
+package nl.tno.essim.transportsolver.nodes;
+
+import lombok.extern.slf4j.Slf4j;
+import nl.tno.essim.commons.BidFunction;
+
+/**
+ * Optional simplification of aggregated curves (see
+ * {@link BidFunction#simplify(int, double)}). Aggregated curves with more than
+ * CURVE_SIMPLIFY_POINTS points (default 0, which disables it) are reduced to at
+ * most that many points, or fewer when all removed points are within
+ * CURVE_SIMPLIFY_ERROR (default 0.0, in Joules) of the simplified curve.
+ */
+@Slf4j
+public final class CurveSimplifier {
+
+	private static final String CURVE_SIMPLIFY_POINTS = "CURVE_SIMPLIFY_POINTS";
+	private static final String CURVE_SIMPLIFY_ERROR = "CURVE_SIMPLIFY_ERROR";
+	private static final int maxPoints = maxPointsFromEnv();
+	private static final double maxError = maxErrorFromEnv();
+
+	private CurveSimplifier() {
+	}
+
+	private static int maxPointsFromEnv() {
+		int points = 0;
+		String pointsString = System.getenv(CURVE_SIMPLIFY_POINTS);
+		if (pointsString != null) {
+			try {
+				points = Integer.parseInt(pointsString.trim());
+			} catch (NumberFormatException e) {
+				log.warn("Invalid value {} for {}. Defaulting to {}", pointsString, CURVE_SIMPLIFY_POINTS, points);
+			}
+		}
+		return points;
+	}
+
+	private static double maxErrorFromEnv() {
+		double error = 0.0;
+		String errorString = System.getenv(CURVE_SIMPLIFY_ERROR);
+		if (errorString != null) {
+			try {
+				error = Math.max(0.0, Double.parseDouble(errorString.trim()));
+			} catch (NumberFormatException e) {
+				log.warn("Invalid value {} for {}. Defaulting to {}", errorString, CURVE_SIMPLIFY_ERROR, error);
+			}
+		}
+		return error;
+	}
+
+	public static boolean isEnabled() {
+		return maxPoints > 0;
+	}
+
+	/**
+	 * @return the largest energy error introduced in the curve
+	 */
+	public static double simplify(BidFunction curve) {
+		return curve.simplify(maxPoints, maxError);
+	}
+}
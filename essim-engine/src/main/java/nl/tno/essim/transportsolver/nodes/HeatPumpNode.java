@@ -35,6 +35,7 @@ import lombok.Builder;
 import lombok.Data;
 import lombok.EqualsAndHashCode;
 import lombok.extern.slf4j.Slf4j;
+import nl.tno.essim.EsdlSource;
 import nl.tno.essim.commons.BidFunction;
 import nl.tno.essim.commons.Commons;
 import nl.tno.essim.commons.Commons.Role;
@@ -57,9 +58,10 @@ public class HeatPumpNode extends AbstractBasicConversionNode {
 
 	@Builder(builderMethodName = "heatPumpNodeBuilder")
 	public HeatPumpNode(String simulationId, String nodeId, String address, String networkId, EnergyAsset asset,
-			String esdlString, int directionFactor, Role role, BidFunction demandFunction, double energy, double cost,
-			Node parent, Carrier carrier, List<Node> children, long timeStep, Horizon now, Port connectedPort) {
-		super(simulationId, nodeId, address, networkId, asset, esdlString, directionFactor, role, demandFunction,
+			EsdlSource esdlSource, int directionFactor, Role role, BidFunction demandFunction, double energy,
+			double cost, Node parent, Carrier carrier, List<Node> children, long timeStep, Horizon now,
+			Port connectedPort) {
+		super(simulationId, nodeId, address, networkId, asset, esdlSource, directionFactor, role, demandFunction,
 				energy, cost, parent, carrier, children, timeStep, now, connectedPort);
 		this.heatPump = (HeatPump) asset;
 		this.hpName = heatPump.getName() == null ? heatPump.getId() : heatPump.getName();
@@ -84,6 +86,11 @@ public class HeatPumpNode extends AbstractBasicConversionNode {
 		}
 	}
 
+	@Override
+	public boolean isPrecomputable() {
+		return false;
+	}
+
 	@Override
 	public void createBidCurve(long timeStep, Horizon now, double minPrice, double maxPrice) {
 
@@ -105,12 +112,12 @@ public class HeatPumpNode extends AbstractBasicConversionNode {
 					// = Make Flexible Producer curve
 					double energyOutput = timeStep * power;
 					if (marginalCostProfile != null) {
-						Double aggregateCost = Commons.aggregateCost(Commons.readProfile(marginalCostProfile, now));
+						Double aggregateCost = Commons.readCost(marginalCostProfile, now);
 						if(Double.isNaN(aggregateCost)) {
 							aggregateCost = DEFAULT_MARGINAL_COST;
 						}
 					} else if (costProfile != null) {
-						Double aggregateCost = Commons.aggregateCost(Commons.readProfile(costProfile, now)) / cop;
+						Double aggregateCost = Commons.readCost(costProfile, now) / cop;
 						if (Double.isNaN(aggregateCost)) {
 							aggregateCost = DEFAULT_MARGINAL_COST;
 						}
@@ -150,9 +157,9 @@ public class HeatPumpNode extends AbstractBasicConversionNode {
 
 					if (convProfile != null) {
 						if (Commons.isPowerProfile(convProfile)) {
-							energyOutput = timeStep * Commons.aggregatePower(Commons.readProfile(convProfile, now));
+							energyOutput = timeStep * Commons.readPower(convProfile, now);
 						} else if (Commons.isEnergyProfile(convProfile)) {
-							energyOutput = Commons.aggregateEnergy(Commons.readProfile(convProfile, now));
+							energyOutput = Commons.readEnergy(convProfile, now);
 						} else {
 							throw new IllegalStateException(
 									"Profile in the outPort of " + hpName + " is neither Power nor Energy!");
@@ -181,9 +188,9 @@ public class HeatPumpNode extends AbstractBasicConversionNode {
 
 					if (convProfile != null) {
 						if (Commons.isPowerProfile(convProfile)) {
-							energyOutput = timeStep * Commons.aggregatePower(Commons.readProfile(convProfile, now));
+							energyOutput = timeStep * Commons.readPower(convProfile, now);
 						} else if (Commons.isEnergyProfile(convProfile)) {
-							energyOutput = Commons.aggregateEnergy(Commons.readProfile(convProfile, now));
+							energyOutput = Commons.readEnergy(convProfile, now);
 						} else {
 							throw new IllegalStateException(
 									"Profile in the outPort of " + hpName + " is neither Power nor Energy!");
@@ -213,9 +220,9 @@ public class HeatPumpNode extends AbstractBasicConversionNode {
 
 				if (convProfile != null) {
 					if (Commons.isPowerProfile(convProfile)) {
-						energyOutput = timeStep * Commons.aggregatePower(Commons.readProfile(convProfile, now));
+						energyOutput = timeStep * Commons.readPower(convProfile, now);
 					} else if (Commons.isEnergyProfile(convProfile)) {
-						energyOutput = Commons.aggregateEnergy(Commons.readProfile(convProfile, now));
+						energyOutput = Commons.readEnergy(convProfile, now);
 					} else {
 						throw new IllegalStateException(
 								"Profile in the outPort of " + hpName + " is neither Power nor Energy!");
@@ -246,9 +253,9 @@ public class HeatPumpNode extends AbstractBasicConversionNode {
 					}
 					if (profile != null) {
 						if (Commons.isPowerProfile(profile)) {
-							energyInput = timeStep * Commons.aggregatePower(Commons.readProfile(profile, now));
+							energyInput = timeStep * Commons.readPower(profile, now);
 						} else if (Commons.isEnergyProfile(profile)) {
-							energyInput = Commons.aggregateEnergy(Commons.readProfile(profile, now));
+							energyInput = Commons.readEnergy(profile, now);
 						} else {
 							throw new IllegalStateException(
 									"Profile in the inPort of " + hpName + " is neither Power nor Energy!");
@@ -272,9 +279,9 @@ public class HeatPumpNode extends AbstractBasicConversionNode {
 					}
 					if (profile != null) {
 						if (Commons.isPowerProfile(profile)) {
-							energyInput = timeStep * Commons.aggregatePower(Commons.readProfile(profile, now));
+							energyInput = timeStep * Commons.readPower(profile, now);
 						} else if (Commons.isEnergyProfile(profile)) {
-							energyInput = Commons.aggregateEnergy(Commons.readProfile(profile, now));
+							energyInput = Commons.readEnergy(profile, now);
 						} else {
 							throw new IllegalStateException(
 									"Profile in the inPort of " + hpName + " is neither Power nor Energy!");
@@ -300,12 +307,12 @@ public class HeatPumpNode extends AbstractBasicConversionNode {
 
 					double energyInput = timeStep * power * inputFactor;
 					if (marginalCostProfile != null) {
-						Double aggregateCost = Commons.aggregateCost(Commons.readProfile(marginalCostProfile, now));
+						Double aggregateCost = Commons.readCost(marginalCostProfile, now);
 						if(Double.isNaN(aggregateCost)) {
 							aggregateCost = DEFAULT_MARGINAL_COST;
 						}
 					} else if (costProfile != null) {
-						Double aggregateCost = Commons.aggregateCost(Commons.readProfile(costProfile, now)) * cop;
+						Double aggregateCost = Commons.readCost(costProfile, now) * cop;
 						if (Double.isNaN(aggregateCost)) {
 							aggregateCost = DEFAULT_MARGINAL_COST;
 						}
@@ -329,9 +336,9 @@ public class HeatPumpNode extends AbstractBasicConversionNode {
 					}
 					if (profile != null) {
 						if (Commons.isPowerProfile(profile)) {
-							energyInput = timeStep * Commons.aggregatePower(Commons.readProfile(profile, now));
+							energyInput = timeStep * Commons.readPower(profile, now);
 						} else if (Commons.isEnergyProfile(profile)) {
-							energyInput = Commons.aggregateEnergy(Commons.readProfile(profile, now));
+							energyInput = Commons.readEnergy(profile, now);
 						} else {
 							throw new IllegalStateException(
 									"Profile in the inPort of " + hpName + " is neither Power nor Energy!");
@@ -356,9 +363,9 @@ public class HeatPumpNode extends AbstractBasicConversionNode {
 
 				if (profile != null) {
 					if (Commons.isPowerProfile(profile)) {
-						energyOutput = timeStep * Commons.aggregatePower(Commons.readProfile(profile, now));
+						energyOutput = timeStep * Commons.readPower(profile, now);
 					} else if (Commons.isEnergyProfile(profile)) {
-						energyOutput = Commons.aggregateEnergy(Commons.readProfile(profile, now));
+						energyOutput = Commons.readEnergy(profile, now);
 					} else {
 						throw new IllegalStateException(
 								"Profile in the inPort of " + hpName + " is neither Power nor Energy!");
@@ -415,9 +422,8 @@ public class HeatPumpNode extends AbstractBasicConversionNode {
 							builder.value("emission", emission);
 							builder.value("fuelConsumption", inputCarrierQuantity);
 
-							double currentInputCarrierCost = Commons
-									.aggregateCost(Commons.readProfile(carrier.getCost(),
-											new Horizon(timestamp.getTime(), timestamp.getSimulationStepLength())));
+							double currentInputCarrierCost = Commons.readCost(carrier.getCost(),
+									new Horizon(timestamp.getTime(), timestamp.getSimulationStepLength()));
 							if (!Double.isNaN(currentInputCarrierCost)) {
 								double inputCarrierCost = inputCarrierQuantity * currentInputCarrierCost;
 								builder.value("cost", inputCarrierCost);
@@ -471,8 +477,8 @@ public class HeatPumpNode extends AbstractBasicConversionNode {
 						builder.value("emission", emission);
 						builder.value("fuelConsumption", inputCarrierQuantity);
 
-						double currentInputCarrierCost = Commons.aggregateCost(Commons.readProfile(carrier.getCost(),
-								new Horizon(timestamp.getTime(), timestamp.getSimulationStepLength())));
+						double currentInputCarrierCost = Commons.readCost(carrier.getCost(),
+								new Horizon(timestamp.getTime(), timestamp.getSimulationStepLength()));
 						if (!Double.isNaN(currentInputCarrierCost)) {
 							double inputCarrierCost = inputCarrierQuantity * currentInputCarrierCost;
 							builder.value("cost", inputCarrierCost);
@@ -512,9 +518,8 @@ public class HeatPumpNode extends AbstractBasicConversionNode {
 								builder.value("emission", emission);
 								builder.value("fuelConsumption", inputCarrierQuantity);
 
-								double currentInputCarrierCost = Commons
-										.aggregateCost(Commons.readProfile(carrier.getCost(),
-												new Horizon(timestamp.getTime(), timestamp.getSimulationStepLength())));
+								double currentInputCarrierCost = Commons.readCost(carrier.getCost(),
+										new Horizon(timestamp.getTime(), timestamp.getSimulationStepLength()));
 								if (!Double.isNaN(currentInputCarrierCost)) {
 									double inputCarrierCost = inputCarrierQuantity * currentInputCarrierCost;
 									builder.value("cost", inputCarrierCost);
@@ -566,9 +571,8 @@ public class HeatPumpNode extends AbstractBasicConversionNode {
 								builder.value("emission", emission);
 								builder.value("fuelConsumption", inputCarrierQuantity);
 
-								double currentInputCarrierCost = Commons
-										.aggregateCost(Commons.readProfile(carrier.getCost(),
-												new Horizon(timestamp.getTime(), timestamp.getSimulationStepLength())));
+								double currentInputCarrierCost = Commons.readCost(carrier.getCost(),
+										new Horizon(timestamp.getTime(), timestamp.getSimulationStepLength()));
 								if (!Double.isNaN(currentInputCarrierCost)) {
 									double inputCarrierCost = inputCarrierQuantity * currentInputCarrierCost;
 									builder.value("cost", inputCarrierCost);
@@ -616,9 +620,8 @@ public class HeatPumpNode extends AbstractBasicConversionNode {
 							builder.value("emission", emission);
 							builder.value("fuelConsumption", inputCarrierQuantity);
 
-							double currentInputCarrierCost = Commons
-									.aggregateCost(Commons.readProfile(carrier.getCost(),
-											new Horizon(timestamp.getTime(), timestamp.getSimulationStepLength())));
+							double currentInputCarrierCost = Commons.readCost(carrier.getCost(),
+									new Horizon(timestamp.getTime(), timestamp.getSimulationStepLength()));
 							if (!Double.isNaN(currentInputCarrierCost)) {
 								double inputCarrierCost = inputCarrierQuantity * currentInputCarrierCost;
 								builder.value("cost", inputCarrierCost);
@@ -37,6 +37,7 @@ import lombok.Builder;
 import lombok.Data;
 import lombok.EqualsAndHashCode;
 import lombok.extern.slf4j.Slf4j;
+import nl.tno.essim.EsdlSource;
 import nl.tno.essim.commons.BidFunction;
 import nl.tno.essim.commons.Commons;
 import nl.tno.essim.commons.Commons.Role;
@@ -68,9 +69,10 @@ public class HybridHeatpumpNode extends Node {
 
 	@Builder(builderMethodName = "hybridHeatpumpNodeBuilder")
 	public HybridHeatpumpNode(String simulationId, String nodeId, String address, String networkId, EnergyAsset asset,
-			String esdlString, int directionFactor, Role role, BidFunction demandFunction, double energy, double cost,
-			Node parent, Carrier carrier, List<Node> children, long timeStep, Horizon now, Port connectedPort) {
-		super(simulationId, nodeId, address, networkId, asset, esdlString, directionFactor, role, demandFunction,
+			EsdlSource esdlSource, int directionFactor, Role role, BidFunction demandFunction, double energy,
+			double cost, Node parent, Carrier carrier, List<Node> children, long timeStep, Horizon now,
+			Port connectedPort) {
+		super(simulationId, nodeId, address, networkId, asset, esdlSource, directionFactor, role, demandFunction,
 				energy, cost, parent, carrier, children, timeStep, now, connectedPort);
 		this.timeStep = timeStep;
 		this.hybridHeatPump = (HybridHeatpump) asset;
@@ -156,7 +158,7 @@ public class HybridHeatpumpNode extends Node {
 				double totalPossibleThermalOutput = maxElecPowerThermal + maxGasPowerThermal;
 				double energyOutput = timeStep * totalPossibleThermalOutput;
 				if (marginalCostProfile != null) {
-					Double aggregateCost = Commons.aggregateCost(Commons.readProfile(marginalCostProfile, now));
+					Double aggregateCost = Commons.readCost(marginalCostProfile, now);
 					if (Double.isNaN(aggregateCost)) {
 						aggregateCost = DEFAULT_MARGINAL_COST;
 					}
@@ -173,7 +175,7 @@ public class HybridHeatpumpNode extends Node {
 				// At least one of the input ports was already solved, so read connected port
 				// and make an inflexible production curve
 				GenericProfile energyOutputProfile = Commons.getEnergyProfile(connectedPort);
-				double energyOutput = Commons.aggregateEnergy(Commons.readProfile(energyOutputProfile, now));
+				double energyOutput = Commons.readEnergy(energyOutputProfile, now);
 				makeInflexibleProductionFunction(energyOutput);
 
 			} else if (controlStrategy instanceof DrivenByProfile) {
@@ -190,9 +192,9 @@ public class HybridHeatpumpNode extends Node {
 					double energyOutput = 0.0;
 					if (drivingProfile != null) {
 						if (Commons.isPowerProfile(drivingProfile)) {
-							profileValue = timeStep * Commons.aggregatePower(Commons.readProfile(drivingProfile, now));
+							profileValue = timeStep * Commons.readPower(drivingProfile, now);
 						} else if (Commons.isEnergyProfile(drivingProfile)) {
-							profileValue = Commons.aggregateEnergy(Commons.readProfile(drivingProfile, now));
+							profileValue = Commons.readEnergy(drivingProfile, now);
 						} else {
 							throw new IllegalStateException("Profile in the DrivenByProfile control strategy of HHP "
 									+ hhpName + " is neither Power nor Energy!");
@@ -222,7 +224,7 @@ public class HybridHeatpumpNode extends Node {
 				// Heat network was already solved at this point, so read connected port and
 				// make an inflexible consumption curve
 				GenericProfile energyInputProfile = Commons.getEnergyProfile(connectedPort);
-				double energyInput = Commons.aggregateEnergy(Commons.readProfile(energyInputProfile, now));
+				double energyInput = Commons.readEnergy(energyInputProfile, now);
 				makeInflexibleConsumptionFunction(energyInput);
 
 			} else if (controlStrategy instanceof DrivenBySupply) {
@@ -233,7 +235,7 @@ public class HybridHeatpumpNode extends Node {
 				if (connectedPort.equals(eInPort)) {
 					energyInput = maxElecPowerThermal / cop;
 					if (elecCostProfile != null) {
-						carrierCost = Commons.aggregateCost(Commons.readProfile(elecCostProfile, now));
+						carrierCost = Commons.readCost(elecCostProfile, now);
 						if (Double.isNaN(carrierCost)) {
 							carrierCost = DEFAULT_MARGINAL_COST;
 						}
@@ -241,7 +243,7 @@ public class HybridHeatpumpNode extends Node {
 				} else if (connectedPort.equals(gInPort)) {
 					energyInput = maxGasPowerThermal / efficiency;
 					if (gasCostProfile != null) {
-						carrierCost = Commons.aggregateCost(Commons.readProfile(gasCostProfile, now));
+						carrierCost = Commons.readCost(gasCostProfile, now);
 						if (Double.isNaN(carrierCost)) {
 							carrierCost = DEFAULT_MARGINAL_COST;
 						}
@@ -251,7 +253,7 @@ public class HybridHeatpumpNode extends Node {
 							+ " cannot be a consumer in this network -> " + networkId + "!");
 				}
 				if (marginalCostProfile != null) {
-					Double aggregateCost = Commons.aggregateCost(Commons.readProfile(marginalCostProfile, now));
+					Double aggregateCost = Commons.readCost(marginalCostProfile, now);
 					if(Double.isNaN(aggregateCost)) {
 						aggregateCost = DEFAULT_MARGINAL_COST;
 					}
@@ -273,9 +275,9 @@ public class HybridHeatpumpNode extends Node {
 				double profileValue = 0.0;
 				if (drivingProfile != null) {
 					if (Commons.isPowerProfile(drivingProfile)) {
-						profileValue = timeStep * Commons.aggregatePower(Commons.readProfile(drivingProfile, now));
+						profileValue = timeStep * Commons.readPower(drivingProfile, now);
 					} else if (Commons.isEnergyProfile(drivingProfile)) {
-						profileValue = Commons.aggregateEnergy(Commons.readProfile(drivingProfile, now));
+						profileValue = Commons.readEnergy(drivingProfile, now);
 					} else {
 						throw new IllegalStateException("Profile in the DrivenByProfile control strategy of HHP "
 								+ hhpName + " is neither Power nor Energy!");
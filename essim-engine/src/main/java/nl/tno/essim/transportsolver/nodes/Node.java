@@ -17,7 +17,9 @@
 package nl.tno.essim.transportsolver.nodes;
 
 import java.time.LocalDateTime;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.IdentityHashMap;
 import java.util.List;
 
 import org.json.JSONArray;
@@ -31,10 +33,13 @@ import esdl.EnergyAsset;
 import esdl.Port;
 import esdl.Sector;
 import esdl.Transport;
-import esdl.impl.ItemImpl;
+import lombok.AccessLevel;
 import lombok.Builder;
 import lombok.Data;
+import lombok.Getter;
+import lombok.Setter;
 import lombok.extern.slf4j.Slf4j;
+import nl.tno.essim.EsdlSource;
 import nl.tno.essim.commons.BidFunction;
 import nl.tno.essim.commons.Commons.Role;
 import nl.tno.essim.model.NodeConfiguration;
@@ -42,8 +47,8 @@ import nl.tno.essim.observation.Observation;
 import nl.tno.essim.observation.Observation.ObservationBuilder;
 import nl.tno.essim.time.EssimTime;
 import nl.tno.essim.time.Horizon;
+import nl.tno.essim.transportsolver.InflexibleHorizon;
 
-@Builder
 @Data
 @Slf4j
 public abstract class Node implements INode {
@@ -57,7 +62,7 @@ public abstract class Node implements INode {
 	protected String address;
 	protected String networkId;
 	protected EnergyAsset asset;
-	protected String esdlString;
+	protected EsdlSource esdlSource;
 	protected int directionFactor;
 	protected Role role;
 	protected BidFunction demandFunction;
@@ -69,11 +74,48 @@ public abstract class Node implements INode {
 	protected long timeStep;
 	protected Horizon now;
 	protected Port connectedPort;
+	// Energy and cost the bid curve was made from, if it can be kept as long as
+	// they stay the same (see reuseBidCurve)
+	@Getter(AccessLevel.NONE)
+	@Setter(AccessLevel.NONE)
+	private boolean reusable;
+	@Getter(AccessLevel.NONE)
+	@Setter(AccessLevel.NONE)
+	private double reusableEnergy;
+	@Getter(AccessLevel.NONE)
+	@Setter(AccessLevel.NONE)
+	private double reusableCost;
+	/**
+	 * Whether the last {@link #createBidCurve} kept the curve of the step before,
+	 * as its inputs did not change
+	 */
+	@Setter(AccessLevel.NONE)
+	private boolean bidCurveReused;
+
+	@Builder
+	Node(String simulationId, String nodeId, String address, String networkId, EnergyAsset asset, EsdlSource esdlSource,
+			int directionFactor, Role role, BidFunction demandFunction, double energy, double cost, Node parent,
+			Carrier carrier, List<Node> children, long timeStep, Horizon now, Port connectedPort) {
+		this.simulationId = simulationId;
+		this.nodeId = nodeId;
+		this.address = address;
+		this.networkId = networkId;
+		this.asset = asset;
+		this.esdlSource = esdlSource;
+		this.directionFactor = directionFactor;
+		this.role = role;
+		this.demandFunction = demandFunction;
+		this.energy = energy;
+		this.cost = cost;
+		this.parent = parent;
+		this.carrier = carrier;
+		this.children = children;
+		this.timeStep = timeStep;
+		this.now = now;
+		this.connectedPort = connectedPort;
+	}
 
 	public static class NodeBuilder {
-		private static final String NODE = "Node";
-		private static final String NODE_PACKAGE_NAME = Node.class.getPackage().getName();
-
 		private NodeConfiguration config;
 
 		public NodeBuilder asset(EnergyAsset asset) {
@@ -90,39 +132,26 @@ public abstract class Node implements INode {
 		public Node build() throws Exception {
 			Node node = null;
 			if (this.config != null) {
-				node = new RemoteLogicNode(simulationId, nodeId, address, networkId, asset, esdlString, directionFactor,
+				node = new RemoteLogicNode(simulationId, nodeId, address, networkId, asset, esdlSource, directionFactor,
 						role, demandFunction, energy, cost, parent, carrier, children, timeStep, now, config,
 						connectedPort);
 			} else if (asset != null) {
-				Class<?> assetNodeClass = null;
-				classSearch : for (Class<?> clazz = asset.getClass(); !clazz.equals(ItemImpl.class); clazz = clazz
-						.getSuperclass()) {
-					for (Class<?> interfaze : clazz.getInterfaces()) {
-						String nodeName = NODE_PACKAGE_NAME + "." + interfaze.getSimpleName() + NODE;
-						try {
-							assetNodeClass = Class.forName(nodeName);
-						} catch (ClassNotFoundException e) {
-							continue;
-						}
-						break classSearch;
-					}
-				}
+				NodeFactory.NodeType nodeType = NodeFactory.forAsset(asset);
 
-				log.debug("Asset " + asset.getClass().getInterfaces()[0].getSimpleName() + " is implemented as : "
-						+ assetNodeClass.getSimpleName());
+				if (log.isDebugEnabled()) {
+					log.debug("Asset {} is implemented as : {}", asset.getClass().getInterfaces()[0].getSimpleName(),
+							nodeType == null ? null : nodeType.getNodeClass().getSimpleName());
+				}
 
-				if (assetNodeClass != null) {
+				if (nodeType != null) {
 					try {
-						node = (Node) assetNodeClass
-								.getConstructor(String.class, String.class, String.class, String.class,
-										EnergyAsset.class, String.class, int.class, Role.class, BidFunction.class,
-										double.class, double.class, Node.class, Carrier.class, List.class, long.class,
-										Horizon.class, Port.class)
-								.newInstance(simulationId, nodeId, address, networkId, asset, esdlString,
-										directionFactor, role, demandFunction, energy, cost, parent, carrier, children,
-										timeStep, now, connectedPort);
+						node = nodeType.getConstructor().create(simulationId, nodeId, address, networkId, asset,
+								esdlSource, directionFactor, role, demandFunction, energy, cost, parent, carrier,
+								children, timeStep, now, connectedPort);
 					} catch (Exception e) {
-						e.printStackTrace();
+						log.error("Could not create a {} for asset {}: {}", nodeType.getNodeClass().getSimpleName(),
+								asset.getId(), e.getMessage(), e);
+						throw e;
 					}
 				}
 			}
@@ -178,13 +207,50 @@ public abstract class Node implements INode {
 		children.add(n);
 	}
 
-	public Node findNodeById(String id) {
-		if (nodeId.equals(id)) {
-			return this;
+	/**
+	 * Builds an independent copy of this node and its subtree, sharing the same
+	 * assets but none of the per-step state (curves, allocations).
+	 */
+	public Node copy(Node newParent) throws Exception {
+		IdentityHashMap<Node, Node> copies = new IdentityHashMap<Node, Node>();
+		for (Node node : subtree()) {
+			Node parentCopy = node == this ? newParent : copies.get(node.parent);
+			Node copy = Node.builder().nodeId(node.nodeId).simulationId(node.simulationId).asset(node.asset)
+					.esdlSource(node.esdlSource).role(node.role).directionFactor(node.directionFactor)
+					.parent(parentCopy).networkId(node.networkId).carrier(node.carrier)
+					.connectedPort(node.connectedPort).build();
+			if (node != this) {
+				parentCopy.addChild(copy);
+			}
+			copies.put(node, copy);
 		}
-		if (children != null) {
-			for (Node child : children) {
-				child.findNodeById(id);
+		return copies.get(this);
+	}
+
+	/**
+	 * @return the nodes of this subtree in pre-order, every node before its
+	 *         children; found without recursion, so deep trees can be walked
+	 */
+	public List<Node> subtree() {
+		List<Node> nodes = new ArrayList<Node>();
+		ArrayDeque<Node> stack = new ArrayDeque<Node>();
+		stack.push(this);
+		while (!stack.isEmpty()) {
+			Node node = stack.pop();
+			nodes.add(node);
+			if (node.children != null) {
+				for (int i = node.children.size() - 1; i >= 0; i--) {
+					stack.push(node.children.get(i));
+				}
+			}
+		}
+		return nodes;
+	}
+
+	public Node findNodeById(String id) {
+		for (Node node : subtree()) {
+			if (node.nodeId.equals(id)) {
+				return node;
 			}
 		}
 
@@ -192,131 +258,151 @@ public abstract class Node implements INode {
 	}
 
 	public void findNodesByAssetType(Class<?> clazz, List<Node> nodeList) {
-		if (clazz.isInstance(asset)) {
-			nodeList.add(this);
-		}
-		if (children != null) {
-			for (Node child : children) {
-				child.findNodesByAssetType(clazz, nodeList);
+		for (Node node : subtree()) {
+			if (clazz.isInstance(node.asset)) {
+				nodeList.add(node);
 			}
 		}
 	}
 
 	public void findDeviceNodes(List<Node> nodeList) {
-		if (!(asset instanceof Transport)) {
-			nodeList.add(this);
-		}
-		if (children != null) {
-			for (Node child : children) {
-				child.findDeviceNodes(nodeList);
+		for (Node node : subtree()) {
+			if (!(node.asset instanceof Transport)) {
+				nodeList.add(node);
 			}
 		}
 	}
 
-	public BidFunction aggregateDemandFunction() {
-		if (children != null) {
-			BidFunction aggregatedFunction = new BidFunction();
-			for (Node child : children) {
-				BidFunction nodeFunction = child.aggregateDemandFunction();
-				aggregatedFunction = sumCurves(nodeFunction, aggregatedFunction);
+	/**
+	 * Whether the bid curve of this node only depends on static profiles, so that
+	 * it can be created for the whole simulation horizon beforehand (see
+	 * {@link InflexibleHorizon}).
+	 */
+	public boolean isPrecomputable() {
+		return false;
+	}
+
+	/**
+	 * Reads the energy of a precomputable node for every step of the horizon
+	 * straight from its profiles, without creating its bid curves. The energy is
+	 * that of the flat curve {@link #createBidCurve} makes for the step.
+	 *
+	 * @return the energy per step, or null if the bid curves have to be created
+	 */
+	public double[] readInflexibleEnergy(long timeStep, List<Horizon> horizon) {
+		return null;
+	}
+
+	public void normaliseCosts() {
+		List<Node> nodes = subtree();
+		double min = Double.MAX_VALUE;
+		double max = Double.MIN_VALUE;
+		for (Node node : nodes) {
+			if (node.cost < min)
+				min = node.cost;
+			if (node.cost > max)
+				max = node.cost;
+		}
+		for (Node node : nodes) {
+			node.cost = (node.cost - min) / (max - min);
+		}
+	}
+
+	public JSONObject getJSONString() {
+		// Children are visited in order after their parent, so every child is
+		// appended to the children of its parent in the right place
+		IdentityHashMap<Node, JSONObject> nodeObjs = new IdentityHashMap<Node, JSONObject>();
+		for (Node node : subtree()) {
+			String ctrlStrategy = "";
+			if (node.getAsset() instanceof Conversion) {
+				if (node.getAsset().getControlStrategy() != null) {
+					ctrlStrategy = "["
+							+ node.getAsset().getControlStrategy().getClass().getInterfaces()[0].getSimpleName() + "]";
+				}
 			}
-			if (this.asset instanceof Transport) {
-				setDemandFunction(aggregatedFunction);
+			JSONObject nodeObj = new JSONObject().put("name",
+					node.getNodeId() + "(" + node.getRole() + ")" + ctrlStrategy);
+			if (node.parent != null) {
+				nodeObj.put("parent", node.parent.getNodeId() + "(" + node.parent.getRole() + ")" + ctrlStrategy);
 			} else {
-				aggregatedFunction = sumCurves(getDemandFunction(), aggregatedFunction);
+				nodeObj.put("parent", "null");
 			}
-			return aggregatedFunction;
-		} else {
-			BidFunction demandFunction = getDemandFunction();
-			if (demandFunction == null) {
-				demandFunction = new BidFunction();
-				demandFunction.addPoint(pmin, 0.0);
-				demandFunction.addPoint(pmax, 0.0);
-				setDemandFunction(demandFunction);
+			if (node != this) {
+				JSONObject parentObj = nodeObjs.get(node.parent);
+				if (!parentObj.has("children")) {
+					parentObj.put("children", new JSONArray());
+				}
+				parentObj.getJSONArray("children").put(nodeObj);
 			}
-			return getDemandFunction();
+			nodeObjs.put(node, nodeObj);
 		}
-	}
 
-	public void normaliseCosts() {
-		double[] minMaxCosts = findMinMaxCosts(Double.MAX_VALUE, Double.MIN_VALUE);
-		normaliseCosts(minMaxCosts);
+		return nodeObjs.get(this);
 	}
 
-	private double[] findMinMaxCosts(double min, double max) {
-		if (children != null) {
-			for (Node child : children) {
-				double[] res = child.findMinMaxCosts(min, max);
-				if (res[0] < min)
-					min = res[0];
-				if (res[1] > max)
-					max = res[1];
-			}
-		}
-		if (cost < min)
-			min = cost;
-		if (cost > max)
-			max = cost;
+	public void setDemandFunction(BidFunction demandFunction) {
+		forgetBidCurve();
+		this.demandFunction = demandFunction;
+	}
 
-		return new double[]{min, max};
+	/**
+	 * Normalises the bid curve in place (see {@link BidFunction#normaliseCurve}),
+	 * after which it can not be kept for the next step.
+	 */
+	public void normaliseBidCurve(double marginalCostSum) {
+		forgetBidCurve();
+		demandFunction.normaliseCurve(marginalCostSum);
 	}
 
-	private void normaliseCosts(double[] minMaxCosts) {
-		if (children != null) {
-			for (Node child : children) {
-				child.normaliseCosts(minMaxCosts);
-			}
+	/**
+	 * Keeps the bid curve of the previous step if it was made from the same
+	 * energy and cost (see {@link #keepBidCurve}), instead of making it again.
+	 * The energy is the one the curve sets, negative for production, and the cost
+	 * NaN for inflexible curves.
+	 *
+	 * @return whether the curve was kept
+	 */
+	protected boolean reuseBidCurve(double energy, double cost) {
+		bidCurveReused = reusable && Double.compare(reusableEnergy, energy) == 0
+				&& Double.compare(reusableCost, cost) == 0;
+		if (bidCurveReused) {
+			this.energy = energy;
 		}
-		cost = (cost - minMaxCosts[0]) / (minMaxCosts[1] - minMaxCosts[0]);
+		return bidCurveReused;
 	}
 
-	public double[] allocateAndPropagate(BidFunction summedFunction, List<Observation> observations,
-			EssimTime timestamp) {
-		// Allocate
-		double balancingPrice = findPriceFromCurve(summedFunction, 0.0);
-		double imbalance = findDemandFromCurve(summedFunction, balancingPrice);
-
-		// Propagate
-		propagate(balancingPrice, observations, timestamp);
+	/**
+	 * Remembers the energy and cost the bid curve was just made from, see
+	 * {@link #reuseBidCurve}.
+	 */
+	protected void keepBidCurve(double energy, double cost) {
+		reusable = true;
+		reusableEnergy = energy;
+		reusableCost = cost;
+	}
 
-		double[] vals = {imbalance, balancingPrice};
-		return vals;
+	private void forgetBidCurve() {
+		reusable = false;
+		bidCurveReused = false;
 	}
 
-	public JSONObject getJSONString() {
-		String ctrlStrategy = "";
-		if (getAsset() instanceof Conversion) {
-			if (getAsset().getControlStrategy() != null) {
-				ctrlStrategy = "[" + getAsset().getControlStrategy().getClass().getInterfaces()[0].getSimpleName()
-						+ "]";
-			}
-		}
-		JSONObject nodeObj = new JSONObject().put("name", getNodeId() + "(" + getRole() + ")" + ctrlStrategy);
-		if (parent != null) {
-			nodeObj.put("parent", parent.getNodeId() + "(" + parent.getRole() + ")" + ctrlStrategy);
+	/**
+	 * @return the curve of this node, emptied, to be rebuilt for this step
+	 */
+	private BidFunction newDemandFunction() {
+		forgetBidCurve();
+		if (demandFunction == null) {
+			demandFunction = new BidFunction();
 		} else {
-			nodeObj.put("parent", "null");
-		}
-
-		JSONArray childrenJSON = null;
-		if (children != null && !children.isEmpty()) {
-			childrenJSON = new JSONArray();
-			for (Node node : children) {
-				JSONObject childJSON = node.getJSONString();
-				childrenJSON.put(childJSON);
-			}
+			demandFunction.clear();
 		}
-		if (childrenJSON != null) {
-			nodeObj.put("children", childrenJSON);
-		}
-
-		return nodeObj;
+		return demandFunction;
 	}
 
 	public void makeInflexibleProductionFunction(double emax) {
 		energy = -emax;
 
-		demandFunction = new BidFunction();
+		demandFunction = newDemandFunction();
 		demandFunction.setMarginalCost(pmin);
 		demandFunction.addPoint(pmin, -emax);
 		demandFunction.addPoint(pmax, -emax);
@@ -325,7 +411,7 @@ public abstract class Node implements INode {
 	public void makeInflexibleConsumptionFunction(double emax) {
 		energy = emax;
 
-		demandFunction = new BidFunction();
+		demandFunction = newDemandFunction();
 		demandFunction.setMarginalCost(pmin);
 		demandFunction.addPoint(pmin, emax);
 		demandFunction.addPoint(pmax, emax);
@@ -334,7 +420,7 @@ public abstract class Node implements INode {
 	public void makeAdjustableProductionFunction(double emax) {
 		energy = -emax;
 
-		demandFunction = new BidFunction();
+		demandFunction = newDemandFunction();
 		demandFunction.setMarginalCost(cost);
 		demandFunction.addPoint(pmin, 0.0);
 		demandFunction.addPoint(cost, 0.0);
@@ -344,7 +430,7 @@ public abstract class Node implements INode {
 
 	public void makeAdjustableConsumptionFunction(double emax) {
 		energy = emax;
-		demandFunction = new BidFunction();
+		demandFunction = newDemandFunction();
 		demandFunction.setMarginalCost(cost);
 		demandFunction.addPoint(pmin, energy);
 		if (cost != 0.0) {
@@ -369,7 +455,7 @@ public abstract class Node implements INode {
 			mc2 = Math.min(1.0, 1.05 * cost);
 		}
 
-		demandFunction = new BidFunction();
+		demandFunction = newDemandFunction();
 		demandFunction.setMarginalCost(mc1);
 		demandFunction.addPoint(pmin, ecmax);
 		demandFunction.addPoint(Math.max(pmin, Math.min(mc1, pmax)), ecmax);
@@ -392,13 +478,13 @@ public abstract class Node implements INode {
 		return bldr.toString();
 	}
 
-	private BidFunction sumCurves(BidFunction a, BidFunction b) {
-		return BidFunction.sumCurves(a, b);
-	}
-
-	private void propagate(double price, List<Observation> observations, EssimTime timestamp) {
-		// Allocate
-		energy = findDemandFromCurve(demandFunction, price);
+	/**
+	 * Allocates this node (but not its children) the energy found at the
+	 * balancing price (see FlatTree) and adds its observation.
+	 */
+	public void allocate(double price, double energy, double marginalCost, List<Observation> observations,
+			EssimTime timestamp) {
+		this.energy = energy;
 
 		// Make observation
 		ObservationBuilder builder = Observation.builder()
@@ -412,7 +498,7 @@ public abstract class Node implements INode {
 				.tag("carrierName", carrier.getName() == null ? "UnnamedCarrier" : carrier.getName())
 				.value("allocationEnergy", energy)
 				.value("allocationPower", energy / timestamp.getSimulationStepLength().getSeconds())
-				.value("marginalCost", demandFunction.getMarginalCost());
+				.value("marginalCost", marginalCost);
 
 		// Tag sector if defined
 		String sectorName = "DefaultSector";
@@ -429,22 +515,6 @@ public abstract class Node implements INode {
 
 		// Build observations
 		observations.add(builder.build());
-
-		// Propagate
-		if (children != null) {
-			for (Node child : children) {
-				child.propagate(price, observations, timestamp);
-			}
-		}
-
-	}
-
-	private double findDemandFromCurve(BidFunction demandFunction, double price) {
-		return demandFunction.findDemandFromCurve(price);
-	}
-
-	private double findPriceFromCurve(BidFunction demandFunction, double demand) {
-		return demandFunction.findPriceFromCurve(demand);
 	}
 
 	@Override
@@ -0,0 +1,115 @@
+/**
+ *  This work is based on original code developed and copyrighted by TNO 2020. 
+ *  Subsequent contributions are licensed to you by the developers of such code and are
+ *  made available to the Project under one or several contributor license agreements.
+ *
+ *  This work is licensed to you under the Apache License, Version 2.0.
+ *  You may obtain a copy of the license at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Contributors:
+ *      TNO         - Initial implementation
+ *  Manager:
+ *      TNO
+ */
+
+package nl.tno.essim.transportsolver.nodes;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.eclipse.emf.ecore.EClass;
+
+import esdl.Carrier;
+import esdl.EnergyAsset;
+import esdl.Port;
+import esdl.impl.ItemImpl;
+import nl.tno.essim.EsdlSource;
+import nl.tno.essim.commons.BidFunction;
+import nl.tno.essim.commons.Commons.Role;
+import nl.tno.essim.time.Horizon;
+
+/**
+ * Registry of the node implementations of ESDL assets. An asset is implemented
+ * by the node named after the first ESDL interface in its class hierarchy
+ * that has one (HeatPump by HeatPumpNode, any other Consumer by ConsumerNode,
+ * ...). The node found for an {@link EClass} is remembered, so the class
+ * hierarchy is only searched once per asset type.
+ */
+final class NodeFactory {
+
+	private static final String NODE = "Node";
+	private static final Map<String, NodeType> nodeTypes = new HashMap<String, NodeType>();
+	// Asset types without a node implementation map to NONE
+	private static final NodeType NONE = new NodeType(null, null);
+	private static final ConcurrentHashMap<EClass, NodeType> registry = new ConcurrentHashMap<EClass, NodeType>();
+
+	static {
+		register(AbstractBasicConversionNode.class, AbstractBasicConversionNode::new);
+		register(CoGenerationNode.class, CoGenerationNode::new);
+		register(ConsumerNode.class, ConsumerNode::new);
+		register(CoolingDemandNode.class, CoolingDemandNode::new);
+		register(HeatPumpNode.class, HeatPumpNode::new);
+		register(HybridHeatpumpNode.class, HybridHeatpumpNode::new);
+		register(ProducerNode.class, ProducerNode::new);
+		register(StorageNode.class, StorageNode::new);
+		register(TransportNode.class, TransportNode::new);
+	}
+
+	@FunctionalInterface
+	interface NodeConstructor {
+		Node create(String simulationId, String nodeId, String address, String networkId, EnergyAsset asset,
+				EsdlSource esdlSource, int directionFactor, Role role, BidFunction demandFunction, double energy,
+				double cost, Node parent, Carrier carrier, List<Node> children, long timeStep, Horizon now,
+				Port connectedPort);
+	}
+
+	static class NodeType {
+		private final Class<? extends Node> nodeClass;
+		private final NodeConstructor constructor;
+
+		private NodeType(Class<? extends Node> nodeClass, NodeConstructor constructor) {
+			this.nodeClass = nodeClass;
+			this.constructor = constructor;
+		}
+
+		Class<? extends Node> getNodeClass() {
+			return nodeClass;
+		}
+
+		NodeConstructor getConstructor() {
+			return constructor;
+		}
+	}
+
+	private NodeFactory() {
+	}
+
+	private static void register(Class<? extends Node> nodeClass, NodeConstructor constructor) {
+		String name = nodeClass.getSimpleName();
+		nodeTypes.put(name.substring(0, name.length() - NODE.length()), new NodeType(nodeClass, constructor));
+	}
+
+	/**
+	 * @return the node implementing this asset, or null if there is none
+	 */
+	static NodeType forAsset(EnergyAsset asset) {
+		NodeType nodeType = registry.computeIfAbsent(asset.eClass(), eClass -> find(asset));
+		return nodeType == NONE ? null : nodeType;
+	}
+
+	private static NodeType find(EnergyAsset asset) {
+		for (Class<?> clazz = asset.getClass(); !clazz.equals(ItemImpl.class); clazz = clazz.getSuperclass()) {
+			for (Class<?> interfaze : clazz.getInterfaces()) {
+				NodeType nodeType = nodeTypes.get(interfaze.getSimpleName());
+				if (nodeType != null) {
+					return nodeType;
+				}
+			}
+		}
+		return NONE;
+	}
+}
@@ -33,6 +33,7 @@ import lombok.Builder;
 import lombok.Data;
 import lombok.EqualsAndHashCode;
 import lombok.extern.slf4j.Slf4j;
+import nl.tno.essim.EsdlSource;
 import nl.tno.essim.commons.BidFunction;
 import nl.tno.essim.commons.Commons;
 import nl.tno.essim.commons.Commons.Role;
@@ -66,9 +67,10 @@ public class ProducerNode extends Node {
 
 	@Builder(builderMethodName = "producerNodeBuilder")
 	public ProducerNode(String simulationId, String nodeId, String address, String networkId, EnergyAsset asset,
-			String esdlString, int directionFactor, Role role, BidFunction demandFunction, double energy, double cost,
-			Node parent, Carrier carrier, List<Node> children, long timeStep, Horizon now, Port connectedPort) {
-		super(simulationId, nodeId, address, networkId, asset, esdlString, directionFactor, role, demandFunction,
+			EsdlSource esdlSource, int directionFactor, Role role, BidFunction demandFunction, double energy,
+			double cost, Node parent, Carrier carrier, List<Node> children, long timeStep, Horizon now,
+			Port connectedPort) {
+		super(simulationId, nodeId, address, networkId, asset, esdlSource, directionFactor, role, demandFunction,
 				energy, cost, parent, carrier, children, timeStep, now, connectedPort);
 		this.producer = (Producer) asset;
 		this.producerName = producer.getName() == null ? producer.getId() : producer.getName();
@@ -88,28 +90,44 @@ public class ProducerNode extends Node {
 	}
 
 	@Override
-	public void createBidCurve(long timeStep, Horizon now, double minPrice, double maxPrice) {
-		double energyOutput = Double.NaN;
+	public boolean isPrecomputable() {
+		return true;
+	}
 
-		// Checks if an asset is operational (accounts for Commissioning and
-		// Decommissioning date)
-		if (!isOperational(now)) {
-			makeInflexibleConsumptionFunction(0);
-			return;
+	@Override
+	public double[] readInflexibleEnergy(long timeStep, List<Horizon> horizon) {
+		double[] energy = new double[horizon.size()];
+		for (int i = 0; i < energy.length; i++) {
+			Horizon now = horizon.get(i);
+			if (isOperational(now)) {
+				double energyOutput = readEnergy(timeStep, now);
+				if (Double.isNaN(energyOutput)) {
+					return null;
+				}
+				energy[i] = -energyOutput;
+			}
 		}
+		return energy;
+	}
+
+	/**
+	 * @return the energy produced according to the profile, curtailed, or NaN if
+	 *         there is no profile value
+	 */
+	private double readEnergy(long timeStep, Horizon now) {
+		double energyOutput = Double.NaN;
 		for (Port port : producer.getPort()) {
 			if (port instanceof OutPort) {
 				GenericProfile producerProfile = Commons.getEnergyProfile(port);
 				if (producerProfile != null) {
 					if (Commons.isPowerProfile(producerProfile)) {
-						energyOutput = timeStep * Commons.aggregatePower(Commons.readProfile(producerProfile, now));
+						energyOutput = timeStep * Commons.readPower(producerProfile, now);
 						break;
 					} else if (Commons.isEnergyProfile(producerProfile)) {
-						energyOutput = Commons.aggregateEnergy(Commons.readProfile(producerProfile, now));
+						energyOutput = Commons.readEnergy(producerProfile, now);
 						break;
 					} else if (Commons.isPercentageProfile(producerProfile)) {
-						energyOutput = timeStep
-								* Commons.aggregatePower(Commons.readProfile(producerProfile, port, now));
+						energyOutput = timeStep * Commons.readPower(producerProfile, port, now);
 					}
 				}
 			}
@@ -119,16 +137,36 @@ public class ProducerNode extends Node {
 				CurtailmentStrategy curtailmentStrategy = (CurtailmentStrategy) controlStrategy;
 				energyOutput = Math.min(energyOutput, curtailmentStrategy.getMaxPower() * timeStep);
 			}
-			makeInflexibleProductionFunction(energyOutput);
+		}
+		return energyOutput;
+	}
+
+	@Override
+	public void createBidCurve(long timeStep, Horizon now, double minPrice, double maxPrice) {
+		// Checks if an asset is operational (accounts for Commissioning and
+		// Decommissioning date)
+		if (!isOperational(now)) {
+			if (!reuseBidCurve(0.0, Double.NaN)) {
+				makeInflexibleConsumptionFunction(0);
+				keepBidCurve(0.0, Double.NaN);
+			}
+			return;
+		}
+		double energyOutput = readEnergy(timeStep, now);
+		if (!Double.isNaN(energyOutput)) {
+			if (!reuseBidCurve(-energyOutput, Double.NaN)) {
+				makeInflexibleProductionFunction(energyOutput);
+				keepBidCurve(-energyOutput, Double.NaN);
+			}
 		} else {
 			energyOutput = timeStep * power;
 			if (marginalCostProfile != null) {
-				Double aggregateCost = Commons.aggregateCost(Commons.readProfile(marginalCostProfile, now));
+				Double aggregateCost = Commons.readCost(marginalCostProfile, now);
 				if (Double.isNaN(aggregateCost)) {
 					aggregateCost = DEFAULT_MARGINAL_COST;
 				}
 			} else if (costProfile != null) {
-				Double aggregateCost = Commons.aggregateCost(Commons.readProfile(costProfile, now));
+				Double aggregateCost = Commons.readCost(costProfile, now);
 				if (Double.isNaN(aggregateCost)) {
 					aggregateCost = DEFAULT_MARGINAL_COST;
 				}
@@ -143,7 +181,10 @@ public class ProducerNode extends Node {
 				CurtailmentStrategy curtailmentStrategy = (CurtailmentStrategy) controlStrategy;
 				energyOutput = Math.min(energyOutput, curtailmentStrategy.getMaxPower() * timeStep);
 			}
-			makeAdjustableProductionFunction(energyOutput);
+			if (!reuseBidCurve(-energyOutput, cost)) {
+				makeAdjustableProductionFunction(energyOutput);
+				keepBidCurve(-energyOutput, cost);
+			}
 		}
 	}
 
@@ -173,8 +214,8 @@ public class ProducerNode extends Node {
 					builder.value("emission", emission);
 					builder.value("fuelConsumption", inputCarrierQuantity);
 
-					double currentInputCarrierCost = Commons.aggregateCost(Commons.readProfile(carrier.getCost(),
-							new Horizon(timestamp.getTime(), timestamp.getSimulationStepLength())));
+					double currentInputCarrierCost = Commons.readCost(carrier.getCost(),
+							new Horizon(timestamp.getTime(), timestamp.getSimulationStepLength()));
 					if (!Double.isNaN(currentInputCarrierCost)) {
 						double inputCarrierCost = inputCarrierQuantity * currentInputCarrierCost;
 						builder.value("cost", inputCarrierCost);
@@ -16,9 +16,9 @@
 
 package nl.tno.essim.transportsolver.nodes;
 
+import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.time.ZoneOffset;
-import java.util.Base64;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -34,6 +34,7 @@ import esdl.Carrier;
 import esdl.EnergyAsset;
 import esdl.Port;
 import lombok.extern.slf4j.Slf4j;
+import nl.tno.essim.EsdlSource;
 import nl.tno.essim.commons.BidFunction;
 import nl.tno.essim.commons.Commons.Role;
 import nl.tno.essim.managers.EmissionManager;
@@ -54,10 +55,10 @@ public class RemoteLogicNode extends Node {
 	private static final String MQTT_PASSWORD = "Who Does Not Like Essim!?";
 
 	RemoteLogicNode(String simulationId, String nodeId, String address, String networkId, EnergyAsset asset,
-			String esdlString, int directionFactor, Role role, BidFunction demandFunction, double energy, double cost,
-			Node parent, Carrier carrier, List<Node> children, long timeStep, Horizon now, NodeConfiguration config,
-			Port connectedPort) {
-		super(simulationId, nodeId, address, networkId, asset, esdlString, directionFactor, role, demandFunction,
+			EsdlSource esdlSource, int directionFactor, Role role, BidFunction demandFunction, double energy,
+			double cost, Node parent, Carrier carrier, List<Node> children, long timeStep, Horizon now,
+			NodeConfiguration config, Port connectedPort) {
+		super(simulationId, nodeId, address, networkId, asset, esdlSource, directionFactor, role, demandFunction,
 				energy, cost, parent, carrier, children, timeStep, now, connectedPort);
 		this.locks = new HashMap<>();
 		this.remoteLogicConfig = config;
@@ -91,12 +92,12 @@ public class RemoteLogicNode extends Node {
 	private void publishConfig() {
 		try {
 			JSONObject message = new JSONObject()
-					.put("esdlContents", Base64.getEncoder().encodeToString(esdlString.getBytes()))
+					.put("esdlContents", esdlSource.toBase64())
 					.put("simulationId", simulationId)
 					.put("config", remoteConfig);
 			MqttMessage msg = new MqttMessage(message.toString().getBytes());
 			this.client.publish(this.remoteLogicConfig.getMqttTopic() + "/node/" + nodeId + "/config", msg);
-		} catch (MqttException e) {
+		} catch (MqttException | IOException e) {
 			// FIXME this is now the default behavior
 			log.warn("Unable to send node asset info");
 			e.printStackTrace();
@@ -30,6 +30,7 @@ import esdl.StorageStrategy;
 import lombok.Builder;
 import lombok.Data;
 import lombok.EqualsAndHashCode;
+import nl.tno.essim.EsdlSource;
 import nl.tno.essim.commons.BidFunction;
 import nl.tno.essim.commons.Commons;
 import nl.tno.essim.commons.Commons.Role;
@@ -52,9 +53,10 @@ public class StorageNode extends Node {
 
 	@Builder(builderMethodName = "storageNodeBuilder")
 	public StorageNode(String simulationId, String nodeId, String address, String networkId, EnergyAsset asset,
-			String esdlString, int directionFactor, Role role, BidFunction demandFunction, double energy, double cost,
-			Node parent, Carrier carrier, List<Node> children, long timeStep, Horizon now, Port connectedPort) {
-		super(simulationId, nodeId, address, networkId, asset, esdlString, directionFactor, role, demandFunction,
+			EsdlSource esdlSource, int directionFactor, Role role, BidFunction demandFunction, double energy,
+			double cost, Node parent, Carrier carrier, List<Node> children, long timeStep, Horizon now,
+			Port connectedPort) {
+		super(simulationId, nodeId, address, networkId, asset, esdlSource, directionFactor, role, demandFunction,
 				energy, cost, parent, carrier, children, timeStep, now, connectedPort);
 
 		this.storage = (Storage) asset;
@@ -78,14 +80,14 @@ public class StorageNode extends Node {
 			double energy = 0.0;
 			GenericProfile storageProfile = storage.getProfile();
 			if (Commons.isPowerProfile(storageProfile)) {
-				energy = timeStep * Commons.aggregatePower(Commons.readProfile(storageProfile, now));
+				energy = timeStep * Commons.readPower(storageProfile, now);
 			} else if (Commons.isEnergyProfile(storageProfile)) {
-				energy = Commons.aggregateEnergy(Commons.readProfile(storageProfile, now));
+				energy = Commons.readEnergy(storageProfile, now);
 			} else if (Commons.isSoCProfile(storageProfile)) {
 				LocalDateTime startTime = now.getStartTime().minus(timeStep, ChronoUnit.SECONDS);
 				Horizon last = new Horizon(startTime, timeStepinDT);
-				double currentSoC = Commons.aggregateSoC(Commons.readProfile(storageProfile, last));
-				double newSoC = Commons.aggregateSoC(Commons.readProfile(storageProfile, now));
+				double currentSoC = Commons.readSoC(storageProfile, last);
+				double newSoC = Commons.readSoC(storageProfile, now);
 				energy = ((newSoC - currentSoC) * capacity);
 			}
 
@@ -108,11 +110,11 @@ public class StorageNode extends Node {
 					StorageStrategy storageStrategy = (StorageStrategy) controlStrategy;
 					GenericProfile marginalChargeCosts = storageStrategy.getMarginalChargeCosts();
 					if (marginalChargeCosts != null) {
-						mc1 = Commons.aggregateCost(Commons.readProfile(marginalChargeCosts, now));
+						mc1 = Commons.readCost(marginalChargeCosts, now);
 					}
 					GenericProfile marginalDischargeCosts = storageStrategy.getMarginalDischargeCosts();
 					if (marginalDischargeCosts != null) {
-						mc2 = Commons.aggregateCost(Commons.readProfile(marginalDischargeCosts, now));
+						mc2 = Commons.readCost(marginalDischargeCosts, now);
 					}
 				}
 			}
@@ -0,0 +1,177 @@
+/**
+ *  This work is based on original code developed and copyrighted by TNO 2020. 
+ *  Subsequent contributions are licensed to you by the developers of such code and are
+ *  made available to the Project under one or several contributor license agreements.
+ *
+ *  This work is licensed to you under the Apache License, Version 2.0.
+ *  You may obtain a copy of the license at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Contributors:
+ *      TNO         - Initial implementation
+ *  Manager:
+ *      TNO
+ */
+
+package nl.tno.essim.transportsolver.nodes;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntConsumer;
+
+import lombok.extern.slf4j.Slf4j;
+import nl.tno.essim.managers.SimulationScheduler;
+
+/**
+ * Parallel support for the sweeps over the tree of a network (see FlatTree).
+ * The children of a node whose subtree has at least PARALLEL_SUBTREE_SIZE
+ * nodes (default 5000, 0 disables it) are split into groups of about that many
+ * nodes, so that one large network can use more than one core.
+ *
+ * The groups are run by the calling thread and by helper tasks submitted to
+ * the queue of the simulation on the solver scheduler (see
+ * {@link SimulationScheduler}). The helpers take the place of other tasks of
+ * the simulation, so the simulation keeps its fair share of the SOLVER_THREADS
+ * workers and never uses more of them. The caller does not wait for helpers
+ * to be started: it takes groups itself until none are left, and then only
+ * waits for the groups that helpers are already working on. Without a queue,
+ * the caller runs all groups itself.
+ *
+ * Only the work per child is split, combining the results of the children is
+ * left to the caller, in the order of the children. That way the results are
+ * the same as those of the sequential sweep.
+ */
+@Slf4j
+public final class SubtreeTasks {
+
+	private static final String PARALLEL_SUBTREE_SIZE = "PARALLEL_SUBTREE_SIZE";
+	private static final int DEFAULT_SUBTREE_SIZE = 5000;
+	private static final int threshold = thresholdFromEnv();
+
+	private SubtreeTasks() {
+	}
+
+	private static int thresholdFromEnv() {
+		int size = DEFAULT_SUBTREE_SIZE;
+		String sizeString = System.getenv(PARALLEL_SUBTREE_SIZE);
+		if (sizeString != null) {
+			try {
+				size = Integer.parseInt(sizeString.trim());
+			} catch (NumberFormatException e) {
+				log.warn("Invalid value {} for {}. Defaulting to {}", sizeString, PARALLEL_SUBTREE_SIZE, size);
+			}
+		}
+		return size;
+	}
+
+	/**
+	 * @return whether the children of a node with a subtree of this size should
+	 *         be handled in parallel
+	 */
+	public static boolean isParallel(int subtreeSize) {
+		return threshold > 0 && subtreeSize >= threshold;
+	}
+
+	/**
+	 * Calls the action for every child and returns when all calls are done.
+	 * Children are grouped into runs of consecutive children of about
+	 * PARALLEL_SUBTREE_SIZE nodes, which are run in parallel.
+	 *
+	 * @param subtreeSizes the number of nodes in the subtree of every child
+	 * @param executor     the queue of the simulation to run helpers on, or null
+	 */
+	public static void forEachChild(int[] subtreeSizes, Executor executor, IntConsumer action) {
+		int[] groupStarts = groupStarts(subtreeSizes);
+		int groups = groupStarts.length - 1;
+		if (groups <= 1 || executor == null) {
+			for (int i = 0; i < subtreeSizes.length; i++) {
+				action.accept(i);
+			}
+			return;
+		}
+
+		Groups work = new Groups(groupStarts, action);
+		int helpers = Math.min(groups, SimulationScheduler.getSolverScheduler().getThreads()) - 1;
+		try {
+			for (int i = 0; i < helpers; i++) {
+				executor.execute(work::run);
+			}
+		} catch (RejectedExecutionException e) {
+			// The simulation is shutting down, the caller does the rest
+		}
+		work.run();
+		work.await();
+	}
+
+	// Boundaries of the groups of children, with the end of the last group
+	private static int[] groupStarts(int[] subtreeSizes) {
+		int[] starts = new int[subtreeSizes.length + 1];
+		int groups = 0;
+		long size = 0;
+		for (int i = 0; i < subtreeSizes.length; i++) {
+			if (size == 0) {
+				starts[groups++] = i;
+			}
+			size += Math.max(1, subtreeSizes[i]);
+			if (size >= threshold) {
+				size = 0;
+			}
+		}
+		starts[groups] = subtreeSizes.length;
+		int[] result = new int[groups + 1];
+		System.arraycopy(starts, 0, result, 0, groups + 1);
+		return result;
+	}
+
+	private static class Groups {
+		private final int[] groupStarts;
+		private final IntConsumer action;
+		private final AtomicInteger next;
+		private final CountDownLatch done;
+		private volatile Throwable failure;
+
+		private Groups(int[] groupStarts, IntConsumer action) {
+			this.groupStarts = groupStarts;
+			this.action = action;
+			next = new AtomicInteger();
+			done = new CountDownLatch(groupStarts.length - 1);
+		}
+
+		private void run() {
+			int group;
+			while ((group = next.getAndIncrement()) < groupStarts.length - 1) {
+				try {
+					if (failure == null) {
+						for (int i = groupStarts[group]; i < groupStarts[group + 1]; i++) {
+							action.accept(i);
+						}
+					}
+				} catch (Throwable e) {
+					failure = e;
+				} finally {
+					done.countDown();
+				}
+			}
+		}
+
+		private void await() {
+			try {
+				done.await();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IllegalStateException("Interrupted while waiting for subtree tasks", e);
+			}
+			Throwable e = failure;
+			if (e instanceof RuntimeException) {
+				throw (RuntimeException) e;
+			} else if (e instanceof Error) {
+				throw (Error) e;
+			} else if (e != null) {
+				throw new IllegalStateException(e);
+			}
+		}
+	}
+}
@@ -0,0 +1,207 @@
+/**
+ *  This work is based on original code developed and copyrighted by TNO 2020. 
+ *  Subsequent contributions are licensed to you by the developers of such code and are
+ *  made available to the Project under one or several contributor license agreements.
+ *
+ *  This work is licensed to you under the Apache License, Version 2.0.
+ *  You may obtain a copy of the license at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Contributors:
+ *      TNO         - Initial implementation
+ *  Manager:
+ *      TNO
+ */
+
+package nl.tno.essim.commons;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.Random;
+import java.util.TreeMap;
+
+import org.junit.Test;
+
+/**
+ * Compares the array based curves with the TreeMap based curves they replaced
+ * (see {@link TreeMapBidFunction}), which must give exactly the same results.
+ */
+public class BidFunctionTest {
+
+	private static final int RUNS = 500;
+
+	@Test
+	public void sumCurvesMatchesTreeMap() {
+		Random random = new Random(1);
+		for (int run = 0; run < RUNS; run++) {
+			List<TreeMap<Double, Double>> curves = RandomCurves.curves(random, true);
+			TreeMap<Double, Double> expected = curves.get(0);
+			BidFunction summed = new BidFunction(curves.get(0));
+			for (int i = 1; i < curves.size(); i++) {
+				expected = TreeMapBidFunction.sumCurves(expected, curves.get(i));
+				summed = BidFunction.sumCurves(summed, new BidFunction(curves.get(i)));
+			}
+			assertSameCurve(expected, summed);
+		}
+	}
+
+	@Test
+	public void addMatchesTreeMap() {
+		Random random = new Random(2);
+		// One curve for all runs, so that its arrays are reused
+		BidFunction summed = new BidFunction();
+		for (int run = 0; run < RUNS; run++) {
+			List<TreeMap<Double, Double>> curves = RandomCurves.curves(random, true);
+			TreeMap<Double, Double> expected = new TreeMap<Double, Double>();
+			summed.clear();
+			for (TreeMap<Double, Double> curve : curves) {
+				expected = TreeMapBidFunction.sumCurves(expected, curve);
+				summed.add(new BidFunction(curve));
+			}
+			assertSameCurve(expected, summed);
+		}
+	}
+
+	@Test
+	public void priceAndDemandAtZeroCrossingMatchTreeMap() {
+		Random random = new Random(3);
+		for (int run = 0; run < RUNS; run++) {
+			List<TreeMap<Double, Double>> curves = RandomCurves.curves(random, true);
+			TreeMap<Double, Double> expected = new TreeMap<Double, Double>();
+			BidFunction summed = new BidFunction();
+			for (TreeMap<Double, Double> curve : curves) {
+				expected = TreeMapBidFunction.sumCurves(expected, curve);
+				summed = BidFunction.sumCurves(summed, new BidFunction(curve));
+			}
+
+			double expectedPrice = TreeMapBidFunction.findPriceFromCurve(expected, 0.0);
+			double price = summed.findPriceFromCurve(0.0);
+			assertEquals(expectedPrice, price, 0.0);
+			assertEquals(expectedPrice, summed.findEquillibrium(), 0.0);
+			assertEquals(TreeMapBidFunction.findDemandFromCurve(expected, price), summed.findDemandFromCurve(price),
+					0.0);
+			for (TreeMap<Double, Double> curve : curves) {
+				assertEquals(TreeMapBidFunction.findDemandFromCurve(curve, price),
+						new BidFunction(curve).findDemandFromCurve(price), 0.0);
+			}
+		}
+	}
+
+	@Test
+	public void priceOfBidPointsMatchesTreeMap() {
+		Random random = new Random(4);
+		for (int run = 0; run < RUNS; run++) {
+			TreeMap<Double, Double> curve = RandomCurves.curve(random, true);
+			BidFunction bidFunction = new BidFunction(curve);
+			// The bids of the points themselves, and bids between and beyond them
+			for (double bid : curve.values()) {
+				assertEquals(TreeMapBidFunction.findPriceFromCurve(curve, bid), bidFunction.findPriceFromCurve(bid),
+						0.0);
+			}
+			for (int i = 0; i < 10; i++) {
+				double bid = random.nextDouble() * 300.0 - 150.0;
+				assertEquals(TreeMapBidFunction.findPriceFromCurve(curve, bid), bidFunction.findPriceFromCurve(bid),
+						0.0);
+			}
+		}
+	}
+
+	@Test
+	public void curvesThatIncreaseFallBackToScan() {
+		Random random = new Random(5);
+		for (int run = 0; run < RUNS; run++) {
+			List<TreeMap<Double, Double>> curves = RandomCurves.curves(random, false);
+			TreeMap<Double, Double> expected = new TreeMap<Double, Double>();
+			BidFunction summed = new BidFunction();
+			for (TreeMap<Double, Double> curve : curves) {
+				expected = TreeMapBidFunction.sumCurves(expected, curve);
+				summed = BidFunction.sumCurves(summed, new BidFunction(curve));
+			}
+			assertSameCurve(expected, summed);
+			assertEquals(isNonIncreasing(expected), summed.isNonIncreasing());
+
+			assertEquals(TreeMapBidFunction.findPriceFromCurve(expected, 0.0), summed.findPriceFromCurve(0.0), 0.0);
+			for (int i = 0; i < 10; i++) {
+				double bid = random.nextDouble() * 600.0 - 300.0;
+				assertEquals(TreeMapBidFunction.findPriceFromCurve(expected, bid), summed.findPriceFromCurve(bid),
+						0.0);
+			}
+		}
+	}
+
+	@Test
+	public void addingPointsOutOfOrderKeepsCurveSorted() {
+		Random random = new Random(6);
+		for (int run = 0; run < RUNS; run++) {
+			TreeMap<Double, Double> expected = new TreeMap<Double, Double>();
+			BidFunction bidFunction = new BidFunction();
+			int points = 1 + random.nextInt(10);
+			for (int i = 0; i < points; i++) {
+				// Few distinct prices, so that points are replaced now and then
+				double price = random.nextInt(5) / 4.0;
+				double bid = random.nextDouble() * 100.0 - 50.0;
+				expected.put(price, bid);
+				bidFunction.addPoint(price, bid);
+			}
+			assertSameCurve(expected, bidFunction);
+			assertEquals(isNonIncreasing(expected), bidFunction.isNonIncreasing());
+		}
+	}
+
+	@Test
+	public void simplifiedCurveStaysWithinError() {
+		Random random = new Random(7);
+		// One curve for all runs, so that the buffers of simplify are reused
+		BidFunction curve = new BidFunction();
+		for (int run = 0; run < RUNS; run++) {
+			TreeMap<Double, Double> expected = new TreeMap<Double, Double>();
+			int points = 3 + random.nextInt(200);
+			double bid = 100.0;
+			for (int i = 0; i < points; i++) {
+				expected.put(random.nextDouble(), bid);
+				bid -= random.nextDouble() * 5.0;
+			}
+			curve.clear();
+			for (Entry<Double, Double> point : expected.entrySet()) {
+				curve.addPoint(point.getKey(), point.getValue());
+			}
+			int maxPoints = 2 + random.nextInt(60);
+			double maxError = random.nextDouble() * 3.0;
+
+			double error = curve.simplify(maxPoints, maxError);
+			assertTrue(curve.size() <= Math.max(maxPoints, expected.size()));
+			assertTrue(curve.size() == maxPoints || error <= maxError);
+			assertEquals(expected.firstKey(), curve.getPrice(0), 0.0);
+			assertEquals(expected.lastKey(), curve.getPrice(curve.size() - 1), 0.0);
+			for (Entry<Double, Double> point : expected.entrySet()) {
+				double distance = Math.abs(curve.findDemandFromCurve(point.getKey()) - point.getValue());
+				assertTrue(distance <= error + 1e-9);
+			}
+		}
+	}
+
+	private static void assertSameCurve(TreeMap<Double, Double> expected, BidFunction curve) {
+		assertEquals(expected.size(), curve.size());
+		int i = 0;
+		for (Entry<Double, Double> point : expected.entrySet()) {
+			assertEquals(point.getKey(), curve.getPrice(i), 0.0);
+			assertEquals(point.getValue(), curve.getBid(i), 0.0);
+			i++;
+		}
+	}
+
+	private static boolean isNonIncreasing(TreeMap<Double, Double> curve) {
+		double previous = Double.POSITIVE_INFINITY;
+		for (double bid : curve.values()) {
+			if (!(bid <= previous)) {
+				return false;
+			}
+			previous = bid;
+		}
+		return true;
+	}
+}
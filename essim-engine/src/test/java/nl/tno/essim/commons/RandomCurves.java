@@ -0,0 +1,71 @@
+/**
+ *  This work is based on original code developed and copyrighted by TNO 2020. 
+ *  Subsequent contributions are licensed to you by the developers of such code and are
+ *  made available to the Project under one or several contributor license agreements.
+ *
+ *  This work is licensed to you under the Apache License, Version 2.0.
+ *  You may obtain a copy of the license at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Contributors:
+ *      TNO         - Initial implementation
+ *  Manager:
+ *      TNO
+ */
+
+package nl.tno.essim.commons;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Random bid curves from P_MIN to P_MAX with a few points in between, as the
+ * nodes make them.
+ */
+public class RandomCurves {
+	private static final int MAX_POINTS = 10;
+	private static final int MAX_CURVES = 12;
+
+	/**
+	 * @param nonIncreasing whether the curve never increases with the price, with
+	 *                      flat segments now and then; otherwise it goes up and
+	 *                      down at random
+	 */
+	public static TreeMap<Double, Double> curve(Random random, boolean nonIncreasing) {
+		TreeSet<Double> prices = new TreeSet<Double>();
+		prices.add(Commons.P_MIN);
+		prices.add(Commons.P_MAX);
+		int points = random.nextInt(MAX_POINTS - 1);
+		for (int i = 0; i < points; i++) {
+			prices.add(Commons.P_MIN + random.nextDouble() * (Commons.P_MAX - Commons.P_MIN));
+		}
+
+		TreeMap<Double, Double> curve = new TreeMap<Double, Double>();
+		double bid = random.nextDouble() * 200.0 - 50.0;
+		for (double price : prices) {
+			curve.put(price, bid);
+			if (!nonIncreasing) {
+				bid += random.nextDouble() * 100.0 - 50.0;
+			} else if (random.nextInt(4) != 0) {
+				bid -= random.nextDouble() * 50.0;
+			}
+		}
+		return curve;
+	}
+
+	/**
+	 * @return between 1 and MAX_CURVES random curves
+	 */
+	public static List<TreeMap<Double, Double>> curves(Random random, boolean nonIncreasing) {
+		List<TreeMap<Double, Double>> curves = new ArrayList<TreeMap<Double, Double>>();
+		int count = 1 + random.nextInt(MAX_CURVES);
+		for (int i = 0; i < count; i++) {
+			curves.add(curve(random, nonIncreasing));
+		}
+		return curves;
+	}
+}
@@ -0,0 +1,108 @@
+/**
+ *  This work is based on original code developed and copyrighted by TNO 2020. 
+ *  Subsequent contributions are licensed to you by the developers of such code and are
+ *  made available to the Project under one or several contributor license agreements.
+ *
+ *  This work is licensed to you under the Apache License, Version 2.0.
+ *  You may obtain a copy of the license at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Contributors:
+ *      TNO         - Initial implementation
+ *  Manager:
+ *      TNO
+ */
+
+package nl.tno.essim.commons;
+
+import java.util.Map.Entry;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * The TreeMap based summation and lookups that {@link BidFunction} had before
+ * it was backed by arrays. Kept as it was, without optimising it, because it
+ * is the oracle the array based curves and the clearing engines must agree
+ * with.
+ */
+public class TreeMapBidFunction {
+	private static final double eps = 1e-22;
+
+	public static TreeMap<Double, Double> sumCurves(TreeMap<Double, Double> firstCurve,
+			TreeMap<Double, Double> otherCurve) {
+		TreeMap<Double, Double> summedCurve = new TreeMap<Double, Double>();
+		TreeSet<Double> allPrices = new TreeSet<Double>();
+		allPrices.addAll(firstCurve.keySet());
+		allPrices.addAll(otherCurve.keySet());
+		for (double price : allPrices) {
+			double aValue = findDemandFromCurve(firstCurve, price);
+			double bValue = findDemandFromCurve(otherCurve, price);
+			summedCurve.put(price, aValue + bValue);
+		}
+		return summedCurve;
+	}
+
+	public static double findDemandFromCurve(TreeMap<Double, Double> curve, double price) {
+		if (curve.isEmpty()) {
+			return 0.0;
+		}
+
+		if (curve.containsKey(price)) {
+			return curve.get(price);
+		}
+
+		double p1 = Double.NaN;
+		double p2 = Double.NaN;
+		double v1 = Double.NaN;
+		double v2 = Double.NaN;
+		for (double p : curve.keySet()) {
+			if (p > price) {
+				p2 = p;
+				v2 = curve.get(p2);
+				break;
+			}
+			p1 = p;
+			v1 = curve.get(p1);
+		}
+
+		if (Double.isNaN(p1)) {
+			return v2;
+		} else if (Double.isNaN(p2)) {
+			return v1;
+		} else {
+			return v1 + (((v2 - v1) / (p2 - p1)) * (price - p1));
+		}
+	}
+
+	public static double findPriceFromCurve(TreeMap<Double, Double> curve, double bidPoint) {
+		for (Entry<Double, Double> entry : curve.entrySet()) {
+			if (Math.abs(entry.getValue() - bidPoint) < eps) {
+				return entry.getKey();
+			}
+		}
+
+		double p1 = Double.NaN;
+		double p2 = Double.NaN;
+		double v1 = Double.NaN;
+		double v2 = Double.NaN;
+		for (double p : curve.keySet()) {
+			double v = curve.get(p);
+			if (v < bidPoint) {
+				p2 = p;
+				v2 = v;
+				break;
+			}
+			p1 = p;
+			v1 = v;
+		}
+
+		if (Double.isNaN(p1)) {
+			return p2;
+		} else if (Double.isNaN(p2)) {
+			return p1;
+		} else {
+			return p1 + (((p2 - p1) / (v2 - v1)) * (bidPoint - v1));
+		}
+	}
+}
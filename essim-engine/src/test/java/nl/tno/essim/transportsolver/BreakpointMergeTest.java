@@ -0,0 +1,90 @@
+/**
+ *  This work is based on original code developed and copyrighted by TNO 2020. 
+ *  Subsequent contributions are licensed to you by the developers of such code and are
+ *  made available to the Project under one or several contributor license agreements.
+ *
+ *  This work is licensed to you under the Apache License, Version 2.0.
+ *  You may obtain a copy of the license at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Contributors:
+ *      TNO         - Initial implementation
+ *  Manager:
+ *      TNO
+ */
+
+package nl.tno.essim.transportsolver;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.List;
+import java.util.Random;
+import java.util.TreeMap;
+
+import org.junit.Test;
+
+import nl.tno.essim.commons.BidFunction;
+import nl.tno.essim.commons.Commons;
+import nl.tno.essim.commons.RandomCurves;
+import nl.tno.essim.commons.TreeMapBidFunction;
+
+/**
+ * Compares the balancing price of the breakpoint merge with the price on the
+ * curve summed with the TreeMap based curves (see {@link TreeMapBidFunction}),
+ * as the networks were cleared before.
+ */
+public class BreakpointMergeTest {
+
+	private static final int RUNS = 500;
+	// Relative difference the merge may have from summing up the curves
+	private static final double TOLERANCE = 1e-9;
+
+	@Test
+	public void priceMatchesSummedCurve() {
+		Random random = new Random(7);
+		BreakpointMerge merge = new BreakpointMerge();
+		for (int run = 0; run < RUNS; run++) {
+			List<TreeMap<Double, Double>> curves = RandomCurves.curves(random, true);
+			double expected = summedPrice(curves);
+			assertEquals(expected, findPrice(merge, curves), TOLERANCE * (1.0 + Math.abs(expected)));
+		}
+	}
+
+	@Test
+	public void priceMatchesSummedCurveWithFlatCurve() {
+		Random random = new Random(8);
+		BreakpointMerge merge = new BreakpointMerge();
+		for (int run = 0; run < RUNS; run++) {
+			List<TreeMap<Double, Double>> curves = RandomCurves.curves(random, true);
+			// The curve the inflexible nodes are folded into
+			TreeMap<Double, Double> flatCurve = new TreeMap<Double, Double>();
+			double energy = random.nextDouble() * 400.0 - 300.0;
+			flatCurve.put(Commons.P_MIN, energy);
+			flatCurve.put(Commons.P_MAX, energy);
+			curves.add(flatCurve);
+			double expected = summedPrice(curves);
+			assertEquals(expected, findPrice(merge, curves), TOLERANCE * (1.0 + Math.abs(expected)));
+		}
+	}
+
+	/**
+	 * @return the balancing price on the sum of the curves, summed one by one as
+	 *         up the tree
+	 */
+	static double summedPrice(List<TreeMap<Double, Double>> curves) {
+		TreeMap<Double, Double> summed = new TreeMap<Double, Double>();
+		for (TreeMap<Double, Double> curve : curves) {
+			summed = TreeMapBidFunction.sumCurves(summed, curve);
+		}
+		return TreeMapBidFunction.findPriceFromCurve(summed, 0.0);
+	}
+
+	private static double findPrice(BreakpointMerge merge, List<TreeMap<Double, Double>> curves) {
+		merge.curves.clear();
+		for (TreeMap<Double, Double> curve : curves) {
+			merge.curves.add(new BidFunction(curve));
+		}
+		return merge.findPrice();
+	}
+}
@@ -0,0 +1,55 @@
+/**
+ *  This work is based on original code developed and copyrighted by TNO 2020. 
+ *  Subsequent contributions are licensed to you by the developers of such code and are
+ *  made available to the Project under one or several contributor license agreements.
+ *
+ *  This work is licensed to you under the Apache License, Version 2.0.
+ *  You may obtain a copy of the license at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Contributors:
+ *      TNO         - Initial implementation
+ *  Manager:
+ *      TNO
+ */
+
+package nl.tno.essim.transportsolver;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.Random;
+import java.util.TreeMap;
+
+import org.junit.Test;
+
+import nl.tno.essim.commons.BidFunction;
+import nl.tno.essim.commons.RandomCurves;
+
+/**
+ * Checks that the price found on the grid is within the reported price
+ * resolution of the price on the summed curve.
+ */
+public class PriceGridTest {
+
+	private static final int RUNS = 500;
+
+	@Test
+	public void priceWithinResolution() {
+		Random random = new Random(9);
+		PriceGrid grid = new PriceGrid();
+		double resolution = grid.getPriceResolution();
+		assertTrue(resolution > 0.0);
+		for (int run = 0; run < RUNS; run++) {
+			List<TreeMap<Double, Double>> curves = RandomCurves.curves(random, true);
+			grid.curves.clear();
+			for (TreeMap<Double, Double> curve : curves) {
+				grid.curves.add(new BidFunction(curve));
+			}
+			double expected = BreakpointMergeTest.summedPrice(curves);
+			assertEquals(expected, grid.findPrice(), resolution * (1.0 + 1e-9));
+		}
+	}
+}
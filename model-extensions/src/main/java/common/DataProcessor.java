@@ -1,8 +1,10 @@
 
 package common;
 
+import lombok.EqualsAndHashCode;
 import nl.tno.essim.util.Converter;
 
+@EqualsAndHashCode
 public class DataProcessor {
 	private Object profileType;
 	private double multiplier;
@@ -18,24 +18,33 @@ package common;
 
 import java.util.Timer;
 import java.util.TimerTask;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
 
 import com.google.common.base.Charsets;
 import com.google.common.hash.Hashing;
 
 import lombok.extern.slf4j.Slf4j;
 
+/**
+ * Series read from InfluxDB, shared by all profiles (and simulations) with the
+ * same query. A query is only executed once at a time: concurrent requests for
+ * a query that is being loaded wait for that load instead of querying again,
+ * requests for other queries are not held up.
+ */
 @Slf4j
 public class ProfileCache extends TimerTask {
 
 	private static final long CACHE_INVALIDATION_PERIOD = 2 * 60 * 60 * 1000; // 2 hours
 	private static ProfileCache instance;
-	private ConcurrentHashMap<Integer, TimeSeriesDataCache> dataCaches;
+	private ConcurrentHashMap<Integer, CompletableFuture<TimeSeriesDataCache>> dataCaches;
 	private static AtomicInteger counter;
 
 	private ProfileCache() {
-		dataCaches = new ConcurrentHashMap<Integer, TimeSeriesDataCache>();
+		dataCaches = new ConcurrentHashMap<Integer, CompletableFuture<TimeSeriesDataCache>>();
 		counter = new AtomicInteger(0);
 		new Timer("Timer").scheduleAtFixedRate(this, 0, CACHE_INVALIDATION_PERIOD);
 	}
@@ -60,16 +69,36 @@ public class ProfileCache extends TimerTask {
 		}
 	}
 
-	public synchronized void cache(String query, TimeSeriesDataCache dataCache) {
-		dataCaches.put(getQueryHash(query), dataCache);
-	}
-
-	public synchronized boolean isCached(String query) {
-		return dataCaches.containsKey(getQueryHash(query));
-	}
+	/**
+	 * Returns the cached series of the query, or loads it in the calling thread
+	 * if nobody has loaded or is loading it yet. A failed load is not cached, so
+	 * the next request tries again.
+	 */
+	public TimeSeriesDataCache getDataCache(String query, Supplier<TimeSeriesDataCache> loader) {
+		int hash = getQueryHash(query);
+		CompletableFuture<TimeSeriesDataCache> future = new CompletableFuture<TimeSeriesDataCache>();
+		CompletableFuture<TimeSeriesDataCache> existing = dataCaches.putIfAbsent(hash, future);
+		if (existing == null) {
+			log.debug("Profile is not cached! Proceeding to query InfluxDB!");
+			try {
+				future.complete(loader.get());
+			} catch (RuntimeException e) {
+				dataCaches.remove(hash, future);
+				future.completeExceptionally(e);
+				throw e;
+			}
+			return future.join();
+		}
 
-	public synchronized TimeSeriesDataCache getDataCache(String query) {
-		return dataCaches.get(getQueryHash(query));
+		log.debug("Profile is cached! Retrieving from cache!");
+		try {
+			return existing.join();
+		} catch (CompletionException e) {
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			throw e;
+		}
 	}
 
 	private int getQueryHash(String query) {
@@ -0,0 +1,44 @@
+/**
+ *  This work is based on original code developed and copyrighted by TNO 2020. 
+ *  Subsequent contributions are licensed to you by the developers of such code and are
+ *  made available to the Project under one or several contributor license agreements.
+ *
+ *  This work is licensed to you under the Apache License, Version 2.0.
+ *  You may obtain a copy of the license at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Contributors:
+ *      TNO         - Initial implementation
+ *  Manager:
+ *      TNO
+ */
+
+package common;
+
+/**
+ * Direct access to the values of a profile, for reading a simulation step
+ * without going through lists of ProfileElements. Times are seconds since the
+ * epoch, see {@link nl.tno.essim.time.EssimTime#toEpochSecond}.
+ */
+public interface ProfileReader {
+
+	public static enum Aggregation {
+		SUM, AVERAGE
+	};
+
+	/**
+	 * Aggregates the points of the profile from fromEpoch (inclusive) to toEpoch
+	 * (exclusive), in standardised units.
+	 * 
+	 * @return the sum or average of the points, or NaN if there are none
+	 */
+	public double aggregate(long fromEpoch, long toEpoch, Aggregation kind);
+
+	/**
+	 * Prepares the profile for reading the given simulation steps with the given
+	 * aggregation, see {@link StepProfile}. Other reads still work, just not as
+	 * fast.
+	 */
+	public void resample(long startEpoch, long stepSeconds, int steps, Aggregation kind);
+}
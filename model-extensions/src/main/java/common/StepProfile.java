@@ -0,0 +1,75 @@
+/**
+ *  This work is based on original code developed and copyrighted by TNO 2020. 
+ *  Subsequent contributions are licensed to you by the developers of such code and are
+ *  made available to the Project under one or several contributor license agreements.
+ *
+ *  This work is licensed to you under the Apache License, Version 2.0.
+ *  You may obtain a copy of the license at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Contributors:
+ *      TNO         - Initial implementation
+ *  Manager:
+ *      TNO
+ */
+
+package common;
+
+import common.ProfileReader.Aggregation;
+
+/**
+ * A profile resampled onto the steps of a simulation: for every step the sum or
+ * the average of the points of the profile within that step. Reading a step is
+ * then a single array access, whatever the resolution of the profile.
+ */
+public class StepProfile {
+
+	private final long startEpoch;
+	private final long stepSeconds;
+	private final Aggregation kind;
+	private final double[] values;
+
+	private StepProfile(long startEpoch, long stepSeconds, Aggregation kind, double[] values) {
+		this.startEpoch = startEpoch;
+		this.stepSeconds = stepSeconds;
+		this.kind = kind;
+		this.values = values;
+	}
+
+	/**
+	 * Aggregates the profile read by the reader for each of the steps, starting
+	 * at startEpoch.
+	 */
+	public static StepProfile resample(ProfileReader reader, long startEpoch, long stepSeconds, int steps,
+			Aggregation kind) {
+		double[] values = new double[steps];
+		for (int i = 0; i < steps; i++) {
+			long from = startEpoch + i * stepSeconds;
+			values[i] = reader.aggregate(from, from + stepSeconds, kind);
+		}
+		return new StepProfile(startEpoch, stepSeconds, kind, values);
+	}
+
+	public boolean isResampled(long startEpoch, long stepSeconds, int steps, Aggregation kind) {
+		return this.startEpoch == startEpoch && this.stepSeconds == stepSeconds && values.length == steps
+				&& this.kind == kind;
+	}
+
+	/**
+	 * @return the index of the step for a read of the period, or -1 if the period
+	 *         is not exactly one of the steps or is aggregated differently
+	 */
+	public int indexOf(long fromEpoch, long toEpoch, Aggregation kind) {
+		long offset = fromEpoch - startEpoch;
+		if (kind != this.kind || toEpoch - fromEpoch != stepSeconds || offset < 0 || offset % stepSeconds != 0
+				|| offset / stepSeconds >= values.length) {
+			return -1;
+		}
+		return (int) (offset / stepSeconds);
+	}
+
+	public double get(int index) {
+		return values[index];
+	}
+}
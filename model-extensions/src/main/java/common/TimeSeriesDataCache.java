@@ -18,17 +18,27 @@ package common;
 
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
 
 import org.eclipse.emf.common.util.ECollections;
 import org.eclipse.emf.common.util.EList;
 
+import common.ProfileReader.Aggregation;
 import esdl.Duration;
 import esdl.EsdlFactory;
 import esdl.ProfileElement;
 import nl.tno.essim.time.EssimDuration;
 import nl.tno.essim.time.EssimTime;
 
+/**
+ * A time series read from InfluxDB. Timestamps are kept as epoch seconds and
+ * values are scaled once per {@link DataProcessor}, so reading a simulation
+ * step only involves the points within that step. The scaled values are kept
+ * while a reader needs them (see {@link Reader#release()}).
+ */
 public class TimeSeriesDataCache {
 
 	private static final int TIMESTAMP = 0;
@@ -36,47 +46,182 @@ public class TimeSeriesDataCache {
 	private static final int YEARS = 1;
 
 	private String name;
-	private LocalDateTime[] timestamps;
+	private long[] timestamps;
 	private double[] values;
 	private int totalSize;
+	private HashMap<DataProcessor, Processed> processedValues;
 
 	public TimeSeriesDataCache(String name, List<List<Object>> influxDBSeriesData, LocalDateTime startDate,
 			LocalDateTime endDate, EssimDuration simulationStep, double annualChange) {
 		this.name = name;
 		int size = influxDBSeriesData.size();
 		totalSize = size * YEARS;
-		timestamps = new LocalDateTime[totalSize];
+		timestamps = new long[totalSize];
 		values = new double[totalSize];
+		processedValues = new HashMap<DataProcessor, Processed>();
 
 		for (int j = 0; j < YEARS; j++) {
 			for (int i = 0; i < size; i++) {
 				List<Object> list = influxDBSeriesData.get(i);
-				timestamps[j * size + i] = LocalDateTime.parse((String) list.get(TIMESTAMP),
-						DateTimeFormatter.ISO_DATE_TIME);
+				timestamps[j * size + i] = EssimTime.toEpochSecond(
+						LocalDateTime.parse((String) list.get(TIMESTAMP), DateTimeFormatter.ISO_DATE_TIME));
 				values[j * size + i] = ((double) list.get(DATA)) * (1 + (annualChange / 100) * j);
 			}
 		}
 
 	}
 
+	/**
+	 * @return the values of the series scaled by the data processor, computed
+	 *         once and shared by all readers with an equal processor until they
+	 *         have all released them
+	 */
+	private synchronized double[] acquire(DataProcessor dataProcessor) {
+		Processed processed = processedValues.get(dataProcessor);
+		if (processed == null) {
+			processed = new Processed(new double[totalSize]);
+			for (int i = 0; i < totalSize; i++) {
+				processed.values[i] = dataProcessor.process(values[i]);
+			}
+			processedValues.put(dataProcessor, processed);
+		}
+		processed.readers++;
+		return processed.values;
+	}
+
+	private synchronized void release(DataProcessor dataProcessor) {
+		Processed processed = processedValues.get(dataProcessor);
+		if (processed != null && --processed.readers == 0) {
+			processedValues.remove(dataProcessor);
+		}
+	}
+
+	private static class Processed {
+		private final double[] values;
+		private int readers;
+
+		private Processed(double[] values) {
+			this.values = values;
+		}
+	}
+
+	/**
+	 * @return the index of the first point at or after the given time
+	 */
+	private int indexOf(long time) {
+		int index = Arrays.binarySearch(timestamps, 0, totalSize, time);
+		if (index < 0) {
+			return -index - 1;
+		}
+		while (index > 0 && timestamps[index - 1] == time) {
+			index--;
+		}
+		return index;
+	}
+
 	public EList<ProfileElement> get(LocalDateTime start, LocalDateTime end, Duration aggregationPrecision,
 			DataProcessor dataProcessor) {
-		EList<ProfileElement> item = ECollections.newBasicEList();
+		return new Reader(dataProcessor, null).get(start, end, aggregationPrecision);
+	}
 
-		for (int i = 0; (i < totalSize - 1) && (timestamps[i].isBefore(end)); i++) {
-			if (timestamps[i].isEqual(start) || timestamps[i].isAfter(start)) {
+	/**
+	 * Creates a reader of this series for one profile. The reader remembers where
+	 * its last read ended, so reading consecutive steps does not search the
+	 * series again.
+	 */
+	public Reader reader(DataProcessor dataProcessor) {
+		return new Reader(dataProcessor, acquire(dataProcessor));
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public class Reader implements ProfileReader {
+		private final DataProcessor dataProcessor;
+		// Null once released, values are then scaled while reading
+		private volatile double[] processed;
+		// Only a hint: readers of copies of a network may share it, so every read
+		// checks it before using it.
+		private int cursor;
+
+		private Reader(DataProcessor dataProcessor, double[] processed) {
+			this.dataProcessor = dataProcessor;
+			this.processed = processed;
+		}
+
+		/**
+		 * Gives up the scaled values of this reader, for when the profile has been
+		 * resampled and only reads outside the simulation steps are left. Such
+		 * reads scale the values of the series themselves.
+		 */
+		public synchronized void release() {
+			if (processed != null) {
+				processed = null;
+				TimeSeriesDataCache.this.release(dataProcessor);
+			}
+		}
+
+		private double value(double[] processed, int index) {
+			return processed != null ? processed[index] : dataProcessor.process(values[index]);
+		}
+
+		private int startIndex(long time) {
+			int index = cursor;
+			if (index < totalSize && timestamps[index] >= time && (index == 0 || timestamps[index - 1] < time)) {
+				return index;
+			}
+			return indexOf(time);
+		}
+
+		/**
+		 * @return the points from start (inclusive) to end (exclusive), each lasting
+		 *         until the next point. The last point of the series is never
+		 *         returned as it has no end.
+		 */
+		public EList<ProfileElement> get(LocalDateTime start, LocalDateTime end, Duration aggregationPrecision) {
+			EList<ProfileElement> item = ECollections.newBasicEList();
+			long endTime = EssimTime.toEpochSecond(end);
+			double[] processed = this.processed;
+
+			int i = startIndex(EssimTime.toEpochSecond(start));
+			for (; (i < totalSize - 1) && (timestamps[i] < endTime); i++) {
 				ProfileElement profileElement = EsdlFactory.eINSTANCE.createProfileElement();
-				profileElement.setFrom(EssimTime.localDateTimeToDate(timestamps[i]));
-				profileElement.setTo(EssimTime.localDateTimeToDate(timestamps[i + 1]));
-				profileElement.setValue(dataProcessor.process(values[i]));
+				profileElement.setFrom(new Date(timestamps[i] * 1000L));
+				profileElement.setTo(new Date(timestamps[i + 1] * 1000L));
+				profileElement.setValue(value(processed, i));
 				item.add(profileElement);
 			}
+			cursor = i;
+
+			return item;
 		}
 
-		return item;
-	}
+		/**
+		 * Aggregates the same points as
+		 * {@link #get(LocalDateTime, LocalDateTime, Duration)} returns, without
+		 * creating them.
+		 */
+		@Override
+		public double aggregate(long fromEpoch, long toEpoch, Aggregation kind) {
+			double sum = 0.0;
+			double[] processed = this.processed;
+			int i = startIndex(fromEpoch);
+			int first = i;
+			for (; (i < totalSize - 1) && (timestamps[i] < toEpoch); i++) {
+				sum += value(processed, i);
+			}
+			cursor = i;
 
-	public String getName() {
-		return name;
+			if (i == first) {
+				return Double.NaN;
+			}
+			return kind == Aggregation.SUM ? sum : sum / (i - first);
+		}
+
+		@Override
+		public void resample(long startEpoch, long stepSeconds, int steps, Aggregation kind) {
+			// Resampled steps are kept by the profile, see StepProfile
+		}
 	}
 }
@@ -16,14 +16,15 @@
 package essim.impl;
 
 import java.time.LocalDateTime;
-import java.time.temporal.ChronoUnit;
 import java.util.Date;
-import java.util.HashMap;
-import java.util.LinkedHashMap;
+import java.util.Map.Entry;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
 
 import org.eclipse.emf.common.util.ECollections;
 import org.eclipse.emf.common.util.EList;
 
+import common.ProfileReader;
 import esdl.Duration;
 import esdl.EsdlFactory;
 import esdl.ProfileElement;
@@ -33,49 +34,88 @@ import nl.tno.essim.time.EssimDuration;
 import nl.tno.essim.time.EssimTime;
 import nl.tno.essim.util.Converter;
 
+/**
+ * A profile embedded in the ESDL. On initialisation its elements are laid out
+ * on the simulation steps, so a read computes the index of a step from its time
+ * instead of searching. Points written with {@link #setProfile(EList)} that do
+ * not fall on those steps are kept in a sorted map next to the steps.
+ *
+ * Solvers read the profile from other threads than the one that writes it. A
+ * write copies the steps, changes the copy and then publishes it, so a reader
+ * sees either none or all of a write.
+ */
 @Slf4j
-public class ExtendedESSIMDateTimeProfile extends ESSIMDateTimeProfileImpl {
+public class ExtendedESSIMDateTimeProfile extends ESSIMDateTimeProfileImpl implements ProfileReader {
 
-	private HashMap<LocalDateTime, Double> profile;
+	private long startMillis;
+	private long stepMillis;
+	private volatile double[] values;
+	private ConcurrentSkipListMap<Long, Double> points;
 
 	public ExtendedESSIMDateTimeProfile() {
-		profile = new LinkedHashMap<LocalDateTime, Double>();
+		points = new ConcurrentSkipListMap<Long, Double>();
 	}
 
-	public void initProfile(Date start, Date end, Duration step) {
+	public synchronized void initProfile(Date start, Date end, Duration step) {
 
 		if (start == null && end == null && step == null) {
 			return;
 		}
 
 		EssimDuration simStep = Converter.toEssimDuration(step);
+		long stepSeconds = simStep.getSeconds();
+		LocalDateTime startDate = EssimTime.dateToLocalDateTime(start);
+		LocalDateTime endDate = EssimTime.dateToLocalDateTime(end);
+		long horizonSeconds = java.time.Duration.between(startDate, endDate).getSeconds();
+		int steps = horizonSeconds < 0 ? 0 : (int) (horizonSeconds / stepSeconds + 1);
 
-		HashMap<LocalDateTime, Double> vals = new HashMap<LocalDateTime, Double>();
+		// Elements that are not exactly at a step are ignored, a step without an
+		// element keeps the value of the step before it
+		double[] stepValues = new double[steps];
+		boolean[] hasElement = new boolean[steps];
 		EList<ProfileElement> profileElementList = getElement();
 		if (profileElementList != null) {
 			for (ProfileElement profileElement : profileElementList) {
-				vals.put(EssimTime.dateFromGUI(profileElement.getFrom()), profileElement.getValue());
+				java.time.Duration offset = java.time.Duration.between(startDate,
+						EssimTime.dateFromGUI(profileElement.getFrom()));
+				long seconds = offset.getSeconds();
+				if (offset.getNano() == 0 && seconds >= 0 && seconds % stepSeconds == 0
+						&& seconds / stepSeconds < steps) {
+					int index = (int) (seconds / stepSeconds);
+					stepValues[index] = profileElement.getValue();
+					hasElement[index] = true;
+				}
 			}
 		}
 
-		LocalDateTime startDate = EssimTime.dateToLocalDateTime(start);
-		LocalDateTime endDate = EssimTime.dateToLocalDateTime(end);
+		Object unit = getProfileType().equals(ProfileTypeEnum.UNDEFINED) ? getProfileQuantityAndUnit()
+				: getProfileType();
 		double val = 0.0;
-
-		for (LocalDateTime t = startDate; t.isEqual(endDate)
-				|| t.isBefore(endDate); t = t.plus(simStep.getSeconds(), ChronoUnit.SECONDS)) {
-			if (vals.containsKey(t)) {
-				val = vals.get(t);
-			}
-			if (getProfileType().equals(ProfileTypeEnum.UNDEFINED)) {
-				profile.put(t, Converter.toStandardizedUnits(val, getProfileQuantityAndUnit()));
-			} else {
-				profile.put(t, Converter.toStandardizedUnits(val, getProfileType()));
+		for (int i = 0; i < steps; i++) {
+			if (hasElement[i]) {
+				val = stepValues[i];
 			}
+			stepValues[i] = Converter.toStandardizedUnits(val, unit);
 		}
+
+		startMillis = start.getTime();
+		stepMillis = stepSeconds * 1000L;
+		values = stepValues;
 		log.debug("Initialised profile " + this);
 	}
 
+	/**
+	 * @return the index of the first step at or after the given time, which may be
+	 *         past the last step
+	 */
+	private int stepIndex(long millis, double[] stepValues) {
+		long offset = millis - startMillis;
+		if (offset <= 0) {
+			return 0;
+		}
+		return (int) Math.min(stepValues.length, (offset + stepMillis - 1) / stepMillis);
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * 
@@ -84,25 +124,107 @@ public class ExtendedESSIMDateTimeProfile extends ESSIMDateTimeProfileImpl {
 	 */
 	@Override
 	public EList<ProfileElement> getProfile(Date from, Date to, Duration aggregationPrecision) {
-		LocalDateTime startTime = EssimTime.dateToLocalDateTime(from);
-		LocalDateTime endTime = EssimTime.dateToLocalDateTime(to);
+		long fromMillis = from.getTime();
+		long toMillis = to.getTime();
 		EList<ProfileElement> profilePointList = ECollections.newBasicEList();
 
-		synchronized (profile) {
-			for (LocalDateTime time : profile.keySet()) {
-				if ((time.isAfter(startTime) || time.isEqual(startTime)) && (time.isBefore(endTime))) {
-					ProfileElement profileElement = EsdlFactory.eINSTANCE.createProfileElement();
-					profileElement.setFrom(EssimTime.localDateTimeToDate(time));
-					profileElement.setTo(null);
-					profileElement.setValue(profile.get(time));
-					profilePointList.add(profileElement);
+		double[] stepValues = values;
+		int index = 0;
+		int endIndex = 0;
+		if (stepValues != null) {
+			index = stepIndex(fromMillis, stepValues);
+			endIndex = stepIndex(toMillis, stepValues);
+		}
+		NavigableMap<Long, Double> written = null;
+		Entry<Long, Double> point = null;
+		if (!points.isEmpty()) {
+			written = points.subMap(fromMillis, true, toMillis, false);
+			point = written.firstEntry();
+		}
+
+		while (index < endIndex || point != null) {
+			long stepTime = startMillis + index * stepMillis;
+			if (point == null || (index < endIndex && stepTime < point.getKey())) {
+				profilePointList.add(createElement(stepTime, stepValues[index]));
+				index++;
+			} else {
+				if (index < endIndex && stepTime == point.getKey()) {
+					index++;
 				}
+				profilePointList.add(createElement(point.getKey(), point.getValue()));
+				point = written.higherEntry(point.getKey());
 			}
 		}
 
 		return profilePointList;
 	}
 
+	@Override
+	public double aggregate(long fromEpoch, long toEpoch, Aggregation kind) {
+		double[] stepValues = values;
+		long fromMillis = fromEpoch * 1000L;
+		long toMillis = toEpoch * 1000L;
+		if (stepValues == null) {
+			return aggregate(getProfile(new Date(fromMillis), new Date(toMillis), null), kind);
+		}
+
+		int index = stepIndex(fromMillis, stepValues);
+		int endIndex = stepIndex(toMillis, stepValues);
+		double sum = 0.0;
+		for (int i = index; i < endIndex; i++) {
+			sum += stepValues[i];
+		}
+		int count = endIndex - index;
+
+		// Written points are rare, so only the steps they fall in merge them, in the
+		// same way as getProfile does
+		Long first = points.isEmpty() ? null : points.ceilingKey(fromMillis);
+		if (first != null && first < toMillis) {
+			for (Entry<Long, Double> point : points.subMap(fromMillis, true, toMillis, false).entrySet()) {
+				long offset = point.getKey() - startMillis;
+				if (offset >= 0 && offset % stepMillis == 0 && offset / stepMillis >= index
+						&& offset / stepMillis < endIndex) {
+					sum += point.getValue() - stepValues[(int) (offset / stepMillis)];
+				} else {
+					sum += point.getValue();
+					count++;
+				}
+			}
+		}
+
+		if (count == 0) {
+			return Double.NaN;
+		}
+		return kind == Aggregation.SUM ? sum : sum / count;
+	}
+
+	/**
+	 * The profile is already laid out on the simulation steps by
+	 * {@link #initProfile(Date, Date, Duration)}.
+	 */
+	@Override
+	public void resample(long startEpoch, long stepSeconds, int steps, Aggregation kind) {
+	}
+
+	private static double aggregate(EList<ProfileElement> elements, Aggregation kind) {
+		if (elements.isEmpty()) {
+			return Double.NaN;
+		}
+		double sum = 0.0;
+		for (ProfileElement element : elements) {
+			sum += element.getValue();
+		}
+		return kind == Aggregation.SUM ? sum : sum / elements.size();
+	}
+
+	private static ProfileElement createElement(long millis, double value) {
+		ProfileElement profileElement = EsdlFactory.eINSTANCE.createProfileElement();
+		profileElement.setFrom(new Date(millis));
+		profileElement.setTo(null);
+		profileElement.setValue(value);
+		return profileElement;
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * 
@@ -110,24 +232,19 @@ public class ExtendedESSIMDateTimeProfile extends ESSIMDateTimeProfileImpl {
 	 * esdl.impl.GenericProfileImpl#setProfile(org.eclipse.emf.common.util.EList)
 	 */
 	@Override
-	public boolean setProfile(EList<ProfileElement> profileElementList) {
-		// LocalDateTime startTime = DidoTime.dateToLocalDateTime(start);
-		// DidoDuration didoDuration = Converter.toDidoDuration(duration);
-
-		// LocalDateTime endTime = startTime.plus(didoDuration.getAmount(),
-		// didoDuration.getUnit());
-		// long seconds = ChronoUnit.SECONDS.between(startTime, endTime);
-		// long period = seconds / profileItem.size();
-		// for(int i=0; i<profileItem.size(); i++) {
-		// LocalDateTime time = startTime.plus(i*period, ChronoUnit.SECONDS);
-		// profile.put(time, profileItem.get(i));
-		// }
-
+	public synchronized boolean setProfile(EList<ProfileElement> profileElementList) {
+		double[] stepValues = values == null ? null : values.clone();
 		for (ProfileElement profileElement : profileElementList) {
-			synchronized (profile) {
-				profile.put(EssimTime.dateToLocalDateTime(profileElement.getFrom()), profileElement.getValue());
+			long millis = profileElement.getFrom().getTime();
+			long offset = millis - startMillis;
+			if (stepValues != null && offset >= 0 && offset % stepMillis == 0
+					&& offset / stepMillis < stepValues.length) {
+				stepValues[(int) (offset / stepMillis)] = profileElement.getValue();
+			} else {
+				points.put(millis, profileElement.getValue());
 			}
 		}
+		values = stepValues;
 		return true;
 	}
 }
@@ -37,6 +37,8 @@ import org.json.JSONTokener;
 import common.DataProcessor;
 import common.EssimQuery;
 import common.ProfileCache;
+import common.ProfileReader;
+import common.StepProfile;
 import common.TimeSeriesDataCache;
 import esdl.Duration;
 import esdl.ProfileElement;
@@ -46,13 +48,14 @@ import nl.tno.essim.time.EssimTime;
 import nl.tno.essim.util.Converter;
 
 @Slf4j
-public class ExtendedESSIMInfluxDBProfile extends ESSIMInfluxDBProfileImpl {
+public class ExtendedESSIMInfluxDBProfile extends ESSIMInfluxDBProfileImpl implements ProfileReader {
 
 	private static final int MAX_ATTEMPTS = 1;
 	private static final String USERNAME_PROP = "username";
 	private static final String PASSWORD_PROP = "password";
-	private InfluxDB influxClient;
 	private TimeSeriesDataCache dataCache;
+	private TimeSeriesDataCache.Reader dataReader;
+	private volatile StepProfile stepProfile;
 	private Duration aggregationPrecision;
 	private ProfileCache profileCache;
 	private LocalDateTime simStartDate;
@@ -106,6 +109,7 @@ public class ExtendedESSIMInfluxDBProfile extends ESSIMInfluxDBProfileImpl {
 	@Override
 	public void initProfile(Date from, Date to, Duration aggregationPrecision) {
 
+		stepProfile = null;
 		if (from == null && to == null && aggregationPrecision == null) {
 			profileCache.giveUp();
 			return;
@@ -162,15 +166,35 @@ public class ExtendedESSIMInfluxDBProfile extends ESSIMInfluxDBProfileImpl {
 		LocalDateTime startTime = EssimTime.dateToLocalDateTime(from);
 		LocalDateTime endTime = EssimTime.dateToLocalDateTime(to);
 
-		EList<ProfileElement> eList = dataCache.get(startTime, endTime, aggregationPrecision, dataProcessor);
+		EList<ProfileElement> eList = dataReader.get(startTime, endTime, aggregationPrecision);
 		return eList;
 	}
 
+	@Override
+	public double aggregate(long fromEpoch, long toEpoch, Aggregation kind) {
+		StepProfile resampled = stepProfile;
+		if (resampled != null) {
+			int index = resampled.indexOf(fromEpoch, toEpoch, kind);
+			if (index >= 0) {
+				return resampled.get(index);
+			}
+		}
+		return dataReader.aggregate(fromEpoch, toEpoch, kind);
+	}
+
+	@Override
+	public void resample(long startEpoch, long stepSeconds, int steps, Aggregation kind) {
+		StepProfile resampled = stepProfile;
+		if (resampled == null || !resampled.isResampled(startEpoch, stepSeconds, steps, kind)) {
+			stepProfile = StepProfile.resample(dataReader, startEpoch, stepSeconds, steps, kind);
+			// Reads of the steps no longer need the scaled copy of the series
+			dataReader.release();
+		}
+	}
+
 	public void fillCache(String startTimeOfDataset, String endTime, EssimDuration simulationStepLength,
 			double annualChange) {
 
-		int connectionAttempts = 0;
-
 		String command = "SELECT \"" + field + "\" FROM \"" + measurement + "\" WHERE time >= '" + startTimeOfDataset
 				+ "' AND time <= '" + endTime + "'";
 
@@ -181,49 +205,51 @@ public class ExtendedESSIMInfluxDBProfile extends ESSIMInfluxDBProfileImpl {
 
 		log.debug("Influx Call for: " + command);
 
-		synchronized (profileCache) {
-			if (!profileCache.isCached(command)) {
-				log.debug("Profile is not cached! Proceeding to query InfluxDB!");
-
-				influxClient = connectToInfluxHost();
-
-				QueryResult queryResult = null;
-				while (connectionAttempts < MAX_ATTEMPTS && queryResult == null) {
-					try {
-						connectionAttempts++;
-						EssimQuery query = new EssimQuery(command, database);
-						log.debug("InfluxDB query Attempt#{}: {}", connectionAttempts, query.getCommand());
-						queryResult = influxClient.query(query);
-						if (queryResult.hasError() || queryResult.getResults() == null) {
-							throw new IllegalStateException("Error querying InfluxDB for query " + query.getCommand()
-									+ ", queryError: " + queryResult.getError());
-						}
-					} catch (InfluxDBIOException e) {
-						log.error("Error querying InfluxDB: {}. Trying again...", e.getMessage());
-					}
-				}
-				if (queryResult == null) {
-					throw new IllegalArgumentException("Cannot connect to InfluxDB service at [" + getHost() + ":"
-							+ getPort() + "] to query profile with id " + getId() + ". Please verify the URL!");
-				}
-				for (Result result : queryResult.getResults()) {
-					if (result.getSeries() == null) {
-						throw new IllegalArgumentException("No results returned on querying " + command
-								+ " at database [" + database + "] at [" + getHost() + ":" + getPort()
-								+ "] for profile with id " + getId()
-								+ ". Please verify the database name, measurement and field names and timeframe of query!");
-					}
-					for (Series series : result.getSeries()) {
-						dataCache = new TimeSeriesDataCache(field, series.getValues(), simStartDate, simEndDate,
-								simulationStepLength, annualChange);
-					}
+		final String query = command;
+		dataCache = profileCache.getDataCache(query, () -> queryInfluxDB(query, simulationStepLength, annualChange));
+		if (dataReader != null) {
+			dataReader.release();
+		}
+		dataReader = dataCache.reader(dataProcessor);
+	}
+
+	private TimeSeriesDataCache queryInfluxDB(String command, EssimDuration simulationStepLength,
+			double annualChange) {
+		int connectionAttempts = 0;
+		InfluxDB influxClient = connectToInfluxHost();
+		TimeSeriesDataCache seriesCache = null;
+
+		QueryResult queryResult = null;
+		while (connectionAttempts < MAX_ATTEMPTS && queryResult == null) {
+			try {
+				connectionAttempts++;
+				EssimQuery query = new EssimQuery(command, database);
+				log.debug("InfluxDB query Attempt#{}: {}", connectionAttempts, query.getCommand());
+				queryResult = influxClient.query(query);
+				if (queryResult.hasError() || queryResult.getResults() == null) {
+					throw new IllegalStateException("Error querying InfluxDB for query " + query.getCommand()
+							+ ", queryError: " + queryResult.getError());
 				}
-				profileCache.cache(command, dataCache);
-			} else {
-				log.debug("Profile is cached! Retrieving from cache!");
-				dataCache = profileCache.getDataCache(command);
+			} catch (InfluxDBIOException e) {
+				log.error("Error querying InfluxDB: {}. Trying again...", e.getMessage());
+			}
+		}
+		if (queryResult == null) {
+			throw new IllegalArgumentException("Cannot connect to InfluxDB service at [" + getHost() + ":"
+					+ getPort() + "] to query profile with id " + getId() + ". Please verify the URL!");
+		}
+		for (Result result : queryResult.getResults()) {
+			if (result.getSeries() == null) {
+				throw new IllegalArgumentException("No results returned on querying " + command + " at database ["
+						+ database + "] at [" + getHost() + ":" + getPort() + "] for profile with id " + getId()
+						+ ". Please verify the database name, measurement and field names and timeframe of query!");
+			}
+			for (Series series : result.getSeries()) {
+				seriesCache = new TimeSeriesDataCache(field, series.getValues(), simStartDate, simEndDate,
+						simulationStepLength, annualChange);
 			}
 		}
+		return seriesCache;
 	}
 
 	public String toInfluxDBTime(EssimDuration stepLength) {
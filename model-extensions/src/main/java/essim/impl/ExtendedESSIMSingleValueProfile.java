@@ -20,13 +20,14 @@ import java.util.Date;
 import org.eclipse.emf.common.util.ECollections;
 import org.eclipse.emf.common.util.EList;
 
+import common.ProfileReader;
 import esdl.Duration;
 import esdl.EsdlFactory;
 import esdl.ProfileElement;
 import esdl.ProfileTypeEnum;
 import nl.tno.essim.util.Converter;
 
-public class ExtendedESSIMSingleValueProfile extends ESSIMSingleValueProfileImpl {
+public class ExtendedESSIMSingleValueProfile extends ESSIMSingleValueProfileImpl implements ProfileReader {
 
 	public void initProfile(Date from, Date to, Duration aggregationPrecision) {
 		if (from == null && to == null && aggregationPrecision == null) {
@@ -48,16 +49,32 @@ public class ExtendedESSIMSingleValueProfile extends ESSIMSingleValueProfileImpl
 	@Override
 	public EList<ProfileElement> getProfile(Date from, Date to, Duration aggregationPrecision) {
 		ProfileElement profileElement = EsdlFactory.eINSTANCE.createProfileElement();
-		if (getProfileType().equals(ProfileTypeEnum.UNDEFINED)) {
-			profileElement.setValue(Converter.toStandardizedUnits(getValue(), getProfileQuantityAndUnit()));
-		} else {
-			profileElement.setValue(Converter.toStandardizedUnits(getValue(), getProfileType()));
-		}
+		profileElement.setValue(getStandardizedValue());
 		profileElement.setFrom(from);
 		profileElement.setTo(to);
 		return ECollections.singletonEList(profileElement);
 	}
 
+	/**
+	 * The single value is both the sum and the average, whatever the period.
+	 */
+	@Override
+	public double aggregate(long fromEpoch, long toEpoch, Aggregation kind) {
+		return getStandardizedValue();
+	}
+
+	@Override
+	public void resample(long startEpoch, long stepSeconds, int steps, Aggregation kind) {
+	}
+
+	private double getStandardizedValue() {
+		if (getProfileType().equals(ProfileTypeEnum.UNDEFINED)) {
+			return Converter.toStandardizedUnits(getValue(), getProfileQuantityAndUnit());
+		} else {
+			return Converter.toStandardizedUnits(getValue(), getProfileType());
+		}
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * 